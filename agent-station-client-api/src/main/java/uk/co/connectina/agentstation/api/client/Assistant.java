@@ -19,6 +19,9 @@
 package uk.co.connectina.agentstation.api.client;
 
 import java.io.Serializable;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * A station assistant that an agent can use.
@@ -41,6 +44,37 @@ public interface Assistant extends Serializable {
      */
     void migrate(AgentInstance agentInstance, String remoteServer, int port, String placeName) throws OperationException;
 
+    /**
+     * A request to migrate the agent to a remote Agent Station without waiting
+     * for the network exchange. The future completes with the outcome of the
+     * migration, or exceptionally when the migration cannot start or the
+     * deadline passes before the exchange starts. A deadline that passes, or a
+     * cancellation that arrives, during the exchange cancels its remote calls
+     * where the transport allows it. The agent then moves if the remote Agent
+     * Station had already accepted it, and otherwise stays, stopped, in the
+     * current Agent Station.
+     *
+     * @param agentInstance the agent instance details
+     * @param remoteServer the name or IP address of the server hosting the remote Agent Station
+     * @param port the port that the station listens to
+     * @param placeName the remote place name
+     * @param deadline the time allowed for the migration, or null for no deadline
+     * @return the future outcome of the migration
+     */
+    CompletableFuture<MigrationResult> migrateAsync(AgentInstance agentInstance, String remoteServer, int port, String placeName, Duration deadline);
+
+    /**
+     * A request to migrate several agents to the same remote Agent Station in one call.
+     *
+     * @param agentInstances the agent instance details
+     * @param remoteServer the name or IP address of the server hosting the remote Agent Station
+     * @param port the port that the station listens to
+     * @param placeName the remote place name
+     * @return the outcome of each migration, in the order of the agent instances
+     * @throws OperationException an error occurred
+     */
+    List<MigrationResult> migrate(List<AgentInstance> agentInstances, String remoteServer, int port, String placeName) throws OperationException;
+
     /**
      * A request to collaborate with another agent located in the same place.
      * 
@@ -0,0 +1,100 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.api.client;
+
+import java.io.Serializable;
+
+/**
+ * The outcome of a request to migrate an Agent to a remote Agent Station.
+ * 
+ * @author Dr Christos Bohoris
+ */
+public class MigrationResult implements Serializable {
+
+    /**
+     * The migration status.
+     */
+    public enum Status {
+        /**
+         * The remote Agent Station accepted the Agent.
+         */
+        ACCEPTED,
+        /**
+         * The Agent is not allowed in the remote place.
+         */
+        NOT_ALLOWED,
+        /**
+         * The migration failed.
+         */
+        ERROR
+    }
+
+    /**
+     * The status.
+     */
+    private final Status status;
+    /**
+     * The message explaining the status, if any.
+     */
+    private final String message;
+
+    /**
+     * Initiates a new object instance.
+     * 
+     * @param status the migration status
+     * @param message the message explaining the status, if any
+     */
+    public MigrationResult(Status status, String message) {
+        this.status = status;
+        this.message = message;
+    }
+
+    /**
+     * Provides the migration status.
+     * 
+     * @return the migration status
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Provides the message explaining the status.
+     * 
+     * @return the message explaining the status or null
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Checks whether the remote Agent Station accepted the Agent.
+     * 
+     * @return true if the Agent was accepted
+     */
+    public boolean isAccepted() {
+        return status == Status.ACCEPTED;
+    }
+
+    @Override
+    public String toString() {
+        return message != null ? status + ": " + message : status.toString();
+    }
+
+}
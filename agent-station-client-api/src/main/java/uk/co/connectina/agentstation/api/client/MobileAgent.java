@@ -18,6 +18,10 @@
  */
 package uk.co.connectina.agentstation.api.client;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Abstract class to be extended by all Mobile Agents.
  *
@@ -80,4 +84,30 @@ public abstract class MobileAgent extends StaticAgent {
         status = Status.BACK_AT_HOME;
     }
 
+    /**
+     * Writes the status of this agent, for agents that write their own state
+     * through {@link StateCodec}.
+     *
+     * @param output the output to write to
+     * @throws IOException the status could not be written
+     */
+    protected final void writeStatus(DataOutput output) throws IOException {
+        output.writeByte(status.ordinal());
+    }
+
+    /**
+     * Reads the status of this agent, for agents that read their own state
+     * through {@link StateCodec}.
+     *
+     * @param input the input to read from
+     * @throws IOException the status could not be read
+     */
+    protected final void readStatus(DataInput input) throws IOException {
+        int ordinal = input.readByte();
+        if (ordinal < 0 || ordinal >= Status.values().length) {
+            throw new IOException("Unknown agent status.");
+        }
+        status = Status.values()[ordinal];
+    }
+
 }
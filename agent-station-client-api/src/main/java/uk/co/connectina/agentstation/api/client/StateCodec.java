@@ -0,0 +1,53 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.api.client;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Lets an agent write its own compact state when it migrates, instead of the
+ * whole agent being written with Java serialization. The receiving station
+ * creates the agent through its public no-argument constructor and then reads
+ * the state back in the order it was written. Agents that do not implement
+ * this interface are still migrated with Java serialization.
+ *
+ * @author Dr Christos Bohoris
+ */
+public interface StateCodec {
+
+    /**
+     * Writes the state of the agent before it migrates.
+     *
+     * @param output the output to write to
+     * @throws IOException the state could not be written
+     */
+    void writeState(DataOutput output) throws IOException;
+
+    /**
+     * Reads the state of the agent after it migrates, into a newly created
+     * agent.
+     *
+     * @param input the input to read from
+     * @throws IOException the state could not be read
+     */
+    void readState(DataInput input) throws IOException;
+
+}
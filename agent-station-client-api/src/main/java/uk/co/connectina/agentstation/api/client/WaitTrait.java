@@ -19,15 +19,20 @@
 package uk.co.connectina.agentstation.api.client;
 
 import java.io.Serializable;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Allows an agent to stay active and waiting for collaboration requests.
+ * <p>
+ * Waiting parks the agent thread rather than waiting on a monitor, so that an
+ * agent running on a virtual thread does not pin its carrier thread.
  * 
  * @author Dr Christos Bohoris
  */
 class WaitTrait implements Serializable {
     
-    private final transient Object lock = new Object();
+    private transient volatile Thread waiter;
+    private transient volatile boolean released;
     
     WaitTrait() {
         
@@ -37,18 +42,13 @@ class WaitTrait implements Serializable {
      * Makes the agent stay active and waiting for collaboration requests.
      */
     public final void waiting() {
-        synchronized (lock) {
-            boolean waiting = true;
-            
-            while (waiting) {
-                try {
-                    lock.wait();
-                } catch (InterruptedException e) {
-                    Thread.currentThread().interrupt();
-                } finally {
-                    waiting = false;
-                }
+        waiter = Thread.currentThread();
+        try {
+            while (!released && !Thread.currentThread().isInterrupted()) {
+                LockSupport.park(this);
             }
+        } finally {
+            waiter = null;
         }
     }
     
@@ -57,8 +57,10 @@ class WaitTrait implements Serializable {
      */
     public void stopWaiting() {
         // Stop waiting
-        synchronized (lock) {
-            lock.notifyAll();
+        released = true;
+        Thread thread = waiter;
+        if (thread != null) {
+            LockSupport.unpark(thread);
         }
     }
     
@@ -18,6 +18,8 @@
  */
 package uk.co.connectina.agentstation.exampleagents.diskinfo;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
 import java.io.Serializable;
 import java.nio.file.FileStore;
@@ -33,15 +35,17 @@ import uk.co.connectina.agentstation.api.client.OperationException;
 import uk.co.connectina.agentstation.api.client.Assistant;
 import uk.co.connectina.agentstation.api.client.LogType;
 import uk.co.connectina.agentstation.api.client.MobileAgent;
+import uk.co.connectina.agentstation.api.client.StateCodec;
 
 /**
  * A mobile agent that migrates to a remote Agent Station, gets disk space-related information from that node and finally returns
  * to the origin Agent Station to report the information gathered. This example demonstrates how you can implement a mobile agent
- * that migrates and operates in a remote Agent Station.
+ * that migrates and operates in a remote Agent Station. It also writes its own compact state when it migrates, rather than
+ * leaving it to Java serialization.
  *
  * @author Dr Christos Bohoris
  */
-public class DiskInfoAgent extends MobileAgent {
+public class DiskInfoAgent extends MobileAgent implements StateCodec {
 
     private List<DiskInfo> data;
 
@@ -120,6 +124,31 @@ public class DiskInfoAgent extends MobileAgent {
         JOptionPane.showMessageDialog(null, content);
     }
     
+    @Override
+    public void writeState(DataOutput output) throws IOException {
+        writeStatus(output);
+        output.writeInt(data != null ? data.size() : -1);
+        if (data != null) {
+            for (DiskInfo info : data) {
+                output.writeUTF(info.root);
+                output.writeLong(info.totalSpace);
+                output.writeLong(info.availableSpace);
+            }
+        }
+    }
+
+    @Override
+    public void readState(DataInput input) throws IOException {
+        readStatus(input);
+        int size = input.readInt();
+        if (size >= 0) {
+            data = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                data.add(new DiskInfo(input.readUTF(), input.readLong(), input.readLong()));
+            }
+        }
+    }
+
     private static class DiskInfo implements Serializable {
         
         private String root;
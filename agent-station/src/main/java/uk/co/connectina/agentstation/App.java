@@ -41,9 +41,13 @@ import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import uk.co.connectina.agentstation.desktop.AgentStationFrame;
 import uk.co.connectina.agentstation.local.IOAccess;
+import uk.co.connectina.agentstation.local.RMISocketSupport;
+import uk.co.connectina.agentstation.local.RejectionSupport;
 import uk.co.connectina.agentstation.local.RemoteSupport;
 import uk.co.connectina.agentstation.local.StationInfo;
+import uk.co.connectina.agentstation.local.ThreadSupport;
 import uk.co.connectina.agentstation.local.UISupport;
+import uk.co.connectina.agentstation.local.dao.ConnectionPool;
 import uk.co.connectina.agentstation.terminal.AgentStationCommand;
 
 /**
@@ -61,6 +65,36 @@ public class App implements Runnable {
     @Option(names = { "-r",
             "--remote" }, required = false, description = "The remote communication type. Use grpc or rmi")
     private String remote;
+    @Option(names = { "-t",
+            "--threads" }, required = false, description = "The agent thread type. Use platform or virtual")
+    private String threads;
+    @Option(names = { "-m",
+            "--max-active" }, required = false, description = "Maximum number of concurrently active agents. Use 0 for no limit")
+    private int maxActive;
+    @Option(names = { "-q",
+            "--start-queue" }, required = false, description = "Maximum number of agent starts waiting for a free slot")
+    private Integer startQueue;
+    @Option(names = {
+            "--rejection" }, required = false, description = "The action when the start queue is full. Use abort or discard_oldest")
+    private String rejection;
+    @Option(names = { "-l",
+            "--log-capacity" }, required = false, description = "Number of latest log entries kept for each agent")
+    private int logCapacity;
+    @Option(names = {
+            "--start-rate" }, required = false, description = "Auto start agents started per second at startup. Use 0 for no limit")
+    private Integer startRate;
+    @Option(names = {
+            "--compress" }, required = false, description = "Compress migrating agent state for stations that support it")
+    private boolean compress;
+    @Option(names = {
+            "--rmi-sockets" }, required = false, description = "The sockets of the RMI remote objects. Use default, tuned or compressed")
+    private String rmiSockets;
+    @Option(names = {
+            "--registry-cache" }, required = false, description = "Keep places, permissions, agent ids and schedules of the registry in memory")
+    private boolean registryCache;
+    @Option(names = {
+            "--db-pool-size" }, required = false, description = "Maximum number of open database connections shared by the registry")
+    private int dbPoolSize;
     @Option(names = { "-n", "--name" }, required = false, description = "Agent Station name")
     private String stationName;
     @Option(names = { "-p", "--port" }, required = false, description = "Remote communication port")
@@ -89,6 +123,87 @@ public class App implements Runnable {
         }
     }
 
+    private void applyThreads() {
+        // Set default
+        if (threads == null) {
+            threads = ThreadSupport.PLATFORM.name();
+        } else {
+            threads = threads.toUpperCase();
+            if (!threads.equals(ThreadSupport.PLATFORM.name()) && !threads.equals(ThreadSupport.VIRTUAL.name())) {
+                System.out.println("Valid --threads options are platform or virtual.");
+
+                System.exit(1);
+            }
+        }
+    }
+
+    private void applyExecution() {
+        // Set defaults
+        if (maxActive < 0) {
+            System.out.println("The --max-active option cannot be negative.");
+
+            System.exit(1);
+        }
+        if (startQueue == null) {
+            startQueue = 1000;
+        } else if (startQueue < 0) {
+            System.out.println("The --start-queue option cannot be negative.");
+
+            System.exit(1);
+        }
+        if (rejection == null) {
+            rejection = RejectionSupport.ABORT.name();
+        } else {
+            rejection = rejection.toUpperCase();
+            if (!rejection.equals(RejectionSupport.ABORT.name())
+                    && !rejection.equals(RejectionSupport.DISCARD_OLDEST.name())) {
+                System.out.println("Valid --rejection options are abort or discard_oldest.");
+
+                System.exit(1);
+            }
+        }
+    }
+
+    private void applyRMISockets() {
+        // Set default
+        if (rmiSockets == null) {
+            rmiSockets = RMISocketSupport.DEFAULT.name();
+        } else {
+            rmiSockets = rmiSockets.toUpperCase();
+            if (!rmiSockets.equals(RMISocketSupport.DEFAULT.name()) && !rmiSockets.equals(RMISocketSupport.TUNED.name())
+                    && !rmiSockets.equals(RMISocketSupport.COMPRESSED.name())) {
+                System.out.println("Valid --rmi-sockets options are default, tuned or compressed.");
+
+                System.exit(1);
+            }
+        }
+    }
+
+    private void applyLogCapacity() {
+        // Set default
+        if (logCapacity <= 0) {
+            logCapacity = 50;
+        }
+    }
+
+    private void applyStartRate() {
+        // Set default
+        if (startRate == null) {
+            startRate = 20;
+        } else if (startRate < 0) {
+            System.out.println("The --start-rate option cannot be negative.");
+
+            System.exit(1);
+        }
+    }
+
+    private void applyDbPoolSize() {
+        // Set default
+        if (dbPoolSize <= 0) {
+            dbPoolSize = ConnectionPool.DEFAULT_MAX_CONNECTIONS;
+        }
+    }
+
     private void applyName() {
         // Set default
         if (stationName == null) {
@@ -124,6 +239,12 @@ public class App implements Runnable {
         applyRemote();
         applyPort();
         applyUI();
+        applyThreads();
+        applyExecution();
+        applyLogCapacity();
+        applyStartRate();
+        applyDbPoolSize();
+        applyRMISockets();
         
         // Prepare app run
         try {
@@ -142,6 +263,16 @@ public class App implements Runnable {
         }
 
         StationInfo stationInfo = new StationInfo(localServer, ui, RemoteSupport.valueOf(remote), stationName, port);
+        stationInfo.setThreads(ThreadSupport.valueOf(threads));
+        stationInfo.setMaxActive(maxActive);
+        stationInfo.setStartQueue(startQueue);
+        stationInfo.setRejection(RejectionSupport.valueOf(rejection));
+        stationInfo.setLogCapacity(logCapacity);
+        stationInfo.setStartRate(startRate);
+        stationInfo.setCompression(compress);
+        stationInfo.setRegistryCache(registryCache);
+        stationInfo.setDbPoolSize(dbPoolSize);
+        stationInfo.setRmiSockets(RMISocketSupport.valueOf(rmiSockets));
         // Initiate UI
         if (ui.equals(UISupport.GUI.name())) {
             SwingUtilities.invokeLater(() -> new AgentStationFrame(stationInfo).setVisible(true));
@@ -0,0 +1,137 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.api;
+
+import java.io.Serializable;
+import java.text.MessageFormat;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+import uk.co.connectina.agentstation.local.IOAccess;
+
+/**
+ * An immutable key identifying an agent instance. The long id, short id and
+ * creation time are computed once so that equality checks and hashing do not
+ * need to recompute an MD5 or parse dates.
+ *
+ * @author Dr Christos Bohoris
+ */
+public final class AgentKey implements Serializable {
+
+    private final String longId;
+    private final String shortId;
+    private final long creationEpoch;
+    private final int hash;
+
+    /**
+     * Initiates a new object instance.
+     *
+     * @param identity the agent identity
+     * @param creation the creation date time
+     */
+    public AgentKey(Identity identity, LocalDateTime creation) {
+        String label = MessageFormat.format("{0}:{1}:{2}", identity.getClassName(), identity.getHashCode(),
+                Double.toString(identity.getVersion()));
+        longId = IOAccess.getStringMD5(label);
+        shortId = longId.substring(longId.length() - 6);
+        creationEpoch = creation.toEpochSecond(ZoneOffset.UTC);
+
+        int value = 3;
+        value = 11 * value + longId.hashCode();
+        value = 11 * value + creation.hashCode();
+        hash = value;
+    }
+
+    /**
+     * Provides a long unique id for the agent instance.
+     *
+     * @return the long instance id
+     */
+    public String getLongId() {
+        return longId;
+    }
+
+    /**
+     * Provides a short unique id for the agent instance.
+     *
+     * @return the short instance id
+     */
+    public String getShortId() {
+        return shortId;
+    }
+
+    /**
+     * Provides the creation date time as seconds from the epoch, as read in
+     * UTC.
+     *
+     * @return the creation epoch seconds
+     */
+    public long getCreationEpoch() {
+        return creationEpoch;
+    }
+
+    /**
+     * Provides the creation date time.
+     *
+     * @return the creation date time
+     */
+    public LocalDateTime getCreationDateTime() {
+        return LocalDateTime.ofEpochSecond(creationEpoch, 0, ZoneOffset.UTC);
+    }
+
+    /**
+     * Provides a hash code value for the object.
+     *
+     * @return a hash code value for this object
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Indicates whether some other object is "equal to" this one.
+     *
+     * @param obj the reference object with which to compare
+     * @return true if this object is the same as the obj argument; false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+        final AgentKey other = (AgentKey) obj;
+
+        return hash == other.hash && creationEpoch == other.creationEpoch && longId.equals(other.longId);
+    }
+
+    /**
+     * Provides a string representation of the object.
+     *
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return "AgentKey{" + "longId=" + longId + ", creationEpoch=" + creationEpoch + '}';
+    }
+
+}
@@ -19,6 +19,7 @@
 package uk.co.connectina.agentstation.api;
 
 import java.io.Serializable;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
 import uk.co.connectina.agentstation.api.client.Assistant;
 import uk.co.connectina.agentstation.api.client.Agent;
@@ -35,6 +36,7 @@ public class AgentRunnable implements Runnable, Serializable {
     private final Instance instance;
     private final AtomicBoolean active = new AtomicBoolean(false);
     private transient Assistant assistant;
+    private transient Executor executor;
 
     /**
      * Initiates a new object instance.
@@ -56,10 +58,33 @@ public class AgentRunnable implements Runnable, Serializable {
      */
     public void start() {
         if (!isActive()) {
-            Thread thread = new Thread(this, instance.getIdentity().getName() + "." + instance.getShortId());
-            thread.start();
             active.set(true);
             instance.setState(Instance.State.ACTIVE);
+            if (executor != null) {
+                try {
+                    executor.execute(this);
+                } catch (RuntimeException e) {
+                    active.set(false);
+                    instance.setState(Instance.State.INACTIVE);
+
+                    throw e;
+                }
+            } else {
+                Thread thread = new Thread(this, getThreadName());
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Marks this agent as waiting for a free slot to become active.
+     */
+    public void queue() {
+        if (!isActive()) {
+            instance.setState(Instance.State.QUEUED);
+            if (agentListener != null) {
+                agentListener.notify(instance, "queued");
+            }
         }
     }
 
@@ -74,6 +99,11 @@ public class AgentRunnable implements Runnable, Serializable {
                 agentListener.notify(instance, "stop");
             }
             agent.stop();
+        } else if (isQueued()) {
+            instance.setState(Instance.State.INACTIVE);
+            if (agentListener != null) {
+                agentListener.notify(instance, "stop");
+            }
         }
     }
 
@@ -86,6 +116,24 @@ public class AgentRunnable implements Runnable, Serializable {
         return active.get();
     }
 
+    /**
+     * Whether this agent is waiting for a free slot to become active.
+     *
+     * @return whether agent is queued
+     */
+    public boolean isQueued() {
+        return !isActive() && instance.getState() == Instance.State.QUEUED;
+    }
+
+    /**
+     * Provides the name of the thread this agent runs on.
+     *
+     * @return the thread name
+     */
+    public String getThreadName() {
+        return instance.getIdentity().getName() + "." + instance.getShortId();
+    }
+
     /**
      * Provides the agent provided by a user.
      *
@@ -148,6 +196,15 @@ public class AgentRunnable implements Runnable, Serializable {
         this.assistant = assistant;
     }
 
+    /**
+     * Sets the executor running this agent when it becomes active.
+     *
+     * @param executor the agent executor
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
     /**
      * Provides a string representation of the object.
      *
@@ -18,14 +18,13 @@
  */
 package uk.co.connectina.agentstation.api;
 
-import java.text.MessageFormat;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.time.LocalDateTime;
-import java.util.Objects;
 
 import uk.co.connectina.agentstation.App;
 import uk.co.connectina.agentstation.api.client.AgentIdentity;
 import uk.co.connectina.agentstation.api.client.AgentInstance;
-import uk.co.connectina.agentstation.local.IOAccess;
 import uk.co.connectina.agentstation.local.StationInfo;
 
 /**
@@ -36,10 +35,11 @@ import uk.co.connectina.agentstation.local.StationInfo;
 public class Instance implements AgentInstance {
 
     /**
-     * The agent states, either active or inactive.
+     * The agent states, either active, inactive or queued while waiting for a
+     * free slot to become active.
      */
     public enum State {
-        ACTIVE, INACTIVE
+        ACTIVE, INACTIVE, QUEUED
     }
 
     private Identity identity;
@@ -54,6 +54,7 @@ public class Instance implements AgentInstance {
     private String lastRemotePlace;
     private String[] parameters;
     private long sid;
+    private transient AgentKey key;
 
     /**
      * Initiates a new object instance.
@@ -69,6 +70,17 @@ public class Instance implements AgentInstance {
         this.placeName = placeName;
         state = State.INACTIVE;
         this.parameters = parameters;
+        key = identity != null ? createKey() : null;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        key = identity != null ? createKey() : null;
+    }
+
+    private AgentKey createKey() {
+        // The key uses the stored creation text, i.e. without any fractional seconds
+        return new AgentKey(identity, LocalDateTime.parse(creation, App.DATETIME_FORMATTER));
     }
     
     /**
@@ -107,6 +119,32 @@ public class Instance implements AgentInstance {
         }
     }
 
+    /**
+     * Restores the home station location of a migrated agent.
+     * 
+     * @param homeServer the home server
+     * @param homePort the home port
+     * @param homePlace the home place name
+     */
+    public void setHomeLocation(String homeServer, int homePort, String homePlace) {
+        this.homeServer = homeServer;
+        this.homePort = homePort;
+        this.homePlace = homePlace;
+    }
+
+    /**
+     * Restores the last remote station location of a migrated agent.
+     * 
+     * @param lastRemoteServer the last remote server
+     * @param lastRemotePort the last remote port
+     * @param lastRemotePlace the last remote place name
+     */
+    public void setLastRemoteLocation(String lastRemoteServer, int lastRemotePort, String lastRemotePlace) {
+        this.lastRemoteServer = lastRemoteServer;
+        this.lastRemotePort = lastRemotePort;
+        this.lastRemotePlace = lastRemotePlace;
+    }
+
     /**
      * Provides the agent identity.
      * 
@@ -124,7 +162,7 @@ public class Instance implements AgentInstance {
      */
     @Override
     public LocalDateTime getCreationDateTime() {
-        return LocalDateTime.parse(creation, App.DATETIME_FORMATTER);
+        return getKey().getCreationDateTime();
     }
         
     /**
@@ -235,15 +273,26 @@ public class Instance implements AgentInstance {
         return builder.toString();
     }
     
+    /**
+     * Provides the precomputed key identifying this agent instance.
+     * 
+     * @return the agent key
+     */
+    public AgentKey getKey() {
+        if (key == null) {
+            key = createKey();
+        }
+
+        return key;
+    }
+
     /**
      * Provides a long unique id for this agent instance.
      * 
      * @return the long instance id
      */
     public String getLongId() {
-        String label = MessageFormat.format("{0}:{1}:{2}", getIdentity().getClassName(), getIdentity().getHashCode(), Double.toString(getIdentity().getVersion()));
-
-        return IOAccess.getStringMD5(label);
+        return getKey().getLongId();
     }
     
     /**
@@ -252,9 +301,7 @@ public class Instance implements AgentInstance {
      * @return the short instance id
      */
     public String getShortId() {
-        String fullId = getLongId();
-        
-        return fullId.substring(fullId.length() - 6);
+        return getKey().getShortId();
     }
 
     /**
@@ -264,11 +311,7 @@ public class Instance implements AgentInstance {
      */
     @Override
     public int hashCode() {
-        int hash = 3;
-        hash = 11 * hash + Objects.hashCode(getLongId());
-        hash = 11 * hash + Objects.hashCode(getCreationDateTime());
-        
-        return hash;
+        return getKey().hashCode();
     }
     
     /**
@@ -349,10 +392,8 @@ public class Instance implements AgentInstance {
             return false;
         }
         final Instance other = (Instance) obj;
-        if (!Objects.equals(this.getCreationDateTime(), other.getCreationDateTime())) {
-            return false;
-        }
-        return Objects.equals(this.getLongId(), other.getLongId());
+
+        return getKey().equals(other.getKey());
     }
 
     /**
@@ -19,10 +19,14 @@
 package uk.co.connectina.agentstation.api;
 
 import uk.co.connectina.agentstation.api.client.Collaboration;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 
 import java.io.Serializable;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import uk.co.connectina.agentstation.api.client.AgentInstance;
 import uk.co.connectina.agentstation.api.client.LogType;
 import uk.co.connectina.agentstation.local.LogEntry;
@@ -50,9 +54,36 @@ public interface Station extends Serializable {
      * @param remoteServer the name or IP address of the server hosting the remote Agent Station
      * @param port the port that the station listens to
      * @param placeName the remote place name
+     * @return the outcome of the migration
      * @throws OperationException an error occurred
      */
-    void migrateAgent(Instance instance, String remoteServer, int port, String placeName) throws OperationException;
+    MigrationResult migrateAgent(Instance instance, String remoteServer, int port, String placeName) throws OperationException;
+
+    /**
+     * A request to migrate the agent to a remote Agent Station, running the
+     * network exchange on the station I/O threads.
+     * 
+     * @param instance the agent instance details
+     * @param remoteServer the name or IP address of the server hosting the remote Agent Station
+     * @param port the port that the station listens to
+     * @param placeName the remote place name
+     * @param deadline the time allowed for the migration, or null for no deadline
+     * @return the future outcome of the migration
+     */
+    CompletableFuture<MigrationResult> migrateAgentAsync(Instance instance, String remoteServer, int port, String placeName, Duration deadline);
+
+    /**
+     * A request to migrate several agents to the same remote Agent Station in
+     * one call, sending each distinct package at most once.
+     * 
+     * @param instances the agent instance details
+     * @param remoteServer the name or IP address of the server hosting the remote Agent Station
+     * @param port the port that the station listens to
+     * @param placeName the remote place name
+     * @return the outcome of each migration, in the order of the instances
+     * @throws OperationException an error occurred
+     */
+    List<MigrationResult> migrateAgents(List<Instance> instances, String remoteServer, int port, String placeName) throws OperationException;
     
     /**
      * Creates a Place.
@@ -108,6 +139,23 @@ public interface Station extends Serializable {
      */
     Collaboration collaborate(AgentInstance agentInstance, String agentName, String organisation, int majorVersion, int minorVersion) throws OperationException;
     
+    /**
+     * Records a remote Agent Station that migrated agents to this station, so
+     * that it is told when a permission changes here.
+     * 
+     * @param remoteServer the name or IP address of the server hosting the remote Agent Station
+     * @param port the port that the remote station listens to
+     */
+    void registerPeer(String remoteServer, int port);
+
+    /**
+     * Drops any outcome of a remote permission check that this station cached,
+     * as the remote Agent Station changed that permission.
+     * 
+     * @param permissionIdentity the permission id
+     */
+    void invalidatePermission(PermissionIdentity permissionIdentity);
+
     /**
      * Removes a Place.
      * 
@@ -161,4 +209,12 @@ public interface Station extends Serializable {
      */
     void initiateAnySchedule(Instance instance) throws OperationException;
 
+    /**
+     * Provides the current station statistics, e.g. active agents and start
+     * queue depth, in display order.
+     * 
+     * @return the statistic names and values
+     */
+    Map<String, String> getStatistics();
+
 }
@@ -18,6 +18,10 @@
  */
 package uk.co.connectina.agentstation.api;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -25,6 +29,7 @@ import uk.co.connectina.agentstation.api.client.AgentInstance;
 import uk.co.connectina.agentstation.api.client.Assistant;
 import uk.co.connectina.agentstation.api.client.Collaboration;
 import uk.co.connectina.agentstation.api.client.LogType;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 
 /**
@@ -59,7 +64,52 @@ public final class StationAssistant implements Assistant {
     @Override
     public void migrate(AgentInstance agentInstance, String remoteServer, int port, String placeName)
             throws OperationException {
-        station.migrateAgent((Instance) agentInstance, remoteServer, port, placeName);
+        MigrationResult result = station.migrateAgent((Instance) agentInstance, remoteServer, port, placeName);
+        if (result.getStatus() == MigrationResult.Status.ERROR) {
+            throw new OperationException(result.getMessage());
+        }
+    }
+
+    /**
+     * A request to migrate the agent to a remote Agent Station without waiting
+     * for the network exchange.
+     * 
+     * @param agentInstance the agent instance details
+     * @param remoteServer  the name or IP address of the server hosting the remote
+     *                      Agent Station
+     * @param port          the port that the station listens to
+     * @param placeName     the remote place name
+     * @param deadline      the time allowed for the migration, or null for no
+     *                      deadline
+     * @return the future outcome of the migration
+     */
+    @Override
+    public CompletableFuture<MigrationResult> migrateAsync(AgentInstance agentInstance, String remoteServer, int port, String placeName,
+            Duration deadline) {
+        return station.migrateAgentAsync((Instance) agentInstance, remoteServer, port, placeName, deadline);
+    }
+
+    /**
+     * A request to migrate several agents to the same remote Agent Station in
+     * one call.
+     * 
+     * @param agentInstances the agent instance details
+     * @param remoteServer   the name or IP address of the server hosting the remote
+     *                       Agent Station
+     * @param port           the port that the station listens to
+     * @param placeName      the remote place name
+     * @return the outcome of each migration, in the order of the agent instances
+     * @throws OperationException an error occurred
+     */
+    @Override
+    public List<MigrationResult> migrate(List<AgentInstance> agentInstances, String remoteServer, int port, String placeName)
+            throws OperationException {
+        List<Instance> instances = new ArrayList<>(agentInstances.size());
+        for (AgentInstance agentInstance : agentInstances) {
+            instances.add((Instance) agentInstance);
+        }
+
+        return station.migrateAgents(instances, remoteServer, port, placeName);
     }
 
     /**
@@ -0,0 +1,221 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.api;
+
+import java.io.Serializable;
+
+import uk.co.connectina.agentstation.api.client.LogType;
+
+/**
+ * An event from an Agent Station.
+ *
+ * @author Dr Christos Bohoris
+ */
+public final class StationEvent implements Serializable {
+
+    /**
+     * The event types.
+     */
+    public enum Type {
+        SERVER_START, CREATE_PLACE, REMOVE_PLACE, CREATE_AGENT, REMOVE_AGENT, MIGRATE_AGENT, AGENT_START,
+        AGENT_STOP, AGENT_QUEUED, AGENT_LOG
+    }
+
+    /**
+     * The outcomes of an agent migration.
+     */
+    public enum MigrationOutcome {
+        SUCCESS, NO_PERMISSION, STATION_COMM_FAILED, REGISTRY_COMM_FAILED
+    }
+
+    private final Type type;
+    private final long time;
+    private final Instance instance;
+    private final String name;
+    private final LogType logType;
+    private final String message;
+    private final MigrationOutcome migrationOutcome;
+    private final int port;
+
+    private StationEvent(Type type, Instance instance, String name, LogType logType, String message, int port) {
+        this(type, instance, name, logType, message, null, port);
+    }
+
+    private StationEvent(Type type, Instance instance, String name, LogType logType, String message, MigrationOutcome migrationOutcome, int port) {
+        this.type = type;
+        this.time = System.currentTimeMillis();
+        this.instance = instance;
+        this.name = name;
+        this.logType = logType;
+        this.message = message;
+        this.migrationOutcome = migrationOutcome;
+        this.port = port;
+    }
+
+    /**
+     * Creates a server start event.
+     *
+     * @param error the start error or null on success
+     * @return the event
+     */
+    public static StationEvent serverStart(String error) {
+        return new StationEvent(Type.SERVER_START, null, null, null, error, 0);
+    }
+
+    /**
+     * Creates a place event, i.e. of type CREATE_PLACE or REMOVE_PLACE.
+     *
+     * @param type the event type
+     * @param placeName the place name
+     * @return the event
+     */
+    public static StationEvent place(Type type, String placeName) {
+        return new StationEvent(type, null, placeName, null, null, 0);
+    }
+
+    /**
+     * Creates an agent event, i.e. an agent creation, removal or state event.
+     *
+     * @param type the event type
+     * @param instance the agent instance details
+     * @return the event
+     */
+    public static StationEvent agent(Type type, Instance instance) {
+        return new StationEvent(type, instance, null, null, null, 0);
+    }
+
+    /**
+     * Creates an agent log event.
+     *
+     * @param instance the agent instance details
+     * @param logType the log entry type
+     * @param text the log text
+     * @return the event
+     */
+    public static StationEvent agentLog(Instance instance, LogType logType, String text) {
+        return new StationEvent(Type.AGENT_LOG, instance, null, logType, text, 0);
+    }
+
+    /**
+     * Creates an agent migration event.
+     *
+     * @param instance the agent instance details
+     * @param remoteServer the remote server name or IP address
+     * @param port the remote port
+     * @param outcome the migration outcome
+     * @return the event
+     */
+    public static StationEvent migrateAgent(Instance instance, String remoteServer, int port, MigrationOutcome outcome) {
+        return new StationEvent(Type.MIGRATE_AGENT, instance, remoteServer, null, null, outcome, port);
+    }
+
+    /**
+     * Whether this event reports the state of an agent.
+     *
+     * @return true for start, stop and queued events
+     */
+    public boolean isAgentState() {
+        return type == Type.AGENT_START || type == Type.AGENT_STOP || type == Type.AGENT_QUEUED;
+    }
+
+    /**
+     * Provides the event type.
+     *
+     * @return the event type
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Provides the time the event occurred, in milliseconds from the epoch.
+     *
+     * @return the event time
+     */
+    public long getTime() {
+        return time;
+    }
+
+    /**
+     * Provides the agent instance details, if any.
+     *
+     * @return the agent instance details
+     */
+    public Instance getInstance() {
+        return instance;
+    }
+
+    /**
+     * Provides the place name of a place event or the remote server of a
+     * migration event.
+     *
+     * @return the place or server name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Provides the log entry type of a log event.
+     *
+     * @return the log entry type
+     */
+    public LogType getLogType() {
+        return logType;
+    }
+
+    /**
+     * Provides the log text or the server start error.
+     *
+     * @return the message
+     */
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Provides the outcome of a migration event.
+     *
+     * @return the migration outcome
+     */
+    public MigrationOutcome getMigrationOutcome() {
+        return migrationOutcome;
+    }
+
+    /**
+     * Provides the remote port of a migration event.
+     *
+     * @return the remote port
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * Provides a string representation of the object.
+     *
+     * @return a string representation of the object
+     */
+    @Override
+    public String toString() {
+        return "StationEvent{" + "type=" + type + ", time=" + time + ", instance=" + instance + ", name=" + name
+                + ", message=" + message + ", migrationOutcome=" + migrationOutcome + '}';
+    }
+
+}
@@ -30,9 +30,8 @@ public interface StationListener extends Serializable {
     /**
      * A notification from the Agent Station.
      *
-     * @param notificationName the notification name
-     * @param info the communicated information
+     * @param event the station event
      */
-    void notify(String notificationName, Object... info);
+    void notify(StationEvent event);
 
 }
@@ -20,7 +20,10 @@ package uk.co.connectina.agentstation.api.rmi;
 
 import java.rmi.Remote;
 import java.rmi.RemoteException;
+import java.util.List;
+import java.util.Map;
 import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 
 /**
@@ -37,10 +40,85 @@ public interface RemoteStation extends Remote {
      * @param agentBytes the agent object as a byte array
      * @param packageName the package name
      * @param placeName the place name
-     * @param packageData the package data as a byte array
+     * @param packageData the package data as a byte array, or null when the
+     * remote Agent Station already has the package
      * @throws OperationException an error occurred 
      * @throws RemoteException a remote communication error occurred
      */
     void transferAgent(Instance instance, byte[] agentBytes, String packageName, String placeName, byte[] packageData) throws OperationException, RemoteException;
 
+    /**
+     * A request to migrate the agent to a remote Agent Station. The permission
+     * check, the package transfer and the agent creation happen in the one
+     * call.
+     * 
+     * @param instance the agent instance details
+     * @param agentBytes the agent object as a byte array
+     * @param packageName the package name
+     * @param placeName the place name
+     * @param packageData the package data as a byte array, or null when the
+     * remote Agent Station already has the package
+     * @param senderServer the server hosting the sending Agent Station
+     * @param senderPort the port that the sending Agent Station listens to
+     * @return the outcome of the migration
+     * @throws RemoteException a remote communication error occurred
+     */
+    MigrationResult migrateAgent(Instance instance, byte[] agentBytes, String packageName, String placeName, byte[] packageData, String senderServer, int senderPort) throws RemoteException;
+
+    /**
+     * A request to migrate several agents to a remote Agent Station in one
+     * call. Each distinct package is sent at most once.
+     * 
+     * @param instances the agent instance details
+     * @param agentBytes the agent objects as byte arrays, in the order of the
+     * instances
+     * @param packageNames the package names, in the order of the instances
+     * @param placeName the place name
+     * @param packageData the package data by package name, leaving out the
+     * packages that the remote Agent Station already has
+     * @param senderServer the server hosting the sending Agent Station
+     * @param senderPort the port that the sending Agent Station listens to
+     * @return the outcome of each migration, in the order of the instances
+     * @throws RemoteException a remote communication error occurred
+     */
+    List<MigrationResult> migrateAgents(List<Instance> instances, List<byte[]> agentBytes, List<String> packageNames, String placeName, Map<String, byte[]> packageData, String senderServer, int senderPort) throws RemoteException;
+
+    /**
+     * Drops any outcome of a permission check that the remote Agent Station
+     * cached, as the sending station changed that permission.
+     * 
+     * @param agentName the agent name
+     * @param agentShortId the agent short id
+     * @param placeName the place name
+     * @throws RemoteException a remote communication error occurred
+     */
+    void invalidatePermission(String agentName, String agentShortId, String placeName) throws RemoteException;
+
+    /**
+     * Checks whether the remote Agent Station already has an agent package.
+     *
+     * @param packageName the package name
+     * @param hashCode the package hash code
+     * @return true if the package does not need to be transferred
+     * @throws RemoteException a remote communication error occurred
+     */
+    boolean hasPackage(String packageName, String hashCode) throws RemoteException;
+
+    /**
+     * Checks whether the remote Agent Station reads compressed agent state.
+     *
+     * @return true if the agent state may be sent compressed
+     * @throws RemoteException a remote communication error occurred
+     */
+    boolean supportsCompression() throws RemoteException;
+
+    /**
+     * Checks whether the remote Agent Station reads agents sent in the compact
+     * state format.
+     *
+     * @return true if the agent state may be sent in the compact format
+     * @throws RemoteException a remote communication error occurred
+     */
+    boolean supportsStateCodec() throws RemoteException;
+
 }
@@ -39,6 +39,8 @@ public class AgentStateCellRenderer extends JLabel implements TableCellRenderer
             boolean hasFocus, int rowIndex, int vColIndex) {
         if ("ACTIVE".equals(value)) {
             setText("<html><strong>" + value);
+        } else if ("QUEUED".equals(value)) {
+            setText("<html><em>" + value);
         } else {
             setText(value.toString());
         }
@@ -18,14 +18,22 @@
  */
 package uk.co.connectina.agentstation.desktop;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import javax.swing.DefaultListModel;
+import javax.swing.JMenuItem;
 import javax.swing.JOptionPane;
+import javax.swing.JPopupMenu;
 import javax.swing.ListSelectionModel;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.event.ListSelectionEvent;
+import uk.co.connectina.agentstation.api.StationEvent;
 import uk.co.connectina.agentstation.api.StationListener;
 import uk.co.connectina.agentstation.App;
+import uk.co.connectina.agentstation.api.AgentKey;
 import uk.co.connectina.agentstation.api.Instance;
 import uk.co.connectina.agentstation.api.client.OperationException;
 import org.apache.logging.log4j.LogManager;
@@ -37,7 +45,9 @@ import java.awt.event.ActionListener;
 import java.io.IOException;
 import java.io.InputStream;
 import java.text.MessageFormat;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.util.ArrayList;
 import javax.imageio.ImageIO;
 import javax.swing.SwingConstants;
@@ -47,6 +57,7 @@ import uk.co.connectina.agentstation.api.client.LogType;
 import uk.co.connectina.agentstation.local.RemoteSupport;
 import uk.co.connectina.agentstation.local.AgentStation;
 import uk.co.connectina.agentstation.local.IOAccess;
+import uk.co.connectina.agentstation.local.LogEntry;
 import uk.co.connectina.agentstation.local.ServerRunnable;
 import uk.co.connectina.agentstation.local.StationInfo;
 
@@ -70,6 +81,9 @@ public class AgentStationFrame extends javax.swing.JFrame implements StationList
     private final DefaultListModel<String> placeListModel = new DefaultListModel<>();
     private final StationInfo stationInfo;
     private transient ServerRunnable serverRunnable;
+    private final transient UIUpdateQueue updateQueue = new UIUpdateQueue(this::incomingBatch);
+    private final PropertyTableModel stationInfoTableModel = new PropertyTableModel(new String[0], new String[0]);
+    private static final int STATISTICS_REFRESH_MILLIS = 2000;
     private static final Logger LOGGER = LogManager.getLogger(AgentStationFrame.class.toString());
 
     /**
@@ -178,6 +192,21 @@ public class AgentStationFrame extends javax.swing.JFrame implements StationList
         addPlaceButton.addActionListener(new AddPlaceListener(this, agentStation, agentRegistry, logTableModel));
         removePlaceButton.addActionListener(new RemovePlaceListener(this, placeList, agentStation, agentRegistry, placeListModel, logTableModel));
         permissionButton.addActionListener(new PlacePermissionsListener(this, placeList, agentStation, agentRegistry));
+        initiateMigrationMenus();
+    }
+
+    private void initiateMigrationMenus() {
+        JPopupMenu agentMenu = new JPopupMenu();
+        JMenuItem migrateAgentsItem = new JMenuItem("Migrate Selected Agents...");
+        migrateAgentsItem.addActionListener(new MigrateAgentsListener(this, agentTable, agentTableModel, placeList, agentStation, agentRegistry, logTableModel, false));
+        agentMenu.add(migrateAgentsItem);
+        agentTable.setComponentPopupMenu(agentMenu);
+
+        JPopupMenu placeMenu = new JPopupMenu();
+        JMenuItem migratePlaceItem = new JMenuItem("Migrate All Agents in Place...");
+        migratePlaceItem.addActionListener(new MigrateAgentsListener(this, agentTable, agentTableModel, placeList, agentStation, agentRegistry, logTableModel, true));
+        placeMenu.add(migratePlaceItem);
+        placeList.setComponentPopupMenu(placeMenu);
     }
 
     private void initiateAgentTableListener() {
@@ -192,12 +221,7 @@ public class AgentStationFrame extends javax.swing.JFrame implements StationList
         placeList.addListSelectionListener((ListSelectionEvent event) -> {
             if (!event.getValueIsAdjusting() && placeList.getSelectedValue() != null) {
                 try {
-                    List<Instance> instances = agentRegistry.lookupAgentsByPlaceName(placeList.getSelectedValue());
-                    agentTableModel.clear();
-                    for (Instance instance : instances) {
-                        agentTableModel.add(instance);
-                    }
-                    agentTableModel.fireTableDataChanged();
+                    agentTableModel.setAll(agentRegistry.lookupAgentsByPlaceName(placeList.getSelectedValue()));
                     removePlaceButton.setEnabled(placeList.getSelectedIndex() >= 0 && !placeListModel.get(placeList.getSelectedIndex()).equals("Default"));
                     agentLogTableModel.clear();
                     agentInstanceTableModel.clear();
@@ -221,22 +245,35 @@ public class AgentStationFrame extends javax.swing.JFrame implements StationList
     }
 
     private void initiateStationInfoTable() {
+        updateStationInfoTable();
+        infoStationTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        infoStationTable.setModel(stationInfoTableModel);
+        infoStationTable.getColumnModel().getColumn(0).setMaxWidth(160);
+        infoStationTable.getColumnModel().getColumn(0).setPreferredWidth(160);
+
+        // Keep the station statistics current
+        new Timer(STATISTICS_REFRESH_MILLIS, (ActionEvent event) -> updateStationInfoTable()).start();
+    }
+
+    private void updateStationInfoTable() {
         String activeStation = IOAccess.getServerAndPortText(stationInfo.getServer(), stationInfo.getPort());
         String protocol = stationInfo.getRemote() == RemoteSupport.RMI ? "JRMP" : "HTTP/2, SSL, TLS";
         String rpc = stationInfo.getRemote() == RemoteSupport.RMI ? "RMI" : "GRPC";
 
-        String[] properties = {"Name", "Version", "Started", "Protocol", "RPC", "Station At"};
-        String[] values = {stationInfo.getName(), App.getAppProperty(App.APP_VERSION), App.DATETIME_FORMATTER.format(startTime), protocol, rpc, activeStation};
+        List<String> properties = new ArrayList<>(List.of("Name", "Version", "Started", "Protocol", "RPC", "Station At"));
+        List<String> values = new ArrayList<>(List.of(stationInfo.getName(), App.getAppProperty(App.APP_VERSION), App.DATETIME_FORMATTER.format(startTime), protocol, rpc, activeStation));
+        if (agentStation != null) {
+            agentStation.getStatistics().forEach((String name, String value) -> {
+                properties.add(name);
+                values.add(value);
+            });
+        }
 
-        PropertyTableModel stationInfoTableModel = new PropertyTableModel(properties, values);
-        infoStationTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
-        infoStationTable.setModel(stationInfoTableModel);
-        infoStationTable.getColumnModel().getColumn(0).setMaxWidth(160);
-        infoStationTable.getColumnModel().getColumn(0).setPreferredWidth(160);
+        stationInfoTableModel.update(properties.toArray(new String[0]), values.toArray(new String[0]));
     }
 
     private void initiateAgentTable() {
-        agentTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        agentTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         agentTable.setModel(agentTableModel);
         agentTable.getColumnModel().getColumn(0).setMinWidth(160);
         agentTable.getColumnModel().getColumn(0).setPreferredWidth(160);
@@ -273,156 +310,173 @@ public class AgentStationFrame extends javax.swing.JFrame implements StationList
     }
 
     private void updateAgentUIStates() {
+        Instance instance = getSelectedAgent();
+        agentInstanceTableModel.update(instance);
+        agentLogTableModel.update(instance != null ? agentStation.getLog(instance) : null);
+        updateAgentButtons(instance);
+    }
+
+    private void updateAgentButtons(Instance instance) {
+        boolean selected = instance != null;
+        startButton.setEnabled(selected && instance.getState() == Instance.State.INACTIVE);
+        stopButton.setEnabled(selected && instance.getState() != Instance.State.INACTIVE);
+        changeButton.setEnabled(selected);
+        removeButton.setEnabled(selected);
+        exportButton.setEnabled(selected);
+    }
+
+    private Instance getSelectedAgent() {
         int selected = agentTable.getSelectedRow();
-        agentInstanceTableModel.update(selected > -1 ? agentTableModel.get(agentTable.getSelectedRow()) : null);
-        agentInstanceTableModel.fireTableDataChanged();
-
-        agentLogTableModel.clear();
-
-        startButton.setEnabled(selected >= 0);
-        stopButton.setEnabled(selected >= 0);
-        changeButton.setEnabled(selected >= 0);
-        removeButton.setEnabled(selected >= 0);
-        exportButton.setEnabled(selected >= 0);
-
-        if (selected > -1) {
-            Instance instance = agentTableModel.get(agentTable.getSelectedRow());
-            agentLogTableModel.update(agentStation.getLog(instance));
-            startButton.setEnabled(instance.getState() == Instance.State.INACTIVE);
-            stopButton.setEnabled(instance.getState() == Instance.State.ACTIVE);
+
+        return selected > -1 ? agentTableModel.get(selected) : null;
+    }
+
+    private void selectAgentRow(int index) {
+        if (index > -1 && agentTable.getSelectedRow() != index) {
+            agentTable.getSelectionModel().setSelectionInterval(index, index);
         }
     }
 
     @Override
-    public void notify(String operationName, Object... info) {
-        switch (operationName) {
-            case "agentLog" ->
-                incomingAgentLog(info);
-            case "serverStart" ->
-                incomingServerStart(info);
-            case "createPlace" ->
-                incomingCreatePlace(info);
-            case "createAgent" ->
-                incomingCreateAgent(info);
-            case "removeAgent" ->
-                incomingRemoveAgent(info);
-            case "removePlace" ->
-                incomingRemovePlace(info);
-            case "migrateAgent" ->
-                incomingMigrateAgent(info);
-            case "start", "stop" ->
-                incomingStartStop(info, operationName);  
+    public void notify(StationEvent event) {
+        if (event.getType() == StationEvent.Type.SERVER_START) {
+            incomingServerStart(event);
+        } else {
+            updateQueue.offer(event);
+        }
+    }
+
+    private void incomingBatch(List<StationEvent> batch) {
+        Instance selectedBefore = getSelectedAgent();
+        Map<AgentKey, Instance> states = new LinkedHashMap<>();
+        Instance lastState = null;
+        List<LogEntry> selectedLog = new ArrayList<>();
+        for (StationEvent event : batch) {
+            switch (event.getType()) {
+                case AGENT_START, AGENT_STOP, AGENT_QUEUED -> {
+                    lastState = event.getInstance();
+                    states.put(lastState.getKey(), lastState);
+                    incomingStartStop(event);
+                }
+                case AGENT_LOG -> {
+                    if (selectedBefore != null && selectedBefore.equals(event.getInstance())) {
+                        selectedLog.add(incomingAgentLog(event));
+                    }
+                }
+                default ->
+                    incomingEvent(event);
+            }
+        }
+
+        // One row range update and one selection change per batch
+        if (lastState != null) {
+            agentTableModel.updateStates(states.values());
+            selectAgentRow(agentTableModel.indexOf(lastState));
+        }
+
+        // A changed selection has already reloaded the whole log of the new agent
+        Instance selectedAfter = getSelectedAgent();
+        if (selectedAfter != null && selectedAfter.equals(selectedBefore)) {
+            Collections.reverse(selectedLog);
+            agentLogTableModel.addAll(selectedLog);
+            updateAgentButtons(selectedAfter);
+        }
+    }
+
+    private void incomingEvent(StationEvent event) {
+        switch (event.getType()) {
+            case CREATE_PLACE ->
+                incomingCreatePlace(event);
+            case CREATE_AGENT ->
+                incomingCreateAgent(event);
+            case REMOVE_AGENT ->
+                incomingRemoveAgent(event);
+            case REMOVE_PLACE ->
+                incomingRemovePlace(event);
+            case MIGRATE_AGENT ->
+                incomingMigrateAgent(event);
             default -> {
                 String activeServer = MessageFormat.format(AGENT_STATION_FORMAT, stationInfo.getName());
                 logTableModel.addError(activeServer, "Unknown operation name");
-                LOGGER.error("{}: {} {}", "Agent Station", "Unknown operation name:", operationName);
+                LOGGER.error("{}: {} {}", "Agent Station", "Unknown operation name:", event.getType());
             }
         }
     }
 
-    private void incomingStartStop(Object[] info, String operationName) {
-        SwingUtilities.invokeLater(() -> {
-            Instance inst = ((Instance) info[0]);
-            agentTableModel.updateState(inst);
-            final int index = agentTableModel.indexOf(inst);
-            agentTable.getSelectionModel().setSelectionInterval(index, index);
-            agentTableModel.fireTableDataChanged();
-
-            if (operationName.equals("start")) {
-                logInfo(inst, "Agent successfully started");
-            } else if (operationName.equals("stop")) {
-                logInfo(inst, "Agent successfully stopped");
-            }
-
-            agentTable.getSelectionModel().setSelectionInterval(index, index);
-        });
+    private void incomingStartStop(StationEvent event) {
+        Instance inst = event.getInstance();
+        if (event.getType() == StationEvent.Type.AGENT_START) {
+            logInfo(inst, "Agent successfully started");
+        } else if (event.getType() == StationEvent.Type.AGENT_STOP) {
+            logInfo(inst, "Agent successfully stopped");
+        } else if (event.getType() == StationEvent.Type.AGENT_QUEUED) {
+            logInfo(inst, "Agent queued until an active slot is free");
+        }
     }
 
-    private void incomingMigrateAgent(Object[] info) {
-        SwingUtilities.invokeLater(() -> {
-            Instance inst = (Instance) info[0];
-            String remoteServer = (String) info[1];
-            String remotePort = (String) info[2];
-            String remoteName = IOAccess.getServerAndPortText(remoteServer, Integer.valueOf(remotePort));
-            String msg = (String) info[3];
-            String dest = IOAccess.getServerAndPortText(remoteServer, Integer.valueOf(remotePort));
-
-            String about = IOAccess.getAboutAgent(inst);
-            String plainAbout = IOAccess.getPlainAboutAgent(inst);
-            String message;
-            switch (msg) {
-                case "noPermission" -> {
-                    message = MessageFormat.format("No permission to migrate to {0}", dest);
-                    logTableModel.addError(about, message);
-                    LOGGER.error(LOG_FORMAT, plainAbout, message);
-                }
-                case "registryCommFailed" -> {
-                    message = MessageFormat.format("Cannot migrate to {0} as communication with remote registry failed", dest);
-                    logTableModel.addError(about, message);
-                    LOGGER.error(LOG_FORMAT, plainAbout, message);
-                }
-                case "stationCommFailed" -> {
-                    message = MessageFormat.format("Cannot migrate to {0} as communication with remote station failed", remoteName);
-                    logTableModel.addError(about, message);
-                    LOGGER.error(LOG_FORMAT, plainAbout, message);
-                }
-                case "success" ->
-                    logInfo(inst, MessageFormat.format("Successfully migrated to {0}", dest));
-                default -> {
-                    String activeServer = MessageFormat.format(AGENT_STATION_FORMAT, stationInfo.getName());
-                    logTableModel.addError(activeServer, "Unknown notification message");
-                    LOGGER.error("{}: {} {}", activeServer, "Unknown notification message:", msg);
-                }
+    private void incomingMigrateAgent(StationEvent event) {
+        Instance inst = event.getInstance();
+        String remoteName = IOAccess.getServerAndPortText(event.getName(), event.getPort());
+        String dest = IOAccess.getServerAndPortText(event.getName(), event.getPort());
+
+        String about = IOAccess.getAboutAgent(inst);
+        String plainAbout = IOAccess.getPlainAboutAgent(inst);
+        String message;
+        switch (event.getMigrationOutcome()) {
+            case NO_PERMISSION -> {
+                message = MessageFormat.format("No permission to migrate to {0}", dest);
+                logTableModel.addError(about, message);
+                LOGGER.error(LOG_FORMAT, plainAbout, message);
             }
-        });
+            case REGISTRY_COMM_FAILED -> {
+                message = MessageFormat.format("Cannot migrate to {0} as communication with remote registry failed", dest);
+                logTableModel.addError(about, message);
+                LOGGER.error(LOG_FORMAT, plainAbout, message);
+            }
+            case STATION_COMM_FAILED -> {
+                message = MessageFormat.format("Cannot migrate to {0} as communication with remote station failed", remoteName);
+                logTableModel.addError(about, message);
+                LOGGER.error(LOG_FORMAT, plainAbout, message);
+            }
+            case SUCCESS ->
+                logInfo(inst, MessageFormat.format("Successfully migrated to {0}", dest));
+        }
     }
 
-    private void incomingRemovePlace(Object[] info) {
-        SwingUtilities.invokeLater(() -> {
-            String selectedPlaceName = (String) info[0];
-            placeListModel.removeElement(selectedPlaceName);
-            placeList.setSelectedIndex(placeListModel.getSize() - 1);
-            logPlainInfo(IOAccess.getAboutPlace(selectedPlaceName), "Successfully created");
-        });
+    private void incomingRemovePlace(StationEvent event) {
+        String selectedPlaceName = event.getName();
+        placeListModel.removeElement(selectedPlaceName);
+        placeList.setSelectedIndex(placeListModel.getSize() - 1);
+        logPlainInfo(IOAccess.getAboutPlace(selectedPlaceName), "Successfully created");
     }
 
-    private void incomingRemoveAgent(Object[] info) {
-        SwingUtilities.invokeLater(() -> {
-            Instance inst = (Instance) info[0];
-
-            agentTableModel.remove(inst);
-            agentTableModel.fireTableDataChanged();
-            agentTable.getSelectionModel().setSelectionInterval(agentTableModel.getRowCount() - 1, agentTableModel.getRowCount() - 1);
-            logInfo(inst, "Successfully removed");
-        });
+    private void incomingRemoveAgent(StationEvent event) {
+        Instance inst = event.getInstance();
+        agentTableModel.remove(inst);
+        selectAgentRow(agentTableModel.getRowCount() - 1);
+        logInfo(inst, "Successfully removed");
     }
 
-    private void incomingCreateAgent(Object[] info) {
-        SwingUtilities.invokeLater(() -> {
-            Instance inst = (Instance) info[0];
-            if (placeList.getSelectedValue().equals(inst.getPlaceName())) {
-                agentTableModel.add(inst);
-                agentTable.getSelectionModel().setSelectionInterval(agentTableModel.getRowCount() - 1, agentTableModel.getRowCount() - 1);
-                agentTableModel.fireTableDataChanged();
-                logInfo(inst, "Agent successfully created");
-            }
-        });
+    private void incomingCreateAgent(StationEvent event) {
+        Instance inst = event.getInstance();
+        if (placeList.getSelectedValue().equals(inst.getPlaceName())) {
+            agentTableModel.add(inst);
+            selectAgentRow(agentTableModel.getRowCount() - 1);
+            logInfo(inst, "Agent successfully created");
+        }
     }
 
-    private void incomingCreatePlace(Object[] info) {
-        SwingUtilities.invokeLater(() -> {
-            placeListModel.addElement((String) info[0]);
-            placeList.setSelectedIndex(placeListModel.getSize() - 1);
-            agentTableModel.fireTableDataChanged();
-            logPlainInfo(IOAccess.getAboutPlace((String) info[0]), "Place successfully created");
-        });
+    private void incomingCreatePlace(StationEvent event) {
+        placeListModel.addElement(event.getName());
+        placeList.setSelectedIndex(placeListModel.getSize() - 1);
+        logPlainInfo(IOAccess.getAboutPlace(event.getName()), "Place successfully created");
     }
 
-    private void incomingServerStart(Object[] info) {
+    private void incomingServerStart(StationEvent event) {
         String activeServer = MessageFormat.format(AGENT_STATION_FORMAT, stationInfo.getName());
-        if (info[0] != null) {
-            logTableModel.addError(activeServer, (String) info[0]);
-            JOptionPane.showMessageDialog(this, info[0], ERROR_TITLE, JOptionPane.ERROR_MESSAGE);
+        if (event.getMessage() != null) {
+            logTableModel.addError(activeServer, event.getMessage());
+            JOptionPane.showMessageDialog(this, event.getMessage(), ERROR_TITLE, JOptionPane.ERROR_MESSAGE);
 
             System.exit(1);
         } else {
@@ -432,11 +486,10 @@ public class AgentStationFrame extends javax.swing.JFrame implements StationList
         }
     }
 
-    private void incomingAgentLog(Object[] info) {
-        Instance instance = (Instance) info[0];
-        if (agentTable.getSelectedRow() > -1 && agentTableModel.get(agentTable.getSelectedRow()).equals(instance)) {
-            agentLogTableModel.update(agentStation.getLog(instance));
-        }
+    private LogEntry incomingAgentLog(StationEvent event) {
+        LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(event.getTime()), ZoneId.systemDefault());
+
+        return new LogEntry(dateTime, event.getLogType(), IOAccess.getAboutAgent(event.getInstance()), event.getMessage());
     }
 
     private void logPlainInfo(String about, String info) {
@@ -19,22 +19,29 @@
 package uk.co.connectina.agentstation.desktop;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.swing.table.AbstractTableModel;
+import uk.co.connectina.agentstation.api.AgentKey;
 import uk.co.connectina.agentstation.api.Instance;
 
 /**
- * The table model for agents within a place.
+ * The table model for agents within a place. Rows are looked up by agent key
+ * and changes are reported as row level table events.
  *
  * @author Dr Christos Bohoris
  */
 public class AgentTableModel extends AbstractTableModel {
 
     private final List<Instance> instances;
+    private final Map<AgentKey, Integer> rows;
     private final String[] columnNames = {"Agent Name", "Organisation", "Version", "Id", "State"};
 
     AgentTableModel() {
         instances = new ArrayList<>();
+        rows = new HashMap<>();
     }
 
     public Instance get(int index) {
@@ -42,31 +49,71 @@ public class AgentTableModel extends AbstractTableModel {
     }
     
     public int indexOf(Instance instance) {
-        return instances.indexOf(instance);
+        Integer index = rows.get(instance.getKey());
+
+        return index != null ? index : -1;
     }
 
     public void clear() {
         instances.clear();
+        rows.clear();
+        fireTableDataChanged();
+    }
+
+    public void setAll(List<Instance> inputInstances) {
+        instances.clear();
+        rows.clear();
+        for (Instance instance : inputInstances) {
+            if (!rows.containsKey(instance.getKey())) {
+                rows.put(instance.getKey(), instances.size());
+                instances.add(instance);
+            }
+        }
+        fireTableDataChanged();
     }
     
     public void updateState(Instance instance) {
-        int index = instances.indexOf(instance);
+        int index = indexOf(instance);
         if (index >= 0) {
             instances.get(index).setState(instance.getState());
-            fireTableDataChanged();
+            fireTableRowsUpdated(index, index);
+        }
+    }
+
+    public void updateStates(Collection<Instance> inputInstances) {
+        int first = Integer.MAX_VALUE;
+        int last = -1;
+        for (Instance instance : inputInstances) {
+            int index = indexOf(instance);
+            if (index >= 0) {
+                instances.get(index).setState(instance.getState());
+                first = Math.min(first, index);
+                last = Math.max(last, index);
+            }
+        }
+        if (last >= 0) {
+            fireTableRowsUpdated(first, last);
         }
     }
 
     public void add(Instance instance) {
-        if (!instances.contains(instance)) {
+        if (!rows.containsKey(instance.getKey())) {
+            int index = instances.size();
+            rows.put(instance.getKey(), index);
             instances.add(instance);
-            fireTableDataChanged();
+            fireTableRowsInserted(index, index);
         }
     }
 
     public void remove(Instance instance) {
-        instances.remove(instance);
-        fireTableDataChanged();
+        Integer index = rows.remove(instance.getKey());
+        if (index != null) {
+            instances.remove(index.intValue());
+            for (int i = index; i < instances.size(); i++) {
+                rows.put(instances.get(i).getKey(), i);
+            }
+            fireTableRowsDeleted(index, index);
+        }
     }
 
     @Override
@@ -47,7 +47,7 @@ public class InstanceTableModel extends AbstractTableModel {
     }
 
     public void update(Instance instance) {
-        clear();
+        info.clear();
         if (instance != null) {
             Identity id = instance.getIdentity();
             info.add(id.getName());
@@ -58,8 +58,8 @@ public class InstanceTableModel extends AbstractTableModel {
             info.add(String.valueOf(id.getMinorVersion()));
             info.add(id.getDescription());
             info.add(App.DATETIME_FORMATTER.format(instance.getCreationDateTime()));
-            fireTableDataChanged();
         }
+        fireTableDataChanged();
     }
 
     @Override
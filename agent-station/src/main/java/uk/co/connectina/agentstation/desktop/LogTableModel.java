@@ -48,43 +48,62 @@ public class LogTableModel extends AbstractTableModel {
     }
 
     public void clear() {
-        entries.clear();
-        fireTableDataChanged();
+        int size = entries.size();
+        if (size > 0) {
+            entries.clear();
+            fireTableRowsDeleted(0, size - 1);
+        }
     }
 
     public void update(List<LogEntry> inputEntries) {
         entries.clear();
         if (inputEntries != null && !inputEntries.isEmpty()) {
-            for (LogEntry l : inputEntries) {
-                entries.add(new LogEntry(l.getDateTime(), l.getType(), l.getAbout(), l.getMessage()));
-                maintainMaximumSize();
-            }
+            // The station hands out a fresh list on every read so the entries need no copying
+            entries.addAll(inputEntries.subList(0, Math.min(LOG_LIMIT, inputEntries.size())));
         }
         fireTableDataChanged();
     }
 
-    public void add(LocalDateTime dateTime, LogType type, String about, String message) {
-        entries.add(0, new LogEntry(dateTime, type, about, message));
+    /**
+     * Inserts a batch of entries, ordered newest first, at the top of the table.
+     *
+     * @param inputEntries the entries to insert
+     */
+    public void addAll(List<LogEntry> inputEntries) {
+        if (inputEntries.isEmpty()) {
+
+            return;
+        }
+
+        int count = Math.min(LOG_LIMIT, inputEntries.size());
+        entries.addAll(0, inputEntries.subList(0, count));
+        fireTableRowsInserted(0, count - 1);
         maintainMaximumSize();
-        fireTableDataChanged();
+    }
+
+    public void add(LocalDateTime dateTime, LogType type, String about, String message) {
+        insert(new LogEntry(dateTime, type, about, message));
     }
 
     public void addInfo(String about, String message) {
-        entries.add(0, new LogEntry(LocalDateTime.now(), LogType.INFO, about, message));
-        maintainMaximumSize();
-        fireTableDataChanged();
+        insert(new LogEntry(LocalDateTime.now(), LogType.INFO, about, message));
     }
 
     public void addError(String about, String message) {
-        entries.add(0, new LogEntry(LocalDateTime.now(), LogType.ERROR, about, message));
+        insert(new LogEntry(LocalDateTime.now(), LogType.ERROR, about, message));
+    }
+
+    private void insert(LogEntry entry) {
+        entries.add(0, entry);
+        fireTableRowsInserted(0, 0);
         maintainMaximumSize();
-        fireTableDataChanged();
     }
 
     private void maintainMaximumSize() {
         int size = entries.size();
         if (size > LOG_LIMIT) {
             entries.subList(LOG_LIMIT, size).clear();
+            fireTableRowsDeleted(LOG_LIMIT, size - 1);
         }
     }
 
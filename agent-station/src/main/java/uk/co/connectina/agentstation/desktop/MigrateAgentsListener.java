@@ -0,0 +1,144 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.desktop;
+
+import java.awt.GridLayout;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.util.ArrayList;
+import java.util.List;
+import javax.swing.JLabel;
+import javax.swing.JList;
+import javax.swing.JOptionPane;
+import javax.swing.JPanel;
+import javax.swing.JTable;
+import javax.swing.JTextField;
+import javax.swing.SwingUtilities;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.client.Assistant;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import static uk.co.connectina.agentstation.desktop.AgentStationFrame.ERROR_TITLE;
+import uk.co.connectina.agentstation.local.IOAccess;
+
+/**
+ * Handles the actions required for migrating the selected agents, or all the
+ * agents of the selected place, to a remote Agent Station in one call.
+ *
+ * @author Dr Christos Bohoris
+ */
+public class MigrateAgentsListener implements ActionListener {
+
+    private final AgentStationFrame frame;
+    private final JTable agentTable;
+    private final AgentTableModel agentTableModel;
+    private final JList<String> placeList;
+    private final Station agentStation;
+    private final Registry agentRegistry;
+    private final LogTableModel logTableModel;
+    private final boolean wholePlace;
+    private static final Logger LOGGER = LogManager.getLogger(MigrateAgentsListener.class.toString());
+
+    MigrateAgentsListener(AgentStationFrame frame, JTable agentTable, AgentTableModel agentTableModel, JList<String> placeList, Station agentStation, Registry agentRegistry, LogTableModel logTableModel, boolean wholePlace) {
+        this.frame = frame;
+        this.agentTable = agentTable;
+        this.agentTableModel = agentTableModel;
+        this.placeList = placeList;
+        this.agentStation = agentStation;
+        this.agentRegistry = agentRegistry;
+        this.logTableModel = logTableModel;
+        this.wholePlace = wholePlace;
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent event) {
+        String placeName = placeList.getSelectedValue();
+        List<Instance> instances = new ArrayList<>();
+        try {
+            if (wholePlace) {
+                if (placeName == null) {
+
+                    return;
+                }
+                instances.addAll(agentRegistry.lookupAgentsByPlaceName(placeName));
+            } else {
+                for (int row : agentTable.getSelectedRows()) {
+                    instances.add(agentTableModel.get(row));
+                }
+            }
+        } catch (OperationException e) {
+            logTableModel.addError(IOAccess.getAboutPlace(placeName), e.getMessage());
+            LOGGER.error("{}: {}", IOAccess.getAboutPlace(placeName), e.getMessage());
+
+            return;
+        }
+        if (instances.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "There are no agents to migrate.", ERROR_TITLE, JOptionPane.ERROR_MESSAGE);
+
+            return;
+        }
+
+        JTextField serverField = new JTextField();
+        JTextField portField = new JTextField();
+        JTextField remotePlaceField = new JTextField(Assistant.DEFAULT_PLACE);
+        JPanel panel = new JPanel(new GridLayout(0, 2, 8, 4));
+        panel.add(new JLabel("Server:"));
+        panel.add(serverField);
+        panel.add(new JLabel("Port:"));
+        panel.add(portField);
+        panel.add(new JLabel("Remote place:"));
+        panel.add(remotePlaceField);
+        String title = "Migrate " + instances.size() + (instances.size() == 1 ? " Agent" : " Agents");
+        if (JOptionPane.showConfirmDialog(frame, panel, title, JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE) != JOptionPane.OK_OPTION) {
+
+            return;
+        }
+
+        String server = serverField.getText().trim();
+        String remotePlace = remotePlaceField.getText().trim();
+        int port;
+        try {
+            port = Integer.parseInt(portField.getText().trim());
+        } catch (NumberFormatException e) {
+            port = -1;
+        }
+        if (server.isBlank() || remotePlace.isBlank() || port < 1) {
+            JOptionPane.showMessageDialog(frame, "The server, a valid port and the remote place are mandatory.", ERROR_TITLE, JOptionPane.ERROR_MESSAGE);
+
+            return;
+        }
+
+        // The outcome of each agent arrives as a station event, only a failed call is reported here
+        final int remotePort = port;
+        Thread thread = new Thread(() -> {
+            try {
+                agentStation.migrateAgents(instances, server, remotePort, remotePlace);
+            } catch (OperationException e) {
+                SwingUtilities.invokeLater(() -> logTableModel.addError(IOAccess.getAboutPlace(placeName), e.getMessage()));
+                LOGGER.error("{}: {}", IOAccess.getAboutPlace(placeName), e.getMessage());
+            }
+        }, "Agent Migration");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+}
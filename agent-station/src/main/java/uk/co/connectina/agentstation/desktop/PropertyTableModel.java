@@ -28,14 +28,20 @@ import javax.swing.table.AbstractTableModel;
 public class PropertyTableModel extends AbstractTableModel {
 
     private final String[] columnNames = {"Property", "Value"};
-    private final String[] properties;
-    private final String[] values;
+    private String[] properties;
+    private String[] values;
 
     PropertyTableModel(String[] properties, String[] values) {
         this.properties = properties;
         this.values = values;
     }
 
+    void update(String[] properties, String[] values) {
+        this.properties = properties;
+        this.values = values;
+        fireTableDataChanged();
+    }
+
     @Override
     public int getRowCount() {
 
@@ -0,0 +1,75 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.desktop;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import javax.swing.Timer;
+import uk.co.connectina.agentstation.api.StationEvent;
+
+/**
+ * Collects station events arriving from any thread and hands them over to the
+ * event dispatch thread in frame-rate-limited batches, so that a burst of
+ * events results in a single round of table updates and repaints.
+ *
+ * @author Dr Christos Bohoris
+ */
+class UIUpdateQueue {
+
+    static final int FRAME_RATE = 25;
+    private final Queue<StationEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private final Consumer<List<StationEvent>> consumer;
+    private final Timer timer;
+
+    UIUpdateQueue(Consumer<List<StationEvent>> consumer) {
+        this.consumer = consumer;
+        timer = new Timer(1000 / FRAME_RATE, event -> flush());
+        timer.setRepeats(false);
+    }
+
+    /**
+     * Queues an event for the next batch. Safe to call from any thread.
+     *
+     * @param event the station event
+     */
+    void offer(StationEvent event) {
+        pending.add(event);
+        if (scheduled.compareAndSet(false, true)) {
+            timer.restart();
+        }
+    }
+
+    private void flush() {
+        scheduled.set(false);
+        List<StationEvent> batch = new ArrayList<>();
+        StationEvent event;
+        while ((event = pending.poll()) != null) {
+            batch.add(event);
+        }
+        if (!batch.isEmpty()) {
+            consumer.accept(batch);
+        }
+    }
+
+}
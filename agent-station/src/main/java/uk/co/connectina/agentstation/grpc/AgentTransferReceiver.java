@@ -0,0 +1,241 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.grpc;
+
+import io.grpc.stub.StreamObserver;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferChunk;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferHeader;
+import uk.co.connectina.agentstation.api.grpc.MigrationResultType;
+import uk.co.connectina.agentstation.local.IOAccess;
+
+/**
+ * Receives a streamed agent migration. The permission is checked as soon as
+ * the header arrives, so that a rejected agent is answered before its package
+ * is sent. The package chunks are written straight to a temporary file and
+ * hashed as they arrive; the package only replaces the local copy once its
+ * hash matches the hash code of the agent identity.
+ * <p>
+ * In a batch, several agents follow each other in the one stream, each header
+ * starting the next agent, and every agent is answered in the order it
+ * arrived. A package is only sent with the first agent that needs it, so it is
+ * kept even when that agent is rejected.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentTransferReceiver implements StreamObserver<AgentTransferChunk> {
+
+    private static final Logger LOGGER = LogManager.getLogger(AgentTransferReceiver.class.toString());
+    private final RemoteStationServer server;
+    private final StreamObserver<MigrationResultType> responseObserver;
+    private final boolean batch;
+    private AgentTransferHeader header;
+    private Instance instance;
+    private Permission permission;
+    private Path tempFile;
+    private FileChannel channel;
+    private MessageDigest digest;
+    private long received;
+    private boolean answered;
+    private boolean finished;
+
+    AgentTransferReceiver(RemoteStationServer server, StreamObserver<MigrationResultType> responseObserver, boolean batch) {
+        this.server = server;
+        this.responseObserver = responseObserver;
+        this.batch = batch;
+    }
+
+    @Override
+    public void onNext(AgentTransferChunk chunk) {
+        if (finished) {
+
+            return;
+        }
+
+        try {
+            if (chunk.hasHeader()) {
+                if (header != null) {
+                    if (!batch) {
+                        throw new IOException("The transfer header arrived twice.");
+                    }
+                    completeAgent();
+                }
+                openTransfer(chunk.getHeader());
+            } else if (channel != null) {
+                for (ByteBuffer buffer : chunk.getPackageChunk().asReadOnlyByteBufferList()) {
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                received += chunk.getPackageChunk().size();
+            } else if (header == null || !answered) {
+                throw new IOException("An unexpected package chunk arrived.");
+            }
+        } catch (IOException | NoSuchAlgorithmException | OperationException e) {
+            LOGGER.error(e);
+            discard();
+            if (header == null) {
+                // There is no agent to answer for, so the stream ends
+                finished = true;
+                responseObserver.onNext(MigrationResultType.newBuilder().setStatus(MigrationResultType.Status.ERROR).setMessage(e.getMessage()).build());
+                responseObserver.onCompleted();
+            } else if (!answered) {
+                answer(MigrationResultType.Status.ERROR, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        LOGGER.error(t);
+        finished = true;
+        discard();
+    }
+
+    @Override
+    public void onCompleted() {
+        if (finished) {
+
+            return;
+        }
+        if (header != null) {
+            completeAgent();
+        } else if (!batch) {
+            answer(MigrationResultType.Status.ERROR, "The transfer header is missing.");
+        }
+        if (!finished) {
+            finished = true;
+            responseObserver.onCompleted();
+        }
+    }
+
+    private void openTransfer(AgentTransferHeader transferHeader) throws IOException, NoSuchAlgorithmException, OperationException {
+        header = transferHeader;
+        instance = null;
+        permission = null;
+        answered = false;
+        received = 0;
+        String packageName = new File(transferHeader.getPackageName()).getName();
+        if (packageName.isBlank() || !packageName.equals(transferHeader.getPackageName())) {
+            throw new IOException("Invalid package name.");
+        }
+
+        instance = MapUtility.toInstance(header.getInstance(), header.getPlaceName());
+        instance.setPlaceName(header.getPlaceName());
+        server.registerPeer(header);
+        permission = server.lookupPermission(instance);
+        if (permission == null || !permission.isAllowed()) {
+            // Answer straight away so that the package is not sent
+            answer(MigrationResultType.Status.NOT_ALLOWED, "");
+            if (!batch) {
+
+                return;
+            }
+        }
+        if (header.getPackageSkipped()) {
+            // The package is already here, only the agent state follows
+            return;
+        }
+
+        digest = MessageDigest.getInstance("MD5");
+        tempFile = Files.createTempFile(IOAccess.APP_PACKAGE_FOLDER.toPath(), packageName, ".part");
+        channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private void completeAgent() {
+        try {
+            if (header.getPackageSkipped()) {
+                if (!answered && !IOAccess.hasPackage(header.getPackageName(), instance.getIdentity().getHashCode())) {
+                    answer(MigrationResultType.Status.ERROR, "The agent package is not available.");
+
+                    return;
+                }
+            } else if (channel != null) {
+                channel.close();
+                String hash = Hex.encodeHexString(digest.digest());
+                if (received != header.getPackageSize() || !hash.equals(instance.getIdentity().getHashCode())) {
+                    if (!answered) {
+                        answer(MigrationResultType.Status.ERROR, "The received package does not match the hash code of the agent.");
+                    }
+
+                    return;
+                }
+                Path packageFile = new File(IOAccess.APP_PACKAGE_FOLDER, header.getPackageName()).toPath();
+                Files.move(tempFile, packageFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                tempFile = null;
+            }
+
+            if (!answered) {
+                server.createTransferredAgent(instance, header.getAgentBytes().toByteArray(), permission);
+                answer(MigrationResultType.Status.ACCEPTED, "");
+            }
+        } catch (IOException | OperationException e) {
+            LOGGER.error(e);
+            if (!answered) {
+                answer(MigrationResultType.Status.ERROR, e.getMessage());
+            }
+        } finally {
+            discard();
+            header = null;
+        }
+    }
+
+    private void answer(MigrationResultType.Status status, String message) {
+        answered = true;
+        responseObserver.onNext(MigrationResultType.newBuilder().setStatus(status).setMessage(message != null ? message : "").build());
+        if (!batch) {
+            // A single migration ends with its answer
+            finished = true;
+            discard();
+            responseObserver.onCompleted();
+        }
+    }
+
+    private void discard() {
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+            if (tempFile != null) {
+                Files.deleteIfExists(tempFile);
+                tempFile = null;
+            }
+        } catch (IOException e) {
+            LOGGER.error(e);
+        }
+        channel = null;
+    }
+
+}
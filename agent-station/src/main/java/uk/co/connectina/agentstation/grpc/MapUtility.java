@@ -48,7 +48,11 @@ public class MapUtility {
         IdentityType identityType = input.getIdentity();
         Identity identity = new Identity.IdentityBuilder(identityType.getClassName(), identityType.getOrganisation()).hashCode(identityType.getHashCode()).packageFile(identityType.getPackageFile()).version(identityType.getMajorVersion(), identityType.getMinorVersion()).description(identityType.getDescription()).build();
 
-        return new Instance(identity, LocalDateTime.parse(input.getCreation(), App.DATETIME_FORMATTER), placeName, input.getParametersList().subList(0, input.getParametersCount()).toArray(new String[]{}));
+        Instance instance = new Instance(identity, LocalDateTime.parse(input.getCreation(), App.DATETIME_FORMATTER), placeName, input.getParametersList().subList(0, input.getParametersCount()).toArray(new String[]{}));
+        instance.setHomeLocation(emptyToNull(input.getHomeServer()), input.getHomePort(), emptyToNull(input.getHomePlace()));
+        instance.setLastRemoteLocation(emptyToNull(input.getLastRemoteServer()), input.getLastRemotePort(), emptyToNull(input.getLastRemotePlace()));
+
+        return instance;
     }
 
     /**
@@ -98,7 +102,21 @@ public class MapUtility {
         return InstanceType.newBuilder().setIdentity(identityType)
                 .setCreation(input.getCreation())
                 .setPlaceName(input.getPlaceName())
+                .setHomeServer(nullToEmpty(input.getHomeServer()))
+                .setHomePort(input.getHomePort())
+                .setHomePlace(nullToEmpty(input.getHomePlace()))
+                .setLastRemoteServer(nullToEmpty(input.getLastRemoteServer()))
+                .setLastRemotePort(input.getLastRemotePort())
+                .setLastRemotePlace(nullToEmpty(input.getLastRemotePlace()))
                 .addAllParameters(Arrays.asList(input.getParameters())).build();
     }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+
+    private static String emptyToNull(String value) {
+        return value.isEmpty() ? null : value;
+    }
     
 }
@@ -28,7 +28,15 @@ import uk.co.connectina.agentstation.api.PermissionIdentity;
 import uk.co.connectina.agentstation.api.Registry;
 import uk.co.connectina.agentstation.api.Station;
 import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferChunk;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferHeader;
+import uk.co.connectina.agentstation.api.grpc.CompressionType;
 import uk.co.connectina.agentstation.api.grpc.AgentTransferInput;
+import uk.co.connectina.agentstation.api.grpc.MigrationResultType;
+import uk.co.connectina.agentstation.api.grpc.PackageInput;
+import uk.co.connectina.agentstation.api.grpc.PackageType;
+import uk.co.connectina.agentstation.api.grpc.PermissionInvalidationInput;
+import uk.co.connectina.agentstation.api.grpc.StateCodecType;
 import uk.co.connectina.agentstation.api.grpc.RemoteStationGrpc;
 import uk.co.connectina.agentstation.api.grpc.VoidType;
 import uk.co.connectina.agentstation.local.IOAccess;
@@ -71,12 +79,9 @@ public class RemoteStationServer extends RemoteStationGrpc.RemoteStationImplBase
             Instance instance = MapUtility.toInstance(request.getInstance(), request.getPlaceName());
             instance.setPlaceName(request.getPlaceName());
 
-            Permission permission = agentRegistry.lookupPermission(new PermissionIdentity(instance.getIdentity().getName(), instance.getShortId(), instance.getPlaceName()));
+            Permission permission = lookupPermission(instance);
             if (permission != null && permission.isAllowed()) {
-                agentStation.createAgent(instance, request.getAgentBytes().toByteArray());
-                if (permission.isAutoStart()) {
-                    agentStation.startAgent(instance);
-                }
+                createTransferredAgent(instance, request.getAgentBytes().toByteArray(), permission);
             }
         } catch (OperationException e) {
             LOGGER.error(e);
@@ -86,4 +91,99 @@ public class RemoteStationServer extends RemoteStationGrpc.RemoteStationImplBase
         }
     }
 
+    /**
+     * A request to migrate an agent to this Agent Station, sent as a header
+     * followed by the package in chunks. The permission check, the package
+     * transfer and the agent creation happen in the one call, and the outcome
+     * is returned to the sending station.
+     *
+     * @param responseObserver the response observer
+     * @return the observer of the incoming chunks
+     */
+    @Override
+    public StreamObserver<AgentTransferChunk> migrateAgent(StreamObserver<MigrationResultType> responseObserver) {
+        return new AgentTransferReceiver(this, responseObserver, false);
+    }
+
+    /**
+     * A request to migrate several agents to this Agent Station in one call.
+     * Each agent is sent as a header, followed by its package in chunks when
+     * the package is not already here or sent earlier in the call, and each
+     * agent is answered in the order it was sent.
+     *
+     * @param responseObserver the response observer
+     * @return the observer of the incoming chunks
+     */
+    @Override
+    public StreamObserver<AgentTransferChunk> migrateAgents(StreamObserver<MigrationResultType> responseObserver) {
+        return new AgentTransferReceiver(this, responseObserver, true);
+    }
+
+    /**
+     * Checks whether this station already has an agent package.
+     *
+     * @param request the request
+     * @param responseObserver the response observer
+     */
+    @Override
+    public void hasPackage(PackageInput request, StreamObserver<PackageType> responseObserver) {
+        responseObserver.onNext(PackageType.newBuilder().setAvailable(IOAccess.hasPackage(request.getPackageName(), request.getHashCode())).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Drops any outcome of a permission check at the remote station that sent
+     * the request, as that station changed the permission.
+     *
+     * @param request the request
+     * @param responseObserver the response observer
+     */
+    @Override
+    public void invalidatePermission(PermissionInvalidationInput request, StreamObserver<VoidType> responseObserver) {
+        agentStation.invalidatePermission(new PermissionIdentity(request.getAgentName(), request.getAgentShortId(), request.getPlaceName()));
+        responseObserver.onNext(VoidType.newBuilder().build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Tells the remote station that this station reads compressed agent state.
+     *
+     * @param request the request
+     * @param responseObserver the response observer
+     */
+    @Override
+    public void supportsCompression(VoidType request, StreamObserver<CompressionType> responseObserver) {
+        responseObserver.onNext(CompressionType.newBuilder().setSupported(true).build());
+        responseObserver.onCompleted();
+    }
+
+    /**
+     * Tells the remote station that this station reads agents sent in the
+     * compact state format.
+     *
+     * @param request the request
+     * @param responseObserver the response observer
+     */
+    @Override
+    public void supportsStateCodec(VoidType request, StreamObserver<StateCodecType> responseObserver) {
+        responseObserver.onNext(StateCodecType.newBuilder().setSupported(true).build());
+        responseObserver.onCompleted();
+    }
+
+    void registerPeer(AgentTransferHeader header) {
+        agentStation.registerPeer(header.getSenderServer(), header.getSenderPort());
+    }
+
+    Permission lookupPermission(Instance instance) throws OperationException {
+
+        return agentRegistry.lookupPermission(new PermissionIdentity(instance.getIdentity().getName(), instance.getShortId(), instance.getPlaceName()));
+    }
+
+    void createTransferredAgent(Instance instance, byte[] agentBytes, Permission permission) throws OperationException {
+        agentStation.createAgent(instance, agentBytes);
+        if (permission.isAutoStart()) {
+            agentStation.startAgent(instance);
+        }
+    }
+
 }
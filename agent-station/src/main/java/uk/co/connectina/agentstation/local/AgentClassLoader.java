@@ -0,0 +1,61 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A class loader for the classes of one agent package, shared by all the
+ * agents that come from that package. Keeps count of the classes it defines.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentClassLoader extends URLClassLoader {
+
+    static {
+        registerAsParallelCapable();
+    }
+
+    private final String packageHash;
+    private final AtomicInteger loadedClasses = new AtomicInteger();
+
+    AgentClassLoader(String packageHash, URL url, ClassLoader parent) {
+        super(new URL[] { url }, parent);
+        this.packageHash = packageHash;
+    }
+
+    @Override
+    protected Class<?> findClass(String name) throws ClassNotFoundException {
+        Class<?> loadedClass = super.findClass(name);
+        loadedClasses.incrementAndGet();
+
+        return loadedClass;
+    }
+
+    String getPackageHash() {
+        return packageHash;
+    }
+
+    int getLoadedClassCount() {
+        return loadedClasses.get();
+    }
+
+}
@@ -0,0 +1,79 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import uk.co.connectina.agentstation.api.AgentRunnable;
+import uk.co.connectina.agentstation.api.client.LogType;
+
+/**
+ * Holds the runtime state of an agent hosted in the station: its runnable,
+ * its log and its activity counters.
+ *
+ * @author Dr Christos Bohoris
+ */
+final class AgentEntry {
+
+    private final AgentRunnable runnable;
+    private final LogRing log;
+    private final AtomicLong startCount = new AtomicLong();
+
+    AgentEntry(AgentRunnable runnable, int logCapacity) {
+        this.runnable = runnable;
+        this.log = new LogRing(logCapacity);
+    }
+
+    AgentRunnable getRunnable() {
+        return runnable;
+    }
+
+    /**
+     * Adds a log entry, overwriting the oldest one when the log is full.
+     *
+     * @param type the log entry type
+     * @param message the log message
+     */
+    void log(LogType type, String message) {
+        log.add(type, message);
+    }
+
+    /**
+     * Provides the log, latest entry first.
+     *
+     * @return the log entries
+     */
+    List<LogEntry> getLog() {
+        return log.getEntries(IOAccess.getAboutAgent(runnable.getInstance()));
+    }
+
+    void countStart() {
+        startCount.incrementAndGet();
+    }
+
+    long getStartCount() {
+        return startCount.get();
+    }
+
+    long getLogCount() {
+        return log.getCount();
+    }
+
+}
@@ -0,0 +1,324 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import uk.co.connectina.agentstation.api.AgentRunnable;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Runs agents with admission control. At most a maximum number of agents is
+ * active at any time, any further starts wait in a bounded queue until a
+ * running agent finishes. Slots and the queue are decided under the executor
+ * lock, while agents are started, stopped and notified after it is released,
+ * since their callbacks reach the registry.
+ *
+ * @author Dr Christos Bohoris
+ */
+final class AgentExecutor implements Executor {
+
+    private static final class PendingStart {
+
+        private final AgentRunnable agent;
+        private final long queuedAt;
+
+        PendingStart(AgentRunnable agent) {
+            this.agent = agent;
+            this.queuedAt = System.nanoTime();
+        }
+
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(AgentExecutor.class.toString());
+    private final AgentThreadFactory threadFactory;
+    private final Consumer<AgentRunnable> dequeueListener;
+    private final int maxActive;
+    private final int queueCapacity;
+    private final RejectionSupport rejection;
+    private final Deque<PendingStart> queue = new ArrayDeque<>();
+    private final Map<Runnable, Integer> threadCounts = new IdentityHashMap<>();
+    private final Map<Runnable, List<Runnable>> finishActions = new IdentityHashMap<>();
+    private final Set<Runnable> reserved = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int running;
+    private long dequeued;
+    private long totalWaitNanos;
+    private long maxWaitNanos;
+    private long rejected;
+
+    AgentExecutor(StationInfo stationInfo) {
+        this(stationInfo, new AgentThreadFactory(stationInfo.getThreads()), agent -> { });
+    }
+
+    /**
+     * Initiates a new object instance.
+     *
+     * @param stationInfo the station details
+     * @param threadFactory the factory for agent threads
+     * @param dequeueListener notified, outside the executor lock, of every queued agent started when a slot frees
+     */
+    AgentExecutor(StationInfo stationInfo, AgentThreadFactory threadFactory, Consumer<AgentRunnable> dequeueListener) {
+        this.threadFactory = threadFactory;
+        this.dequeueListener = dequeueListener;
+        this.maxActive = stationInfo.getMaxActive();
+        this.queueCapacity = stationInfo.getStartQueue();
+        this.rejection = stationInfo.getRejection();
+    }
+
+    /**
+     * Starts the agent if a slot is free, otherwise queues the start.
+     *
+     * @param agent the agent to start
+     * @throws OperationException the start queue is full
+     */
+    void start(AgentRunnable agent) throws OperationException {
+        AgentRunnable discarded = null;
+        boolean queued = false;
+        synchronized (this) {
+            if (agent.isActive() || agent.isQueued()) {
+
+                return;
+            }
+
+            if (maxActive <= 0 || running < maxActive) {
+                reserve(agent);
+            } else {
+                if (queue.size() >= queueCapacity) {
+                    rejected++;
+                    if (rejection == RejectionSupport.ABORT || queue.isEmpty()) {
+
+                        throw new OperationException("The agent start queue is full.");
+                    }
+                    discarded = queue.pollFirst().agent;
+                }
+                queue.addLast(new PendingStart(agent));
+                queued = true;
+                // Marked straight away, so that a slot freed meanwhile finds it waiting
+                agent.getInstance().setState(Instance.State.QUEUED);
+            }
+        }
+
+        if (discarded != null) {
+            discarded.stop();
+        }
+        if (!queued) {
+            try {
+                agent.start();
+            } finally {
+                if (unreserve(agent)) {
+                    release();
+                }
+            }
+        } else if (agent.isQueued()) {
+            agent.queue();
+        }
+    }
+
+    /**
+     * Removes an agent from the start queue, if it is waiting there.
+     *
+     * @param agent the queued agent
+     */
+    synchronized void remove(AgentRunnable agent) {
+        Iterator<PendingStart> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().agent == agent) {
+                iterator.remove();
+
+                break;
+            }
+        }
+    }
+
+    /**
+     * Runs the agent on a new thread, taking up a slot until it finishes.
+     *
+     * @param command the agent runnable
+     */
+    @Override
+    public void execute(Runnable command) {
+        synchronized (this) {
+            // A start decided by this executor has its slot already
+            if (!reserved.remove(command)) {
+                running++;
+            }
+            threadCounts.merge(command, 1, Integer::sum);
+        }
+        try {
+            Thread thread = threadFactory.newThread(() -> {
+                try {
+                    command.run();
+                } finally {
+                    finished(command, true);
+                }
+            });
+            if (command instanceof AgentRunnable agent) {
+                thread.setName(agent.getThreadName());
+            }
+            thread.start();
+        } catch (RuntimeException | Error e) {
+            // The thread never ran, so give the slot back without starting another agent
+            finished(command, false);
+
+            throw e;
+        }
+    }
+
+    /**
+     * Runs an action once every thread running the command has finished.
+     *
+     * @param command the agent runnable
+     * @param action the action
+     * @return false if no thread runs the command, in which case the action is not kept
+     */
+    synchronized boolean whenFinished(Runnable command, Runnable action) {
+        if (!threadCounts.containsKey(command)) {
+
+            return false;
+        }
+
+        finishActions.computeIfAbsent(command, key -> new ArrayList<>()).add(action);
+
+        return true;
+    }
+
+    synchronized void collectStatistics(Map<String, String> statistics) {
+        long averageWait = dequeued > 0 ? totalWaitNanos / dequeued : 0;
+
+        statistics.put("Agent Threads", threadFactory.getThreads().name());
+        statistics.put("Max Active Agents", maxActive > 0 ? Integer.toString(maxActive) : "Unlimited");
+        statistics.put("Active Agents", Integer.toString(running));
+        statistics.put("Queued Starts", queue.size() + " / " + queueCapacity);
+        statistics.put("Queue Wait (avg)", toMillisText(averageWait));
+        statistics.put("Queue Wait (max)", toMillisText(maxWaitNanos));
+        statistics.put("Rejected Starts", Long.toString(rejected));
+    }
+
+    synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    private synchronized List<Runnable> finish(Runnable command) {
+        if (threadCounts.merge(command, -1, Integer::sum) > 0) {
+
+            return List.of();
+        }
+
+        threadCounts.remove(command);
+        List<Runnable> actions = finishActions.remove(command);
+
+        return actions != null ? actions : List.of();
+    }
+
+    private void finished(Runnable command, boolean startNext) {
+        List<Runnable> actions = finish(command);
+        AgentRunnable next = null;
+        if (startNext) {
+            next = handOn(true);
+        } else {
+            release();
+        }
+        while (next != null) {
+            boolean failed = false;
+            try {
+                if (next.isQueued()) {
+                    next.start();
+                }
+            } catch (RuntimeException e) {
+                LOGGER.error(e);
+                failed = true;
+            }
+            boolean unused = unreserve(next);
+            if (!failed && !unused) {
+                dequeueListener.accept(next);
+                next = null;
+            } else {
+                // A start that failed on its thread has given its slot back already
+                next = handOn(unused);
+            }
+        }
+        actions.forEach(Runnable::run);
+    }
+
+    private void reserve(AgentRunnable agent) {
+        running++;
+        reserved.add(agent);
+    }
+
+    private synchronized boolean unreserve(AgentRunnable agent) {
+
+        return reserved.remove(agent);
+    }
+
+    private synchronized void release() {
+        running--;
+    }
+
+    /**
+     * Passes a slot on to the agent that has waited longest.
+     *
+     * @param holding true to pass on the slot of the caller, false to take a free one
+     * @return the agent to start, with its slot reserved, or null if none waits
+     */
+    private synchronized AgentRunnable handOn(boolean holding) {
+        if (!holding) {
+            if (maxActive > 0 && running >= maxActive) {
+
+                return null;
+            }
+            running++;
+        }
+        PendingStart pending;
+        while ((pending = queue.pollFirst()) != null) {
+            // Skip any agent stopped while waiting
+            if (pending.agent.isQueued()) {
+                long wait = System.nanoTime() - pending.queuedAt;
+                dequeued++;
+                totalWaitNanos += wait;
+                maxWaitNanos = Math.max(maxWaitNanos, wait);
+                reserved.add(pending.agent);
+
+                return pending.agent;
+            }
+        }
+        running--;
+
+        return null;
+    }
+
+    private static String toMillisText(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos) + " ms";
+    }
+
+}
@@ -18,48 +18,62 @@
  */
 package uk.co.connectina.agentstation.local;
 
+import io.grpc.Context;
 import io.grpc.ManagedChannel;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
 import java.lang.reflect.InvocationTargetException;
+import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
+import java.rmi.RemoteException;
 import java.text.MessageFormat;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import uk.co.connectina.agentstation.api.AgentKey;
 import uk.co.connectina.agentstation.api.AgentListener;
 import uk.co.connectina.agentstation.api.AgentRunnable;
 import uk.co.connectina.agentstation.api.Identity;
 import uk.co.connectina.agentstation.api.Instance;
-import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.PermissionIdentity;
 import uk.co.connectina.agentstation.api.Registry;
 import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.StationEvent;
 import uk.co.connectina.agentstation.api.StationAssistant;
 import uk.co.connectina.agentstation.api.client.Agent;
 import uk.co.connectina.agentstation.api.client.AgentInstance;
 import uk.co.connectina.agentstation.api.client.LogType;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
-import uk.co.connectina.agentstation.api.grpc.RemoteRegistryGrpc;
 import uk.co.connectina.agentstation.api.grpc.RemoteStationGrpc;
-import uk.co.connectina.agentstation.api.rmi.RemoteRegistry;
 import uk.co.connectina.agentstation.api.rmi.RemoteStation;
+import uk.co.connectina.agentstation.local.dao.ConnectionPool;
 
 /**
  * Handles the required actions that allow agent management.
  *
  * @author Dr Christos Bohoris
  */
-class AgentManager implements Serializable, ScheduleTaskListener {
+class AgentManager implements Serializable, ScheduleTaskListener, PermissionListener {
 
     private static class ScheduleTask extends TimerTask {
 
@@ -86,32 +100,42 @@ class AgentManager implements Serializable, ScheduleTaskListener {
         }
 
     }
-    private static final String MIGRATE_AGENT = "migrateAgent";
-    private static final String REMOTE_PERMISSION_LOOKUP_FAILED = "Remote permission lookup failed";
-    private static final String MESSAGE_ERROR_PATTERN = "{0}: {1}";
     private static final Logger LOGGER = LogManager.getLogger(AgentManager.class.toString());
-    private StationMessenger stationMessenger;
+    private static final String REFUSED_RECENTLY = "The remote station refused this agent recently.";
+    private static final long INVALIDATION_TIMEOUT_SECONDS = 10;
+    private StationEventBus eventBus;
     private Station station;
     private Registry registry;
     private StationInfo stationInfo;
     private PlaceManager placeManager;
     private StationAssistant assistant;
     private AgentListener agentListener;
-    private final List<AgentRunnable> agents;
-
-    private final transient List<List<LogEntry>> logs;
+    private final transient AgentExecutor executor;
+    private final transient Timer scheduleTimer = new Timer("Agent Schedules", true);
+    private final transient Map<AgentKey, AgentEntry> agents = new ConcurrentHashMap<>();
+    private final transient GRPCChannelPool channelPool = new GRPCChannelPool();
+    private final transient RMIStubCache stubCache = new RMIStubCache();
+    private final transient MigrationExecutor migrationExecutor = new MigrationExecutor();
+    private final transient PermissionCache permissionCache = new PermissionCache();
+    private final transient RecentPeers recentPeers = new RecentPeers(PermissionCache.POSITIVE_TTL_MILLIS);
+    private final transient AtomicLong invalidationsSent = new AtomicLong();
+    private final transient StateCompression stateCompression = new StateCompression();
+    private final transient AgentStateCodec stateCodec = new AgentStateCodec();
+    private final transient AtomicLong migrations = new AtomicLong();
+    private final transient AtomicLong migrationBytes = new AtomicLong();
+    private final transient AtomicLong skippedPackages = new AtomicLong();
+    private final transient PackageClassLoaders classLoaders = new PackageClassLoaders(AgentManager.class.getClassLoader());
 
     AgentManager(StationInfo stationInfo, Station station, Registry registry, PlaceManager placeManager,
-            StationMessenger stationMessenger, StationAssistant stationAssistant, AgentListener agentListener) {
+            StationEventBus eventBus, StationAssistant stationAssistant, AgentListener agentListener) {
         this.stationInfo = stationInfo;
         this.station = station;
         this.registry = registry;
         this.placeManager = placeManager;
-        this.stationMessenger = stationMessenger;
+        this.eventBus = eventBus;
         this.assistant = stationAssistant;
         this.agentListener = agentListener;
-        agents = new ArrayList<>();
-        logs = new ArrayList<>();
+        executor = new AgentExecutor(stationInfo, new AgentThreadFactory(stationInfo.getThreads()), this::persistDequeued);
     }
 
     @Override
@@ -123,78 +147,319 @@ class AgentManager implements Serializable, ScheduleTaskListener {
         }
     }
 
-    public void migrateAgent(Instance instance, String ipAddress, int port, String placeName)
+    public MigrationResult migrateAgent(Instance instance, String ipAddress, int port, String placeName)
             throws OperationException {
-        RemoteRegistryGrpc.RemoteRegistryBlockingStub remoteGRPCRegistry;
-        RemoteRegistry remoteRMIRegistry;
-        Permission permission;
+        AgentRunnable agent = getAgent(instance);
+        if (agent == null) {
+            throw new OperationException("The agent cannot be found.");
+        }
 
-        // Get permission from remote registry
-        if (stationInfo.getRemote() == RemoteSupport.GRPC) {
-            remoteGRPCRegistry = GRPCUtility.getGRPCRegistry(ipAddress, port, instance, stationMessenger);
-            permission = GRPCUtility.getPermissionWithGRPC(instance, remoteGRPCRegistry, placeName);
-            ((ManagedChannel) remoteGRPCRegistry.getChannel()).shutdown();
-        } else {
-            remoteRMIRegistry = RMIUtility.getRMIRegistry(ipAddress, port, instance, stationMessenger);
-            permission = RMIUtility.getPermissionWithRMI(instance, remoteRMIRegistry, placeName);
+        return sendAgent(agent, captureAgent(agent), ipAddress, port, placeName, null);
+    }
+
+    /**
+     * Migrates an agent without holding up the calling thread for the network
+     * exchange. The agent is stopped and its state captured straight away, the
+     * exchange then runs on the station I/O threads.
+     * <p>
+     * If the deadline passes or the future is cancelled before the agent is
+     * sent, nothing is sent, any gRPC calls still under way are cancelled and
+     * the agent stays here, stopped. Once the agent is being sent, the remote
+     * station may accept it at any moment, so the exchange is no longer
+     * cancelled and runs to its end. The future reports the outcome, unless it
+     * was cancelled.
+     *
+     * @param instance the agent instance
+     * @param ipAddress the remote station address
+     * @param port the remote station port
+     * @param placeName the remote place name
+     * @param deadline the time allowed, or null for no deadline
+     * @return the future outcome of the migration
+     */
+    CompletableFuture<MigrationResult> migrateAgentAsync(Instance instance, String ipAddress, int port, String placeName, Duration deadline) {
+        AgentRunnable agent = getAgent(instance);
+        if (agent == null) {
+
+            return CompletableFuture.failedFuture(new OperationException("The agent cannot be found."));
         }
 
-        // Check permission
+        byte[] agentBytes;
+        try {
+            agentBytes = captureAgent(agent);
+            // The agent stays stopped here should the exchange never start
+            registry.updateAgentState(agent.getInstance());
+        } catch (OperationException e) {
+
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return migrationExecutor.submit(() -> sendAgent(agent, agentBytes, ipAddress, port, placeName, deadline), deadline);
+    }
+
+    private MigrationResult sendAgent(AgentRunnable agent, byte[] agentBytes, String ipAddress, int port, String placeName, Duration deadline)
+            throws OperationException {
+        // Migrate agent, leaving out the package when the remote station already has it
+        Instance instance = agent.getInstance();
+        String packageName = getPackageName(instance);
+        String hashCode = instance.getIdentity().getHashCode();
+        String peer = IOAccess.getServerAndPortText(ipAddress, port);
+        Boolean cached = permissionCache.get(peer, instance.getIdentity().getName(), instance.getShortId(), placeName);
+        boolean packageSkipped = false;
+        long packageBytes = 0;
+        byte[] payload = agentBytes;
+        MigrationResult result;
         try {
-            if (permission == null || !permission.isAllowed()) {
-                stationMessenger.notifyStationListeners(MIGRATE_AGENT, instance, ipAddress, ((Integer) port).toString(),
-                        "noPermission");
-                AgentRunnable agent = getAgent(instance);
-                if (agent == null) {
-                    throw new OperationException("The agent cannot be found.");
+            if (Boolean.FALSE.equals(cached)) {
+                // Refused moments ago, the remote station is not asked again until the refusal expires
+                result = new MigrationResult(MigrationResult.Status.NOT_ALLOWED, REFUSED_RECENTLY);
+            } else if (stationInfo.getRemote() == RemoteSupport.GRPC) {
+                RemoteStationGrpc.RemoteStationBlockingStub remoteGRPCStation = GRPCUtility.getGRPCStation(channelPool,
+                        ipAddress, port, instance, eventBus);
+                // The channel stays open for every call of this migration
+                try {
+                    if (deadline != null) {
+                        remoteGRPCStation = remoteGRPCStation.withDeadlineAfter(deadline.toMillis(), TimeUnit.MILLISECONDS);
+                    }
+                    packageSkipped = GRPCUtility.hasPackageWithGRPC(packageName, hashCode, remoteGRPCStation);
+                    byte[] state = encodeState(agent, agentBytes, peer, remoteGRPCStation, null);
+                    payload = compressState(instance, state, peer, remoteGRPCStation, null);
+                    // The remote station may accept the agent from here on, so neither the deadline nor a cancellation applies
+                    RemoteStationGrpc.RemoteStationBlockingStub sendingStation = remoteGRPCStation.withDeadline(null);
+                    Context sending = MigrationExecutor.send();
+                    Context previous = sending.attach();
+                    try {
+                        result = GRPCUtility.migrateWithGRPC(instance, payload, packageName, placeName, packageSkipped, Boolean.TRUE.equals(cached), stationInfo, sendingStation);
+                        if (completeCompression(peer, payload, result)) {
+                            payload = state;
+                            result = GRPCUtility.migrateWithGRPC(instance, payload, packageName, placeName,
+                                    GRPCUtility.hasPackageWithGRPC(packageName, hashCode, sendingStation), Boolean.TRUE.equals(cached), stationInfo, sendingStation);
+                        }
+                    } finally {
+                        sending.detach(previous);
+                    }
+                } finally {
+                    channelPool.releaseChannel(remoteGRPCStation.getChannel());
                 }
-                if (agent.isActive()) {
-                    stopAgent(instance);
+            } else {
+                RemoteStation remoteRMIStation = RMIUtility.getRMIAgentStation(stubCache, ipAddress, port);
+                packageSkipped = RMIUtility.hasPackageWithRMI(packageName, hashCode, remoteRMIStation);
+                byte[] packageData = packageSkipped ? null : IOAccess.readFromFile(new URL(instance.getIdentity().getPackageFile()).getFile());
+                byte[] state = encodeState(agent, agentBytes, peer, null, remoteRMIStation);
+                payload = compressState(instance, state, peer, null, remoteRMIStation);
+                MigrationExecutor.send();
+                result = RMIUtility.migrateWithRMI(instance, payload, packageName, placeName, packageData, Boolean.TRUE.equals(cached), stationInfo, remoteRMIStation, stubCache, ipAddress, port);
+                if (completeCompression(peer, payload, result)) {
+                    payload = state;
+                    result = RMIUtility.migrateWithRMI(instance, payload, packageName, placeName, packageData, Boolean.TRUE.equals(cached), stationInfo, remoteRMIStation, stubCache, ipAddress, port);
                 }
-                removeAgent(instance);
-
-                return;
             }
+            packageBytes = packageSkipped ? 0 : new File(new URL(instance.getIdentity().getPackageFile()).getFile()).length();
         } catch (Exception e) {
-            throw new OperationException(
-                    MessageFormat.format(MESSAGE_ERROR_PATTERN, REMOTE_PERMISSION_LOOKUP_FAILED, e.getMessage()));
+            result = new MigrationResult(MigrationResult.Status.ERROR, MessageFormat.format("Agent transfer failed. {0}", e.getMessage()));
+        }
+        if (cached == null || cached) {
+            cachePermission(peer, instance, placeName, result);
         }
 
-        // Get agent
-        String packageName = instance.getIdentity().getPackageFile()
-                .substring(instance.getIdentity().getPackageFile().lastIndexOf("/") + 1);
-        AgentRunnable agent = getAgent(instance);
-        if (agent == null) {
-            throw new OperationException("The agent cannot be found.");
+        completeMigration(agent, result, ipAddress, port, payload.length, packageBytes, packageSkipped);
+
+        return result;
+    }
+
+    private byte[] encodeState(AgentRunnable agent, byte[] agentBytes, String peer, RemoteStationGrpc.RemoteStationBlockingStub remoteGRPCStation,
+            RemoteStation remoteRMIStation) throws OperationException, RemoteException {
+        Boolean supported = stateCodec.isSupported(peer);
+        if (supported == null) {
+            supported = remoteGRPCStation != null ? GRPCUtility.supportsStateCodecWithGRPC(remoteGRPCStation)
+                    : RMIUtility.supportsStateCodecWithRMI(remoteRMIStation);
+            stateCodec.setSupported(peer, supported);
         }
 
-        stopAndRemoveAgent(instance, agent);
+        // Stations that predate the compact state read the whole agent serialized
+        return supported ? agentBytes : stateCodec.encodeLegacy(agent);
+    }
+
+    private byte[] compressState(Instance instance, byte[] state, String peer, RemoteStationGrpc.RemoteStationBlockingStub remoteGRPCStation,
+            RemoteStation remoteRMIStation) throws RemoteException {
+        if (!stationInfo.isCompression()) {
+
+            return state;
+        }
+
+        Boolean supported = stateCompression.isSupported(peer);
+        if (supported == null) {
+            supported = remoteGRPCStation != null ? GRPCUtility.supportsCompressionWithGRPC(remoteGRPCStation)
+                    : RMIUtility.supportsCompressionWithRMI(remoteRMIStation);
+            stateCompression.setSupported(peer, supported);
+        }
 
-        // Transfer agent
-        byte[] agentBytes = IOAccess.toByteArray(agent);
+        return supported ? stateCompression.compress(instance.getIdentity().getClassName(), state, peer) : state;
+    }
+
+    /**
+     * Records the outcome of sending compressed agent state.
+     *
+     * @return true if the remote station could not decompress the state, so
+     * that it is sent once more as it is
+     */
+    private boolean completeCompression(String peer, byte[] payload, MigrationResult result) {
+        if (!StateCompression.isCompressed(payload)) {
+
+            return false;
+        }
+        if (result.isAccepted()) {
+            stateCompression.confirm(peer, payload);
+        } else if (StateCompression.isUnreadable(result)) {
+            // The remote station may have restarted and lost its dictionaries
+            stateCompression.forget(peer);
+
+            return true;
+        }
+
+        return false;
+    }
+
+    public List<MigrationResult> migrateAgents(List<Instance> instances, String ipAddress, int port, String placeName)
+            throws OperationException {
+        MigrationResult[] results = new MigrationResult[instances.size()];
+        List<Integer> indexes = new ArrayList<>();
+        List<AgentRunnable> migrating = new ArrayList<>();
+        List<Instance> migratingInstances = new ArrayList<>();
+        List<byte[]> agentBytes = new ArrayList<>();
+        List<String> packageNames = new ArrayList<>();
+        String peer = IOAccess.getServerAndPortText(ipAddress, port);
+        for (int i = 0; i < instances.size(); i++) {
+            AgentRunnable agent = getAgent(instances.get(i));
+            if (agent == null) {
+                results[i] = new MigrationResult(MigrationResult.Status.ERROR, "The agent cannot be found.");
+                continue;
+            }
+            Instance instance = agent.getInstance();
+            if (Boolean.FALSE.equals(permissionCache.get(peer, instance.getIdentity().getName(), instance.getShortId(), placeName))) {
+                // Refused moments ago, the agent does not travel with the others
+                results[i] = new MigrationResult(MigrationResult.Status.NOT_ALLOWED, REFUSED_RECENTLY);
+                completeMigration(agent, results[i], ipAddress, port, 0, 0, false);
+                continue;
+            }
+            indexes.add(i);
+            migrating.add(agent);
+            migratingInstances.add(agent.getInstance());
+            agentBytes.add(captureAgent(agent));
+            packageNames.add(getPackageName(agent.getInstance()));
+        }
+
+        // Each distinct package travels once, with the first agent that needs it
+        List<Boolean> packageSkipped = new ArrayList<>();
+        List<byte[]> payloads = new ArrayList<>();
+        long[] packageBytes = new long[migrating.size()];
+        List<MigrationResult> migrated;
+        RemoteStationGrpc.RemoteStationBlockingStub remoteGRPCStation = null;
         try {
+            RemoteStation remoteRMIStation = null;
             if (stationInfo.getRemote() == RemoteSupport.GRPC) {
-                RemoteStationGrpc.RemoteStationBlockingStub remoteGRPCStation = GRPCUtility.getGRPCStation(ipAddress,
-                        port, instance, stationMessenger);
-                GRPCUtility.transferAgentWithGRPC(instance, agentBytes, packageName, placeName, remoteGRPCStation);
-                ((ManagedChannel) remoteGRPCStation.getChannel()).shutdown();
+                remoteGRPCStation = migrating.isEmpty() ? null : GRPCUtility.getGRPCStation(channelPool, ipAddress, port, migratingInstances.get(0), eventBus);
             } else {
-                RemoteStation remoteRMIStation = RMIUtility.getRMIAgentStation(ipAddress, port);
-                remoteRMIStation.transferAgent(instance, agentBytes, packageName, placeName,
-                        IOAccess.readFromFile(new URL(instance.getIdentity().getPackageFile()).getFile()));
+                remoteRMIStation = migrating.isEmpty() ? null : RMIUtility.getRMIAgentStation(stubCache, ipAddress, port);
+            }
+            for (int i = 0; i < migrating.size(); i++) {
+                byte[] state = encodeState(migrating.get(i), agentBytes.get(i), peer, remoteGRPCStation, remoteRMIStation);
+                payloads.add(compressState(migratingInstances.get(i), state, peer, remoteGRPCStation, remoteRMIStation));
+            }
+            Set<String> included = new HashSet<>();
+            Map<String, byte[]> packageData = new HashMap<>();
+            for (int i = 0; i < migrating.size(); i++) {
+                String hashCode = migratingInstances.get(i).getIdentity().getHashCode();
+                boolean skipped = included.contains(hashCode) || (remoteGRPCStation != null
+                        ? GRPCUtility.hasPackageWithGRPC(packageNames.get(i), hashCode, remoteGRPCStation)
+                        : RMIUtility.hasPackageWithRMI(packageNames.get(i), hashCode, remoteRMIStation));
+                included.add(hashCode);
+                packageSkipped.add(skipped);
+                if (!skipped) {
+                    String packageFile = new URL(migratingInstances.get(i).getIdentity().getPackageFile()).getFile();
+                    packageBytes[i] = new File(packageFile).length();
+                    if (remoteRMIStation != null) {
+                        packageData.put(packageNames.get(i), IOAccess.readFromFile(packageFile));
+                    }
+                }
+            }
+
+            if (migrating.isEmpty()) {
+                migrated = List.of();
+            } else if (remoteGRPCStation != null) {
+                migrated = GRPCUtility.migrateAllWithGRPC(migratingInstances, payloads, packageNames, placeName, packageSkipped, stationInfo, remoteGRPCStation);
+            } else {
+                migrated = RMIUtility.migrateAllWithRMI(migratingInstances, payloads, packageNames, placeName, packageData, stationInfo, remoteRMIStation, stubCache, ipAddress, port);
             }
-            stationMessenger.notifyStationListeners(MIGRATE_AGENT, instance, ipAddress, ((Integer) port).toString(),
-                    "success");
         } catch (Exception e) {
-            stationMessenger.notifyStationListeners(MIGRATE_AGENT, instance, ipAddress, ((Integer) port).toString(),
-                    "stationCommFailed");
-            throw new OperationException(MessageFormat.format("Agent transfer failed. {0}", e.getMessage()));
+            MigrationResult failed = new MigrationResult(MigrationResult.Status.ERROR, MessageFormat.format("Agent transfer failed. {0}", e.getMessage()));
+            migrated = Collections.nCopies(migrating.size(), failed);
+            packageSkipped = Collections.nCopies(migrating.size(), false);
+            payloads = agentBytes;
+        } finally {
+            if (remoteGRPCStation != null) {
+                channelPool.releaseChannel(remoteGRPCStation.getChannel());
+            }
+        }
+
+        for (int i = 0; i < migrating.size(); i++) {
+            results[indexes.get(i)] = migrated.get(i);
+            cachePermission(peer, migratingInstances.get(i), placeName, migrated.get(i));
+            completeCompression(peer, payloads.get(i), migrated.get(i));
+            completeMigration(migrating.get(i), migrated.get(i), ipAddress, port, payloads.get(i).length, packageBytes[i], packageSkipped.get(i));
+        }
+
+        return Arrays.asList(results);
+    }
+
+    void registerPeer(String remoteServer, int port) {
+        recentPeers.record(remoteServer, port);
+    }
+
+    void invalidatePermission(PermissionIdentity permissionIdentity) {
+        permissionCache.invalidate(permissionIdentity.getAgentName(), permissionIdentity.getAgentShortId(), permissionIdentity.getPlaceName());
+    }
+
+    @Override
+    public void permissionChanged(PermissionIdentity permissionIdentity) {
+        // Stations that recently migrated agents here may have cached the old outcome
+        for (InetSocketAddress peer : recentPeers.getPeers()) {
+            invalidationsSent.incrementAndGet();
+            migrationExecutor.execute(() -> {
+                if (stationInfo.getRemote() == RemoteSupport.GRPC) {
+                    ManagedChannel channel = null;
+                    try {
+                        channel = channelPool.getChannel(peer.getHostString(), peer.getPort());
+                        GRPCUtility.invalidatePermissionWithGRPC(permissionIdentity, RemoteStationGrpc.newBlockingStub(channel)
+                                .withDeadlineAfter(INVALIDATION_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        LOGGER.debug(e);
+                    } finally {
+                        if (channel != null) {
+                            channelPool.releaseChannel(channel);
+                        }
+                    }
+                } else {
+                    RMIUtility.invalidatePermissionWithRMI(permissionIdentity, stubCache, peer.getHostString(), peer.getPort());
+                }
+            });
         }
     }
 
     void createAgent(Instance instance, byte[] agentBytes) throws OperationException {
-        Identity newIdentity = instance.getIdentity();
-        String packageLocation = newIdentity.getPackageFile();
+        String localPackageLocationURL = verifyPackage(instance.getIdentity());
+        createVerifiedAgent(instance, agentBytes, localPackageLocationURL);
+    }
+
+    /**
+     * Copies an agent package into the station package folder and checks its
+     * MD5 checksum against the hash code of the identity.
+     *
+     * @param identity the agent identity
+     * @return the URL of the local package
+     * @throws OperationException the package could not be copied or verified
+     */
+    String verifyPackage(Identity identity) throws OperationException {
+        String packageLocation = identity.getPackageFile();
         try {
             IOAccess.copyPackage(packageLocation);
         } catch (IOException e) {
@@ -202,14 +467,38 @@ class AgentManager implements Serializable, ScheduleTaskListener {
             throw new OperationException(e);
         }
 
-        String localPackageLocation = IOAccess.checkMD5(packageLocation, newIdentity.getHashCode());
-        String localPackageLocationURL = IOAccess.fromPathToURL(localPackageLocation);
+        String localPackageLocation = IOAccess.checkMD5(packageLocation, identity.getHashCode());
+
+        return IOAccess.fromPathToURL(localPackageLocation);
+    }
+
+    /**
+     * Creates an agent from a package that has already been verified.
+     *
+     * @param instance the agent instance details
+     * @param agentBytes the serialized agent of a migration or null for a new agent
+     * @param localPackageLocationURL the URL of the verified local package
+     * @throws OperationException the agent could not be created
+     */
+    void createVerifiedAgent(Instance instance, byte[] agentBytes, String localPackageLocationURL) throws OperationException {
+        Identity newIdentity = instance.getIdentity();
         newIdentity.setPackageFile(localPackageLocationURL);
 
         // Check and create place if it doesn't exist
         String placeName = instance.getPlaceName();
-        if (!placeManager.placeExists(placeName)) {
-            placeManager.createPlace(instance.getPlaceName());
+        synchronized (placeManager) {
+            if (!placeManager.placeExists(placeName)) {
+                placeManager.createPlace(instance.getPlaceName());
+            }
+        }
+
+        // Agents of the same package share one class loader
+        String packageHash = newIdentity.getHashCode();
+        AgentClassLoader classLoader;
+        try {
+            classLoader = classLoaders.acquire(packageHash, new URL(localPackageLocationURL));
+        } catch (MalformedURLException e) {
+            throw new OperationException(e);
         }
 
         // Add a new agent
@@ -217,30 +506,35 @@ class AgentManager implements Serializable, ScheduleTaskListener {
             // Create agent instance
             Agent agent;
             try {
-                agent = (Agent) createObject(newIdentity.getClassName(), packageLocation);
+                agent = (Agent) createObject(newIdentity.getClassName(), classLoader);
             } catch (InstantiationException | IllegalAccessException | InvocationTargetException | NoSuchMethodException
-                    | ClassNotFoundException | IOException e) {
+                    | ClassNotFoundException | LinkageError e) {
+                classLoaders.release(packageHash);
                 throw new OperationException(e);
             }
             instance.setHomeStationLocation(stationInfo, placeName);
 
-            agents.add(new AgentRunnable(assistant.getAssistantInstance(), instance, agent, agentListener));
-            logs.add(new ArrayList<>());
+            AgentRunnable agentRef = new AgentRunnable(assistant.getAssistantInstance(), instance, agent,
+                    agentListener);
+            agentRef.setExecutor(executor);
+            putAgent(instance, agentRef);
         } else { // Add a migrated agent
+            AgentRunnable agentRef;
             try {
-                AgentRunnable agentRef = (AgentRunnable) IOAccess.toObject(agentBytes,
-                        new URL(localPackageLocationURL));
-                agentRef.setAgentListener(agentListener);
-                agentRef.setAssistant(assistant.getAssistantInstance());
-                instance = agentRef.getInstance();
-                instance.setPlaceName(placeName);
-                instance.setLastRemoteStationLocation(stationInfo, placeName);
-                agents.add(agentRef);
-                logs.add(new ArrayList<>());
-            } catch (MalformedURLException | OperationException e) {
-                throw new OperationException(e);
+                byte[] state = stateCompression.decompress(agentBytes);
+                agentRef = AgentStateCodec.isEncoded(state) ? stateCodec.decode(state, classLoader)
+                        : (AgentRunnable) IOAccess.toObject(state, classLoader);
+            } catch (OperationException e) {
+                classLoaders.release(packageHash);
+                throw e;
             }
-
+            agentRef.setAgentListener(agentListener);
+            agentRef.setAssistant(assistant.getAssistantInstance());
+            agentRef.setExecutor(executor);
+            instance = agentRef.getInstance();
+            instance.setPlaceName(placeName);
+            instance.setLastRemoteStationLocation(stationInfo, placeName);
+            putAgent(instance, agentRef);
         }
 
         String description = instance.getIdentity().getDescription();
@@ -260,7 +554,7 @@ class AgentManager implements Serializable, ScheduleTaskListener {
         initiateAnySchedule(instance);
 
         // Notify station listeners
-        stationMessenger.notifyStationListeners("createAgent", instance);
+        eventBus.publish(StationEvent.agent(StationEvent.Type.CREATE_AGENT, instance));
     }
 
     void initiateAnySchedule(Instance instance) throws OperationException {
@@ -279,9 +573,8 @@ class AgentManager implements Serializable, ScheduleTaskListener {
         if (nextDateTime != null) {
             Date nextDate = Date.from(nextDateTime.atZone(ZoneId.systemDefault()).toInstant());
             // If there is one in the future then schedule it
-            Timer timer = new Timer();
             ScheduleTask scheduleTask = new ScheduleTask(instance, station, this);
-            timer.schedule(scheduleTask, nextDate);
+            scheduleTimer.schedule(scheduleTask, nextDate);
         } else {
             // If there is no schedule in the future then remove the schedule
             registry.deregisterSchedule(schedule.getAgentSid());
@@ -289,66 +582,66 @@ class AgentManager implements Serializable, ScheduleTaskListener {
     }
 
     void log(AgentInstance agentInstance, LogType type, String text) {
-        final int LOG_LIMIT = 50;
-        AgentRunnable agent = getAgent((Instance) agentInstance);
-        if (agent != null) {
-            int index = agents.indexOf(agent);
-            List<LogEntry> log = logs.get(index);
-            LogEntry logEntry = new LogEntry(LocalDateTime.now(), type,
-                    IOAccess.getAboutAgent(((Instance) agentInstance)), text);
-
-            log.add(0, logEntry);
-            int size = log.size();
-            if (size > LOG_LIMIT) {
-                log.subList(LOG_LIMIT, size).clear();
-            }
+        AgentEntry entry = agents.get(((Instance) agentInstance).getKey());
+        if (entry != null) {
+            entry.log(type, text);
 
-            stationMessenger.notifyStationListeners("agentLog", agentInstance, type, text);
+            eventBus.publish(StationEvent.agentLog((Instance) agentInstance, type, text));
         }
     }
 
     void startAgent(Instance instance) throws OperationException {
-        AgentRunnable agent = getAgent(instance);
-        if (agent != null) {
-            agent.start();
+        AgentEntry entry = agents.get(instance.getKey());
+        if (entry != null) {
+            AgentRunnable agent = entry.getRunnable();
+            executor.start(agent);
+            entry.countStart();
+            registry.updateAgentState(agent.getInstance());
+        }
+    }
+
+    private void persistDequeued(AgentRunnable agent) {
+        try {
             registry.updateAgentState(agent.getInstance());
+        } catch (OperationException e) {
+            LOGGER.error(e);
         }
     }
 
     void stopAgent(Instance instance) throws OperationException {
         AgentRunnable agent = getAgent(instance);
         if (agent != null) {
+            executor.remove(agent);
             agent.stop();
             registry.updateAgentState(agent.getInstance());
         }
     }
 
     List<LogEntry> getLog(Instance instance) {
-        AgentRunnable agent = getAgent(instance);
-        if (agent != null) {
-            int index = agents.indexOf(agent);
+        AgentEntry entry = agents.get(instance.getKey());
+        if (entry != null) {
 
-            return logs.get(index);
+            return entry.getLog();
         }
 
         return new ArrayList<>();
     }
 
     void removeAgent(Instance instance) throws OperationException {
-        AgentRunnable agent = getAgent(instance);
-        if (agent != null && agent.isActive()) {
-            agent.stop();
-        }
-        int index = agents.indexOf(agent);
-        boolean removed = agents.remove(agent);
-        if (!removed) {
+        AgentEntry entry = agents.remove(instance.getKey());
+        if (entry == null) {
             throw new OperationException("Agent removal failed.");
-        } else {
-            logs.remove(index);
+        }
+        AgentRunnable agent = entry.getRunnable();
+        if (agent.isActive() || agent.isQueued()) {
+            executor.remove(agent);
+            agent.stop();
         }
 
+        releaseClassLoader(agent);
+
         registry.deregisterAgent(instance);
-        stationMessenger.notifyStationListeners("removeAgent", instance);
+        eventBus.publish(StationEvent.agent(StationEvent.Type.REMOVE_AGENT, instance));
     }
 
     boolean isAgentActive(Instance instance) {
@@ -360,19 +653,67 @@ class AgentManager implements Serializable, ScheduleTaskListener {
         return false;
     }
 
-    AgentRunnable getAgent(Instance instance) {
-        for (AgentRunnable agent : agents) {
-            if (agent.getInstance().equals(instance)) {
+    boolean isAgentQueued(Instance instance) {
+        AgentRunnable agent = getAgent(instance);
+        if (agent != null) {
+            return agent.isQueued();
+        }
 
-                return agent;
-            }
+        return false;
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        long starts = 0;
+        long logEntries = 0;
+        for (AgentEntry entry : agents.values()) {
+            starts += entry.getStartCount();
+            logEntries += entry.getLogCount();
+        }
+
+        statistics.put("Hosted Agents", Integer.toString(agents.size()));
+        executor.collectStatistics(statistics);
+        statistics.put("Agent Starts", Long.toString(starts));
+        statistics.put("Agent Log Entries", Long.toString(logEntries));
+        statistics.put("Outbound Migrations", Long.toString(migrations.get()));
+        statistics.put("Migration Bytes Sent", Long.toString(migrationBytes.get()));
+        statistics.put("Migration Packages Skipped", Long.toString(skippedPackages.get()));
+        migrationExecutor.collectStatistics(statistics);
+        permissionCache.collectStatistics(statistics);
+        stateCompression.collectStatistics(statistics);
+        stateCodec.collectStatistics(statistics);
+        if (registry instanceof CachingRegistry) {
+            ((CachingRegistry) registry).collectStatistics(statistics);
         }
+        ConnectionPool.collectStatistics(statistics);
+        statistics.put("Permission Invalidations Sent", Long.toString(invalidationsSent.get()));
+        if (stationInfo.getRemote() == RemoteSupport.GRPC) {
+            channelPool.collectStatistics(statistics);
+        } else {
+            stubCache.collectStatistics(statistics);
+        }
+        IOAccess.getChecksums().collectStatistics(statistics);
+        classLoaders.collectStatistics(statistics);
+    }
 
-        return null;
+    void closeConnections() {
+        migrationExecutor.shutdown();
+        channelPool.shutdown();
+        stubCache.clear();
+    }
+
+    AgentRunnable getAgent(Instance instance) {
+        AgentEntry entry = agents.get(instance.getKey());
+
+        return entry != null ? entry.getRunnable() : null;
     }
 
     List<AgentRunnable> getAgentRunnables() {
-        return agents;
+        List<AgentRunnable> runnables = new ArrayList<>(agents.size());
+        for (AgentEntry entry : agents.values()) {
+            runnables.add(entry.getRunnable());
+        }
+
+        return runnables;
     }
 
     List<Instance> getInstancesByPackageFile(File file) throws OperationException {
@@ -388,20 +729,77 @@ class AgentManager implements Serializable, ScheduleTaskListener {
         return instances;
     }
 
-    private void stopAndRemoveAgent(Instance instance, AgentRunnable agent) throws OperationException {
-        if (agent.isActive()) {
+    private static String getPackageName(Instance instance) {
+
+        return instance.getIdentity().getPackageFile()
+                .substring(instance.getIdentity().getPackageFile().lastIndexOf("/") + 1);
+    }
+
+    private byte[] captureAgent(AgentRunnable agent) throws OperationException {
+        // The agent is stopped before its state is captured, it is only removed once the remote station answers
+        if (agent.isActive() || agent.isQueued()) {
+            executor.remove(agent);
             agent.stop();
         }
-        removeAgent(instance);
+
+        return stateCodec.encode(agent);
     }
 
-    private Object createObject(String className, String packageLocation)
-            throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException,
-            ClassNotFoundException, IOException {
-        URL url = IOAccess.copyPackage(packageLocation);
+    private void completeMigration(AgentRunnable agent, MigrationResult result, String ipAddress, int port, long agentBytes, long packageBytes, boolean packageSkipped) throws OperationException {
+        Instance instance = agent.getInstance();
+        switch (result.getStatus()) {
+            case ACCEPTED:
+                removeAgent(instance);
+                countMigration(agentBytes, packageBytes, packageSkipped);
+                eventBus.publish(StationEvent.migrateAgent(instance, ipAddress, port, StationEvent.MigrationOutcome.SUCCESS));
+                break;
+            case NOT_ALLOWED:
+                eventBus.publish(StationEvent.migrateAgent(instance, ipAddress, port, StationEvent.MigrationOutcome.NO_PERMISSION));
+                removeAgent(instance);
+                break;
+            default:
+                // The agent stays here, stopped, rather than being lost
+                LOGGER.error(result.getMessage());
+                registry.updateAgentState(instance);
+                eventBus.publish(StationEvent.migrateAgent(instance, ipAddress, port, StationEvent.MigrationOutcome.STATION_COMM_FAILED));
+                break;
+        }
+    }
+
+    private void cachePermission(String peer, Instance instance, String placeName, MigrationResult result) {
+        // An error says nothing about the permission, only a clear answer is kept
+        if (result.getStatus() != MigrationResult.Status.ERROR) {
+            permissionCache.put(peer, instance.getIdentity().getName(), instance.getShortId(), placeName, result.isAccepted());
+        }
+    }
 
-        URLClassLoader classLoader = new URLClassLoader(new URL[] { url }, this.getClass().getClassLoader());
+    private void countMigration(long agentBytes, long packageBytes, boolean packageSkipped) {
+        migrations.incrementAndGet();
+        migrationBytes.addAndGet(agentBytes + packageBytes);
+        if (packageSkipped) {
+            skippedPackages.incrementAndGet();
+        }
+    }
+
+    private void putAgent(Instance instance, AgentRunnable agentRef) {
+        AgentEntry previous = agents.put(instance.getKey(), new AgentEntry(agentRef, stationInfo.getLogCapacity()));
+        if (previous != null) {
+            // The replaced agent no longer holds its class loader
+            releaseClassLoader(previous.getRunnable());
+        }
+    }
 
+    private void releaseClassLoader(AgentRunnable agent) {
+        String packageHash = agent.getInstance().getIdentity().getHashCode();
+        // An agent removed from its own thread, as after migrating, still runs code of its package until the thread ends
+        if (!executor.whenFinished(agent, () -> classLoaders.release(packageHash))) {
+            classLoaders.release(packageHash);
+        }
+    }
+
+    private Object createObject(String className, ClassLoader classLoader)
+            throws InstantiationException, IllegalAccessException, InvocationTargetException, NoSuchMethodException,
+            ClassNotFoundException {
         return Class.forName(className, true, classLoader).getDeclaredConstructor().newInstance();
     }
 
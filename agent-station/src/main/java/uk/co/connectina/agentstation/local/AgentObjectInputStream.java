@@ -0,0 +1,92 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads a migrated agent. Classes are resolved through the class loader of
+ * the agent package and each class name is resolved only once per stream. The
+ * thread context class loader is switched to the package loader only while an
+ * object is being read, so the calling gRPC or RMI thread is left as it was.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentObjectInputStream extends ObjectInputStream {
+
+    private final ClassLoader classLoader;
+    private final Map<String, Class<?>> resolved = new HashMap<>();
+    private int resolveCount;
+
+    AgentObjectInputStream(InputStream input, ClassLoader classLoader) throws IOException {
+        super(input);
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Reads an object with the package class loader as the thread context
+     * class loader, restoring the previous context class loader afterwards.
+     *
+     * @return the object read
+     * @throws IOException the stream could not be read
+     * @throws ClassNotFoundException a class of the object graph could not be found
+     */
+    Object readAgentObject() throws IOException, ClassNotFoundException {
+        Thread thread = Thread.currentThread();
+        ClassLoader previous = thread.getContextClassLoader();
+        thread.setContextClassLoader(classLoader);
+        try {
+
+            return readObject();
+        } finally {
+            thread.setContextClassLoader(previous);
+        }
+    }
+
+    int getResolveCount() {
+        return resolveCount;
+    }
+
+    int getResolvedClassCount() {
+        return resolved.size();
+    }
+
+    @Override
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+        resolveCount++;
+        Class<?> resolvedClass = resolved.get(desc.getName());
+        if (resolvedClass == null) {
+            try {
+                resolvedClass = Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                // Primitive types and anything else only the default resolution knows about
+                resolvedClass = super.resolveClass(desc);
+            }
+            resolved.put(desc.getName(), resolvedClass);
+        }
+
+        return resolvedClass;
+    }
+
+}
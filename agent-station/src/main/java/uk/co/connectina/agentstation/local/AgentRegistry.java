@@ -48,6 +48,7 @@ public class AgentRegistry implements Registry {
     private transient PermissionAccess permissionsAccess;
     private transient ScheduleAccess schedulesAccess;
     private transient Assistant stationAssistant;
+    private transient PermissionListener permissionListener;
 
     /**
      * Initiates a new object instance.
@@ -142,6 +143,7 @@ public class AgentRegistry implements Registry {
     public void registerPermission(Permission permission) throws OperationException {
         registerPermissionValidation(permission);
         permissionsAccess.create(permission);
+        notifyPermissionChanged(permission);
     }
 
     /**
@@ -290,6 +292,22 @@ public class AgentRegistry implements Registry {
         }
 
         permissionsAccess.delete(permissionIdentity);
+        notifyPermissionChanged(permissionIdentity);
+    }
+
+    /**
+     * Sets the listener told about every registered or de-registered permission.
+     *
+     * @param permissionListener the permission listener
+     */
+    void setPermissionListener(PermissionListener permissionListener) {
+        this.permissionListener = permissionListener;
+    }
+
+    private void notifyPermissionChanged(PermissionIdentity permissionIdentity) {
+        if (permissionListener != null) {
+            permissionListener.permissionChanged(permissionIdentity);
+        }
     }
 
     /**
@@ -0,0 +1,176 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import uk.co.connectina.agentstation.api.AgentRunnable;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.client.Agent;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.client.StateCodec;
+import uk.co.connectina.agentstation.api.grpc.InstanceType;
+import uk.co.connectina.agentstation.grpc.MapUtility;
+
+/**
+ * Writes and reads migrating agents in the compact state format. The instance
+ * details travel as the protobuf InstanceType, followed either by the state
+ * the agent writes itself through {@link StateCodec} or, for agents that do
+ * not implement it, by the agent alone written with Java serialization.
+ * <p>
+ * Stations that predate the format read the whole agent runnable written with
+ * Java serialization, so the format is only sent to stations that said they
+ * can read it.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentStateCodec {
+
+    static final int MAX_PEERS = 256;
+    private static final byte[] MAGIC = { 'A', 'S', 'C', 1 };
+    private static final byte SERIALIZED = 0;
+    private static final byte CODEC = 1;
+
+    private final Map<String, Boolean> peers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > MAX_PEERS;
+        }
+    };
+    private long codecWrites;
+    private long serializedWrites;
+    private long legacyWrites;
+
+    /**
+     * Tells whether a remote station reads the compact state format.
+     *
+     * @param peer the server and port of the remote station
+     * @return the answer of the remote station or null if it has not been asked
+     */
+    synchronized Boolean isSupported(String peer) {
+        return peers.get(peer);
+    }
+
+    synchronized void setSupported(String peer, boolean supported) {
+        peers.put(peer, supported);
+    }
+
+    static boolean isEncoded(byte[] data) {
+        return data.length > MAGIC.length && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    /**
+     * Writes a stopped agent in the compact state format.
+     *
+     * @param agent the agent
+     * @return the agent state
+     * @throws OperationException the agent state could not be written
+     */
+    byte[] encode(AgentRunnable agent) throws OperationException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.write(MAGIC);
+            MapUtility.toInstanceType(agent.getInstance()).writeDelimitedTo(output);
+            if (agent.getAgent() instanceof StateCodec) {
+                output.writeByte(CODEC);
+                ((StateCodec) agent.getAgent()).writeState(output);
+            } else {
+                output.writeByte(SERIALIZED);
+                output.write(IOAccess.toByteArray(agent.getAgent()));
+            }
+        } catch (IOException e) {
+            throw new OperationException(e);
+        }
+        synchronized (this) {
+            if (agent.getAgent() instanceof StateCodec) {
+                codecWrites++;
+            } else {
+                serializedWrites++;
+            }
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes a stopped agent for a station that predates the compact state
+     * format.
+     *
+     * @param agent the agent
+     * @return the whole agent runnable written with Java serialization
+     * @throws OperationException the agent could not be written
+     */
+    byte[] encodeLegacy(AgentRunnable agent) throws OperationException {
+        byte[] data = IOAccess.toByteArray(agent);
+        synchronized (this) {
+            legacyWrites++;
+        }
+
+        return data;
+    }
+
+    /**
+     * Reads an agent written in the compact state format.
+     *
+     * @param data the agent state
+     * @param classLoader the class loader of the agent package
+     * @return the agent runnable, without its listener, assistant or executor
+     * @throws OperationException the agent could not be read
+     */
+    AgentRunnable decode(byte[] data, ClassLoader classLoader) throws OperationException {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, MAGIC.length, data.length - MAGIC.length))) {
+            InstanceType instanceType = InstanceType.parseDelimitedFrom(input);
+            if (instanceType == null) {
+                throw new OperationException("The agent state is empty.");
+            }
+            Instance instance = MapUtility.toInstance(instanceType, instanceType.getPlaceName());
+            Agent agent;
+            byte kind = input.readByte();
+            if (kind == CODEC) {
+                Object created = Class.forName(instance.getIdentity().getClassName(), true, classLoader).getDeclaredConstructor().newInstance();
+                if (!(created instanceof StateCodec)) {
+                    throw new OperationException("The agent does not read its own state.");
+                }
+                ((StateCodec) created).readState(input);
+                agent = (Agent) created;
+            } else if (kind == SERIALIZED) {
+                agent = (Agent) IOAccess.toObject(input.readAllBytes(), classLoader);
+            } else {
+                throw new OperationException("Unknown agent state kind.");
+            }
+
+            return new AgentRunnable(null, instance, agent, null);
+        } catch (IOException | ClassCastException | ReflectiveOperationException | LinkageError e) {
+            throw new OperationException(e);
+        }
+    }
+
+    synchronized void collectStatistics(Map<String, String> statistics) {
+        statistics.put("Agent States Written By Agents", Long.toString(codecWrites));
+        statistics.put("Agent States Serialized", Long.toString(serializedWrites));
+        statistics.put("Agent States Sent Whole", Long.toString(legacyWrites));
+    }
+
+}
@@ -19,20 +19,25 @@
 package uk.co.connectina.agentstation.local;
 
 import uk.co.connectina.agentstation.api.*;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.file.Files;
+import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.co.connectina.agentstation.api.client.Collaboration;
 import uk.co.connectina.agentstation.api.client.AgentInstance;
 import uk.co.connectina.agentstation.api.client.LogType;
+import uk.co.connectina.agentstation.local.dao.ConnectionPool;
 
 /**
  * Provides access to Agent Station capabilities.
@@ -46,9 +51,10 @@ public class AgentStation implements Station, AgentListener {
     private Registry registry;
     private StationAssistant assistant;
     private StationInfo stationInfo;
-    private transient StationMessenger stationMessenger = new StationMessenger();
+    private transient StationEventBus eventBus = new StationEventBus();
     private transient PlaceManager placeManager;
     private transient AgentManager agentManager;
+    private transient StationStartup startup;
 
     public AgentStation(StationInfo stationInfo) throws OperationException {
         this(stationInfo, null);
@@ -57,12 +63,16 @@ public class AgentStation implements Station, AgentListener {
     public AgentStation(StationInfo stationInfo, StationListener listener) throws OperationException {
         this.stationInfo = stationInfo;
         assistant = new StationAssistant(this);
-        registry = new AgentRegistry(this.stationInfo.getName(), assistant.getAssistantInstance());
-        placeManager = new PlaceManager(registry, stationMessenger);
-        agentManager = new AgentManager(stationInfo, this, registry, placeManager, stationMessenger, assistant, this);
+        ConnectionPool.setMaxConnections(stationInfo.getDbPoolSize());
+        AgentRegistry agentRegistry = new AgentRegistry(this.stationInfo.getName(), assistant.getAssistantInstance());
+        registry = stationInfo.isRegistryCache() ? new CachingRegistry(agentRegistry) : agentRegistry;
+        placeManager = new PlaceManager(registry, eventBus);
+        agentManager = new AgentManager(stationInfo, this, registry, placeManager, eventBus, assistant, this);
+        // Remote stations that may have cached a permission hear when it changes
+        agentRegistry.setPermissionListener(agentManager);
 
         if (listener != null) {
-            stationMessenger.addListener(listener);
+            eventBus.addListener(listener);
         }
 
         initiate();
@@ -72,8 +82,8 @@ public class AgentStation implements Station, AgentListener {
         stationInfo = new StationInfo("", "", RemoteSupport.RMI, "", 0);
         assistant = new StationAssistant(this);
         registry = new AgentRegistry(this.stationInfo.getName(), assistant.getAssistantInstance());
-        placeManager = new PlaceManager(registry, stationMessenger);
-        agentManager = new AgentManager(stationInfo, this, registry, placeManager, stationMessenger, assistant, this);
+        placeManager = new PlaceManager(registry, eventBus);
+        agentManager = new AgentManager(stationInfo, this, registry, placeManager, eventBus, assistant, this);
     }
 
     /**
@@ -92,11 +102,14 @@ public class AgentStation implements Station, AgentListener {
     @Override
     public void shutdownStation() {
         for (AgentRunnable ac : agentManager.getAgentRunnables()) {
-            if (ac.isActive()) {
+            if (ac.isActive() || ac.isQueued()) {
                 ac.stop();
                 LOGGER.info("{}: {}", IOAccess.getPlainAboutAgent(ac.getInstance()), "Stop requested");
             }
         }
+        agentManager.closeConnections();
+        eventBus.shutdown();
+        IOAccess.getChecksums().flush();
     }
 
     /**
@@ -156,11 +169,34 @@ public class AgentStation implements Station, AgentListener {
     }
 
     @Override
-    public void migrateAgent(Instance instance, String remoteServer, int port, String placeName)
+    public MigrationResult migrateAgent(Instance instance, String remoteServer, int port, String placeName)
             throws OperationException {
         instanceValidation(instance);
-        agentManager.migrateAgent(instance, remoteServer, port, placeName);
-        deleteUnusedJar(instance.getIdentity().getPackageFile());
+        // The package is kept, so that a returning agent does not need to bring it back, unused packages are removed on startup
+        return agentManager.migrateAgent(instance, remoteServer, port, placeName);
+    }
+
+    @Override
+    public CompletableFuture<MigrationResult> migrateAgentAsync(Instance instance, String remoteServer, int port, String placeName,
+            Duration deadline) {
+        try {
+            instanceValidation(instance);
+        } catch (OperationException e) {
+
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return agentManager.migrateAgentAsync(instance, remoteServer, port, placeName, deadline);
+    }
+
+    @Override
+    public List<MigrationResult> migrateAgents(List<Instance> instances, String remoteServer, int port, String placeName)
+            throws OperationException {
+        for (Instance instance : instances) {
+            instanceValidation(instance);
+        }
+
+        return agentManager.migrateAgents(instances, remoteServer, port, placeName);
     }
 
     @Override
@@ -200,7 +236,7 @@ public class AgentStation implements Station, AgentListener {
     @Override
     public void stopAgent(Instance instance) throws OperationException {
         instanceValidation(instance);
-        if (agentManager.isAgentActive(instance)) {
+        if (agentManager.isAgentActive(instance) || agentManager.isAgentQueued(instance)) {
             agentManager.stopAgent(instance);
         }
     }
@@ -223,6 +259,16 @@ public class AgentStation implements Station, AgentListener {
         return agentManager.isAgentActive(instance);
     }
 
+    @Override
+    public void registerPeer(String remoteServer, int port) {
+        agentManager.registerPeer(remoteServer, port);
+    }
+
+    @Override
+    public void invalidatePermission(PermissionIdentity permissionIdentity) {
+        agentManager.invalidatePermission(permissionIdentity);
+    }
+
     @Override
     public void removePlace(String name) throws OperationException {
         removePlaceValidation(name);
@@ -231,22 +277,44 @@ public class AgentStation implements Station, AgentListener {
 
     @Override
     public void notify(Instance agentInstance, String operationName, Object... info) {
-        if (operationName.equals("start") || operationName.equals("stop")) {
-            try {
-                registry.updateAgentState(agentInstance);
-            } catch (OperationException e) {
-                LOGGER.error("{}: {}", IOAccess.getPlainAboutAgent(agentInstance), e.getMessage());
+        StationEvent.Type type;
+        switch (operationName) {
+            case "start" -> type = StationEvent.Type.AGENT_START;
+            case "stop" -> type = StationEvent.Type.AGENT_STOP;
+            case "queued" -> type = StationEvent.Type.AGENT_QUEUED;
+            default -> {
+                LOGGER.error("{}: {} {}", IOAccess.getPlainAboutAgent(agentInstance), "Unknown operation name:", operationName);
+
+                return;
             }
         }
-        stationMessenger.notifyStationListeners(operationName, agentInstance, info);
+
+        try {
+            registry.updateAgentState(agentInstance);
+        } catch (OperationException e) {
+            LOGGER.error("{}: {}", IOAccess.getPlainAboutAgent(agentInstance), e.getMessage());
+        }
+        notifyStationListeners(StationEvent.agent(type, agentInstance));
+    }
+
+    @Override
+    public Map<String, String> getStatistics() {
+        Map<String, String> statistics = new LinkedHashMap<>();
+        agentManager.collectStatistics(statistics);
+        eventBus.collectStatistics(statistics);
+        if (startup != null) {
+            startup.collectStatistics(statistics);
+        }
+
+        return statistics;
     }
 
     boolean placeExists(String name) throws OperationException {
         return placeManager.placeExists(name);
     }
 
-    void notifyStationListeners(String operationName, Object... info) {
-        stationMessenger.notifyStationListeners(operationName, info);
+    void notifyStationListeners(StationEvent event) {
+        eventBus.publish(event);
     }
 
     void setSupport(Registry registry, AgentManager agentManager, PlaceManager placeManager) {
@@ -296,38 +364,8 @@ public class AgentStation implements Station, AgentListener {
         initiatePlaces();
 
         // Initiate agents
-        File[] files = IOAccess.APP_PACKAGE_FOLDER.listFiles((File folder, String name) -> name.endsWith(".jar"));
-        for (File file : Objects.requireNonNull(files)) {
-            List<Instance> instances = agentManager.getInstancesByPackageFile(file);
-            if (instances.isEmpty()) {
-                try {
-                    Files.delete(file.toPath());
-                } catch (IOException ex) {
-                    file.deleteOnExit();
-                }
-
-                continue;
-            }
-            for (Instance instance : instances) {
-                if (instance.getState() == Instance.State.ACTIVE) {
-                    instance.setState(Instance.State.INACTIVE);
-                    registry.updateAgentState(instance);
-                }
-
-                initiateAgent(instance);
-            }
-        }
-    }
-
-    private void initiateAgent(Instance instance) throws OperationException {
-        Permission permission = registry.lookupPermission(new PermissionIdentity(instance.getIdentity().getName(),
-                instance.getShortId(), instance.getPlaceName()));
-        if (permission != null && permission.isAllowed()) {
-            createAgent(instance, null);
-            if (permission.isAutoStart()) {
-                startAgent(instance);
-            }
-        }
+        startup = new StationStartup(this, registry, agentManager, stationInfo.getStartRate());
+        startup.run(IOAccess.APP_PACKAGE_FOLDER);
     }
 
     private void initiatePlaces() throws OperationException {
@@ -0,0 +1,89 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Creates the threads that agents run on, according to the station thread
+ * type. Virtual threads are obtained reflectively so that the station still
+ * runs on a Java runtime without them, falling back to platform threads.
+ *
+ * @author Dr Christos Bohoris
+ */
+final class AgentThreadFactory implements ThreadFactory {
+
+    private static final Logger LOGGER = LogManager.getLogger(AgentThreadFactory.class.toString());
+    private final ThreadFactory virtualFactory;
+    private final ThreadSupport threads;
+
+    AgentThreadFactory(ThreadSupport threads) {
+        this(threads, threads == ThreadSupport.VIRTUAL ? getVirtualFactory(Thread.class) : null);
+    }
+
+    AgentThreadFactory(ThreadSupport threads, ThreadFactory virtualFactory) {
+        if (threads == ThreadSupport.VIRTUAL && virtualFactory == null) {
+            LOGGER.warn("Virtual threads are not available in this Java runtime. Using platform threads.");
+        }
+        this.virtualFactory = threads == ThreadSupport.VIRTUAL ? virtualFactory : null;
+        this.threads = this.virtualFactory != null ? ThreadSupport.VIRTUAL : ThreadSupport.PLATFORM;
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        if (virtualFactory != null) {
+
+            return virtualFactory.newThread(runnable);
+        }
+
+        return new Thread(runnable);
+    }
+
+    /**
+     * Provides the thread type actually in use.
+     *
+     * @return the thread type in use
+     */
+    ThreadSupport getThreads() {
+        return threads;
+    }
+
+    /**
+     * Provides a virtual thread factory through the given thread class.
+     *
+     * @param threadClass the thread class, normally {@link Thread}
+     * @return the factory or null if the class has no virtual threads
+     */
+    static ThreadFactory getVirtualFactory(Class<?> threadClass) {
+        try {
+            Object builder = threadClass.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug(e);
+
+            return null;
+        }
+    }
+
+}
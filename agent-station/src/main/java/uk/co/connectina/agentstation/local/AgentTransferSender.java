@@ -0,0 +1,206 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferChunk;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferHeader;
+import uk.co.connectina.agentstation.api.grpc.MigrationResultType;
+
+/**
+ * Sends a streamed agent migration: the header first and then the package read
+ * straight from its file in fixed-size chunks. A chunk is only sent when the
+ * call is ready for more, so at most a few chunks are buffered at a time. The
+ * receiving station may answer as soon as it sees the header, in which case
+ * the rest of the package is not sent. Several agents may follow each other in
+ * the one call, each answered in the order it was sent.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentTransferSender implements ClientResponseObserver<AgentTransferChunk, MigrationResultType> {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+    private static final long TRANSFER_TIMEOUT_MINUTES = 5;
+    private final CountDownLatch done = new CountDownLatch(1);
+    private ClientCallStreamObserver<AgentTransferChunk> requestStream;
+    private volatile Throwable error;
+    private final List<MigrationResultType> results = Collections.synchronizedList(new ArrayList<>());
+
+    @Override
+    public void beforeStart(ClientCallStreamObserver<AgentTransferChunk> requestStream) {
+        this.requestStream = requestStream;
+        requestStream.setOnReadyHandler(this::signalReady);
+    }
+
+    @Override
+    public void onNext(MigrationResultType value) {
+        results.add(value);
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        error = t;
+        done.countDown();
+        signalReady();
+    }
+
+    @Override
+    public void onCompleted() {
+        done.countDown();
+        signalReady();
+    }
+
+    /**
+     * Sends the migration and waits for the receiving station to answer.
+     *
+     * @param header the transfer header
+     * @param packagePath the package file, or null when the receiving station
+     * already has the package
+     * @return the outcome, or null if the receiving station does not support
+     * the combined migration call
+     * @throws OperationException the transfer failed
+     */
+    MigrationResult send(AgentTransferHeader header, Path packagePath) throws OperationException {
+        List<MigrationResult> sent = send(List.of(header), Collections.singletonList(packagePath));
+
+        return sent != null ? sent.get(0) : null;
+    }
+
+    /**
+     * Sends the migration of several agents in the one call and waits for the
+     * receiving station to answer each of them.
+     *
+     * @param headers the transfer headers
+     * @param packagePaths the package file of each agent, or null when the
+     * package is not sent with that agent
+     * @return the outcome of each agent in the order sent, or null if the
+     * receiving station does not support the call
+     * @throws OperationException the transfer failed
+     */
+    List<MigrationResult> send(List<AgentTransferHeader> headers, List<Path> packagePaths) throws OperationException {
+        try {
+            for (int i = 0; i < headers.size() && isOpen(); i++) {
+                write(AgentTransferChunk.newBuilder().setHeader(headers.get(i)).build());
+                writePackage(packagePaths.get(i));
+            }
+            if (isOpen()) {
+                requestStream.onCompleted();
+            }
+            if (!done.await(TRANSFER_TIMEOUT_MINUTES, TimeUnit.MINUTES)) {
+                requestStream.cancel("Agent transfer timed out", null);
+
+                throw new OperationException("Agent transfer timed out.");
+            }
+        } catch (IOException e) {
+            requestStream.cancel("Agent package read failed", e);
+
+            throw new OperationException(e);
+        } catch (InterruptedException e) {
+            requestStream.cancel("Agent transfer interrupted", e);
+            Thread.currentThread().interrupt();
+
+            throw new OperationException(e);
+        }
+
+        if (error != null) {
+            if (Status.fromThrowable(error).getCode() == Status.Code.UNIMPLEMENTED) {
+
+                return null;
+            }
+
+            throw new OperationException(error);
+        }
+        if (results.size() != headers.size()) {
+
+            throw new OperationException("The receiving station did not return a migration result for every agent.");
+        }
+
+        List<MigrationResult> migrationResults = new ArrayList<>(results.size());
+        for (MigrationResultType result : results) {
+            migrationResults.add(toMigrationResult(result));
+        }
+
+        return migrationResults;
+    }
+
+    static MigrationResult toMigrationResult(MigrationResultType result) {
+        String message = result.getMessage().isEmpty() ? null : result.getMessage();
+        switch (result.getStatus()) {
+            case ACCEPTED:
+
+                return new MigrationResult(MigrationResult.Status.ACCEPTED, message);
+            case NOT_ALLOWED:
+
+                return new MigrationResult(MigrationResult.Status.NOT_ALLOWED, message);
+            default:
+
+                return new MigrationResult(MigrationResult.Status.ERROR, message);
+        }
+    }
+
+    private boolean isOpen() {
+        // The receiving station completes the call early when it rejects the agent
+        return error == null && done.getCount() > 0;
+    }
+
+    private void writePackage(Path packagePath) throws IOException, InterruptedException {
+        if (packagePath == null) {
+
+            return;
+        }
+
+        try (InputStream input = Files.newInputStream(packagePath)) {
+            byte[] buffer = new byte[CHUNK_SIZE];
+            int read;
+            while (isOpen() && (read = input.readNBytes(buffer, 0, CHUNK_SIZE)) > 0) {
+                write(AgentTransferChunk.newBuilder().setPackageChunk(ByteString.copyFrom(buffer, 0, read)).build());
+            }
+        }
+    }
+
+    private void write(AgentTransferChunk chunk) throws InterruptedException {
+        synchronized (this) {
+            while (isOpen() && !requestStream.isReady()) {
+                wait();
+            }
+        }
+        if (isOpen()) {
+            requestStream.onNext(chunk);
+        }
+    }
+
+    private synchronized void signalReady() {
+        notifyAll();
+    }
+
+}
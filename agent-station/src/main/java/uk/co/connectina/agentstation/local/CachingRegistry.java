@@ -0,0 +1,370 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import uk.co.connectina.agentstation.api.AgentKey;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.PermissionIdentity;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Holds places, permissions, agent system ids and schedules of a registry in
+ * memory. Writes go through to the underlying registry before the cached entry
+ * is replaced, so reads of hot metadata need no database round trip. Missing
+ * schedules are remembered too, as are the most recently missed permissions up
+ * to a fixed bound, since their identities come from remote stations. Lists of
+ * agents and permissions are always read from the underlying registry, which
+ * also warms the cache.
+ *
+ * @author Dr Christos Bohoris
+ */
+public class CachingRegistry implements Registry {
+
+    enum Area { PLACES, PERMISSIONS, AGENTS, SCHEDULES }
+
+    static final int MAX_MISSING_PERMISSIONS = 1024;
+
+    private final Registry registry;
+    private final transient Map<PermissionIdentity, Optional<Permission>> permissions = new ConcurrentHashMap<>();
+    private final transient Map<PermissionIdentity, Boolean> missingPermissions = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<PermissionIdentity, Boolean> eldest) {
+            boolean full = size() > MAX_MISSING_PERMISSIONS;
+            if (full) {
+                permissions.remove(eldest.getKey(), Optional.empty());
+            }
+
+            return full;
+        }
+    };
+    private final transient Map<AgentKey, Optional<Long>> agentSids = new ConcurrentHashMap<>();
+    private final transient Map<Long, Optional<Schedule>> schedules = new ConcurrentHashMap<>();
+    private final transient Map<Area, LongAdder> hits = new EnumMap<>(Area.class);
+    private final transient Map<Area, LongAdder> misses = new EnumMap<>(Area.class);
+    private transient volatile List<String> places;
+
+    /**
+     * Initiates a new object instance.
+     *
+     * @param registry the registry that persists the information
+     */
+    public CachingRegistry(Registry registry) {
+        this.registry = registry;
+        for (Area area : Area.values()) {
+            hits.put(area, new LongAdder());
+            misses.put(area, new LongAdder());
+        }
+    }
+
+    @Override
+    public void registerAgent(Instance instance) throws OperationException {
+        registry.registerAgent(instance);
+        agentSids.put(instance.getKey(), Optional.of(instance.getSid()));
+    }
+
+    @Override
+    public void registerPlace(String name) throws OperationException {
+        synchronized (this) {
+            registry.registerPlace(name);
+            if (places != null) {
+                List<String> updated = new ArrayList<>(places);
+                updated.add(name);
+                places = Collections.unmodifiableList(updated);
+            }
+        }
+    }
+
+    @Override
+    public void registerPermission(Permission permission) throws OperationException {
+        registry.registerPermission(permission);
+        PermissionIdentity key = keyOf(permission);
+        permissions.put(key, Optional.of(copyOf(permission)));
+        synchronized (missingPermissions) {
+            missingPermissions.remove(key);
+        }
+    }
+
+    @Override
+    public List<Instance> lookupAgents() throws OperationException {
+        List<Instance> instances = registry.lookupAgents();
+        for (Instance instance : instances) {
+            agentSids.putIfAbsent(instance.getKey(), Optional.of(instance.getSid()));
+        }
+
+        return instances;
+    }
+
+    @Override
+    public List<Permission> lookupPermissions() throws OperationException {
+        List<Permission> results = registry.lookupPermissions();
+        for (Permission permission : results) {
+            permissions.putIfAbsent(keyOf(permission), Optional.of(copyOf(permission)));
+        }
+
+        return results;
+    }
+
+    @Override
+    public List<Schedule> lookupSchedules() throws OperationException {
+        List<Schedule> results = registry.lookupSchedules();
+        for (Schedule schedule : results) {
+            schedules.putIfAbsent(schedule.getAgentSid(), Optional.of(copyOf(schedule)));
+        }
+
+        return results;
+    }
+
+    @Override
+    public List<Instance> lookupAgentsByPlaceName(String placeName) throws OperationException {
+
+        return registry.lookupAgentsByPlaceName(placeName);
+    }
+
+    @Override
+    public List<Instance> lookupAgentsByPackageFile(String packageFile) throws OperationException {
+
+        return registry.lookupAgentsByPackageFile(packageFile);
+    }
+
+    @Override
+    public boolean agentExists(Instance instance) throws OperationException {
+        Optional<Long> sid = instance != null && instance.getIdentity() != null ? agentSids.get(instance.getKey()) : null;
+        if (sid != null) {
+            hits.get(Area.AGENTS).increment();
+
+            return sid.isPresent();
+        }
+        misses.get(Area.AGENTS).increment();
+
+        return registry.agentExists(instance);
+    }
+
+    @Override
+    public void updateAgentState(Instance instance) throws OperationException {
+        registry.updateAgentState(instance);
+    }
+
+    @Override
+    public void updateAgentParameters(Instance instance) throws OperationException {
+        registry.updateAgentParameters(instance);
+    }
+
+    @Override
+    public List<String> lookupPlaces() throws OperationException {
+        List<String> current = places;
+        if (current != null) {
+            hits.get(Area.PLACES).increment();
+
+            return new ArrayList<>(current);
+        }
+        misses.get(Area.PLACES).increment();
+        synchronized (this) {
+            if (places == null) {
+                places = Collections.unmodifiableList(new ArrayList<>(registry.lookupPlaces()));
+            }
+            current = places;
+        }
+
+        return new ArrayList<>(current);
+    }
+
+    @Override
+    public Permission lookupPermission(PermissionIdentity permissionIdentity) throws OperationException {
+        if (permissionIdentity == null) {
+
+            return registry.lookupPermission(permissionIdentity);
+        }
+
+        PermissionIdentity key = keyOf(permissionIdentity);
+        Optional<Permission> cached = permissions.get(key);
+        if (cached != null) {
+            hits.get(Area.PERMISSIONS).increment();
+            if (cached.isEmpty()) {
+                synchronized (missingPermissions) {
+                    missingPermissions.get(key);
+                }
+            }
+
+            return cached.map(CachingRegistry::copyOf).orElse(null);
+        }
+        misses.get(Area.PERMISSIONS).increment();
+        Permission permission = registry.lookupPermission(permissionIdentity);
+        if (permission != null) {
+            permissions.putIfAbsent(key, Optional.of(copyOf(permission)));
+        } else if (permissions.putIfAbsent(key, Optional.empty()) == null) {
+            rememberMissing(key);
+        }
+
+        return permission;
+    }
+
+    @Override
+    public List<Permission> lookupPermissionsByPlaceName(String placeName) throws OperationException {
+
+        return registry.lookupPermissionsByPlaceName(placeName);
+    }
+
+    @Override
+    public void deregisterAgent(Instance instance) throws OperationException {
+        registry.deregisterAgent(instance);
+        agentSids.remove(instance.getKey());
+    }
+
+    @Override
+    public void deregisterPlace(String placeName) throws OperationException {
+        synchronized (this) {
+            registry.deregisterPlace(placeName);
+            if (places != null) {
+                List<String> updated = new ArrayList<>(places);
+                updated.remove(placeName);
+                places = Collections.unmodifiableList(updated);
+            }
+        }
+    }
+
+    @Override
+    public void deregisterPermission(PermissionIdentity permissionIdentity) throws OperationException {
+        registry.deregisterPermission(permissionIdentity);
+        PermissionIdentity key = keyOf(permissionIdentity);
+        permissions.put(key, Optional.empty());
+        rememberMissing(key);
+    }
+
+    @Override
+    public void registerSchedule(Schedule schedule) throws OperationException {
+        registry.registerSchedule(schedule);
+        schedules.put(schedule.getAgentSid(), Optional.of(copyOf(schedule)));
+    }
+
+    @Override
+    public void deregisterSchedule(long agentSid) throws OperationException {
+        registry.deregisterSchedule(agentSid);
+        schedules.put(agentSid, Optional.empty());
+    }
+
+    @Override
+    public boolean scheduleExists(long agentSid) throws OperationException {
+        Optional<Schedule> cached = schedules.get(agentSid);
+        if (cached != null) {
+            hits.get(Area.SCHEDULES).increment();
+
+            return cached.isPresent();
+        }
+        misses.get(Area.SCHEDULES).increment();
+
+        return registry.scheduleExists(agentSid);
+    }
+
+    @Override
+    public Schedule lookupScheduleByAgentSid(long agentSid) throws OperationException {
+        Optional<Schedule> cached = schedules.get(agentSid);
+        if (cached != null) {
+            hits.get(Area.SCHEDULES).increment();
+
+            return cached.map(CachingRegistry::copyOf).orElse(null);
+        }
+        misses.get(Area.SCHEDULES).increment();
+        Schedule schedule = registry.lookupScheduleByAgentSid(agentSid);
+        schedules.putIfAbsent(agentSid, Optional.ofNullable(schedule).map(CachingRegistry::copyOf));
+
+        return schedule;
+    }
+
+    @Override
+    public long lookupAgentSid(Instance instance) throws OperationException {
+        Optional<Long> cached = agentSids.get(instance.getKey());
+        if (cached != null && cached.isPresent()) {
+            hits.get(Area.AGENTS).increment();
+
+            return cached.get();
+        }
+        misses.get(Area.AGENTS).increment();
+        long sid = registry.lookupAgentSid(instance);
+        agentSids.putIfAbsent(instance.getKey(), Optional.of(sid));
+
+        return sid;
+    }
+
+    /**
+     * Provides the share of lookups in an area answered from memory.
+     *
+     * @param area the cached area
+     * @return the hit rate between 0 and 1
+     */
+    double hitRate(Area area) {
+        long hitCount = hits.get(area).sum();
+        long total = hitCount + misses.get(area).sum();
+
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        for (Area area : Area.values()) {
+            String name = area.name().charAt(0) + area.name().substring(1).toLowerCase();
+            long hitCount = hits.get(area).sum();
+            long missCount = misses.get(area).sum();
+            statistics.put("Registry Cache " + name + " Hits", Long.toString(hitCount));
+            statistics.put("Registry Cache " + name + " Misses", Long.toString(missCount));
+            statistics.put("Registry Cache " + name + " Hit Rate", String.format(Locale.ROOT, "%.1f%%", hitRate(area) * 100));
+        }
+    }
+
+    private void rememberMissing(PermissionIdentity key) {
+        // Evicting the oldest miss also drops its cached empty entry
+        synchronized (missingPermissions) {
+            missingPermissions.put(key, Boolean.TRUE);
+        }
+    }
+
+    private static PermissionIdentity keyOf(PermissionIdentity permissionIdentity) {
+
+        return new PermissionIdentity(permissionIdentity.getAgentName(), permissionIdentity.getAgentShortId(),
+                permissionIdentity.getPlaceName());
+    }
+
+    private static Permission copyOf(Permission permission) {
+        Permission copy = new Permission(permission.getAgentName(), permission.getAgentShortId(),
+                permission.getPlaceName(), permission.isAllowed(), permission.isAutoStart());
+        copy.setSid(permission.getSid());
+
+        return copy;
+    }
+
+    private static Schedule copyOf(Schedule schedule) {
+        Schedule copy = new Schedule(schedule.getAgentSid(), schedule.getStartDate(), schedule.getStartTime(),
+                schedule.getRepeat(), schedule.getInterval(), schedule.getOccur());
+        copy.setSid(schedule.getSid());
+
+        return copy;
+    }
+
+}
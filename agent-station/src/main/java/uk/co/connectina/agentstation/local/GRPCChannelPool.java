@@ -0,0 +1,267 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.handler.ssl.SslContext;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps one gRPC channel per remote station, so that migrations to the same
+ * station reuse a warm HTTP/2 connection instead of performing a new TLS
+ * handshake. All channels share one Netty event loop group and one client
+ * SSL context; the SSL context is rebuilt, and the channels using the old one
+ * are retired, when the certificate files change. Channels that have not been
+ * used for a while are closed. A channel is taken for a whole exchange and
+ * given back after it, and is never shut down while an exchange still uses
+ * it: a replaced channel waits in a retiring list until its users finish.
+ *
+ * @author Dr Christos Bohoris
+ */
+class GRPCChannelPool {
+
+    private static final class PooledChannel {
+
+        private final ManagedChannel channel;
+        private final String certificateStamp;
+        private volatile long lastUsed;
+        private int users;
+
+        PooledChannel(ManagedChannel channel, String certificateStamp) {
+            this.channel = channel;
+            this.certificateStamp = certificateStamp;
+            this.lastUsed = System.currentTimeMillis();
+        }
+
+    }
+
+    static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+    private static final long EVICTION_PERIOD_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final String[] CERTIFICATE_FILES = {"ca-cert.pem", "client-cert.pem", "client-key.pem"};
+    private static final Logger LOGGER = LogManager.getLogger(GRPCChannelPool.class.toString());
+    private final Map<String, PooledChannel> channels = new ConcurrentHashMap<>();
+    private final List<PooledChannel> retiring = new ArrayList<>();
+    private final long idleMillis;
+    private EventLoopGroup eventLoopGroup;
+    private Timer evictionTimer;
+    private SslContext sslContext;
+    private String sslContextStamp;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong reused = new AtomicLong();
+    private final AtomicLong evicted = new AtomicLong();
+    private final AtomicLong reloads = new AtomicLong();
+
+    GRPCChannelPool() {
+        this(IDLE_MILLIS);
+    }
+
+    GRPCChannelPool(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+
+    /**
+     * Takes the pooled channel to a remote station for an exchange, creating
+     * it if needed. The channel must be given back with
+     * {@link #releaseChannel(Channel)} once the exchange is over.
+     *
+     * @param host the remote station host
+     * @param port the remote station port
+     * @return the channel
+     * @throws IOException the channel could not be created
+     */
+    ManagedChannel getChannel(String host, int port) throws IOException {
+        String key = IOAccess.getServerAndPortText(host, port);
+        String stamp = getCertificateStamp();
+        synchronized (this) {
+            PooledChannel pooled = channels.get(key);
+            if (pooled != null && !pooled.channel.isShutdown() && pooled.certificateStamp.equals(stamp)) {
+                pooled.lastUsed = System.currentTimeMillis();
+                pooled.users++;
+                reused.incrementAndGet();
+
+                return pooled.channel;
+            }
+            if (pooled != null) {
+                retire(pooled);
+            }
+
+            pooled = new PooledChannel(createChannel(host, port, stamp), stamp);
+            pooled.users++;
+            channels.put(key, pooled);
+            created.incrementAndGet();
+            startEviction();
+
+            return pooled.channel;
+        }
+    }
+
+    /**
+     * Gives back a channel taken for an exchange.
+     *
+     * @param channel the channel
+     */
+    synchronized void releaseChannel(Channel channel) {
+        for (PooledChannel pooled : channels.values()) {
+            if (pooled.channel == channel) {
+                pooled.lastUsed = System.currentTimeMillis();
+                pooled.users = Math.max(0, pooled.users - 1);
+
+                return;
+            }
+        }
+        Iterator<PooledChannel> iterator = retiring.iterator();
+        while (iterator.hasNext()) {
+            PooledChannel pooled = iterator.next();
+            if (pooled.channel == channel) {
+                if (--pooled.users <= 0) {
+                    iterator.remove();
+                    pooled.channel.shutdown();
+                }
+
+                return;
+            }
+        }
+    }
+
+    /**
+     * Closes every pooled channel and the shared event loop group.
+     */
+    synchronized void shutdown() {
+        for (PooledChannel pooled : channels.values()) {
+            pooled.channel.shutdown();
+        }
+        channels.clear();
+        for (PooledChannel pooled : retiring) {
+            pooled.channel.shutdown();
+        }
+        retiring.clear();
+        if (evictionTimer != null) {
+            evictionTimer.cancel();
+            evictionTimer = null;
+        }
+        if (eventLoopGroup != null) {
+            eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
+            eventLoopGroup = null;
+        }
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        statistics.put("gRPC Channels", Integer.toString(channels.size()));
+        synchronized (this) {
+            statistics.put("gRPC Channels Retiring", Integer.toString(retiring.size()));
+        }
+        statistics.put("gRPC Channels Created", Long.toString(created.get()));
+        statistics.put("gRPC Channel Reuses", Long.toString(reused.get()));
+        statistics.put("gRPC Channels Evicted", Long.toString(evicted.get()));
+        statistics.put("gRPC Certificate Reloads", Long.toString(reloads.get()));
+    }
+
+    /**
+     * Closes the channels that no exchange uses and that have not been used
+     * within the idle time.
+     */
+    synchronized void evictIdle() {
+        long now = System.currentTimeMillis();
+        Iterator<PooledChannel> iterator = channels.values().iterator();
+        while (iterator.hasNext()) {
+            PooledChannel pooled = iterator.next();
+            if (pooled.users == 0 && (now - pooled.lastUsed >= idleMillis || pooled.channel.isShutdown())) {
+                iterator.remove();
+                pooled.channel.shutdown();
+                evicted.incrementAndGet();
+            }
+        }
+    }
+
+    private void retire(PooledChannel pooled) {
+        if (pooled.users > 0) {
+            retiring.add(pooled);
+        } else {
+            pooled.channel.shutdown();
+        }
+    }
+
+    ManagedChannel createChannel(String host, int port, String certificateStamp) throws IOException {
+        if (eventLoopGroup == null) {
+            eventLoopGroup = new NioEventLoopGroup(0, new DefaultThreadFactory("gRPC Client", true));
+        }
+
+        return NettyChannelBuilder.forAddress(host, port)
+                .sslContext(getSslContext(certificateStamp))
+                .eventLoopGroup(eventLoopGroup)
+                .channelType(NioSocketChannel.class)
+                .keepAliveWithoutCalls(true)
+                .build();
+    }
+
+    String getCertificateStamp() {
+        StringBuilder stamp = new StringBuilder();
+        for (String name : CERTIFICATE_FILES) {
+            File file = new File(IOAccess.APP_CERT_FOLDER, name);
+            stamp.append(file.length()).append(':').append(file.lastModified()).append(';');
+        }
+
+        return stamp.toString();
+    }
+
+    private SslContext getSslContext(String certificateStamp) throws IOException {
+        if (sslContext == null || !certificateStamp.equals(sslContextStamp)) {
+            if (sslContext != null) {
+                reloads.incrementAndGet();
+                LOGGER.info("Reloading the gRPC client certificates");
+            }
+            sslContext = GRPCUtility.loadTLSCredentials();
+            sslContextStamp = certificateStamp;
+        }
+
+        return sslContext;
+    }
+
+    private void startEviction() {
+        if (evictionTimer == null) {
+            evictionTimer = new Timer("gRPC Channel Eviction", true);
+            evictionTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    evictIdle();
+                }
+            }, EVICTION_PERIOD_MILLIS, EVICTION_PERIOD_MILLIS);
+        }
+    }
+
+}
@@ -20,22 +20,36 @@ package uk.co.connectina.agentstation.local;
 
 import com.google.protobuf.ByteString;
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.netty.GrpcSslContexts;
-import io.grpc.netty.NettyChannelBuilder;
 import io.netty.handler.ssl.SslContext;
 import java.io.File;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
 import javax.net.ssl.SSLException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import uk.co.connectina.agentstation.api.Instance;
 import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.PermissionIdentity;
+import uk.co.connectina.agentstation.api.StationEvent;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferHeader;
 import uk.co.connectina.agentstation.api.grpc.AgentTransferInput;
+import uk.co.connectina.agentstation.api.grpc.PackageInput;
 import uk.co.connectina.agentstation.api.grpc.PermissionInput;
+import uk.co.connectina.agentstation.api.grpc.PermissionInvalidationInput;
 import uk.co.connectina.agentstation.api.grpc.PermissionType;
 import uk.co.connectina.agentstation.api.grpc.RemoteRegistryGrpc;
 import uk.co.connectina.agentstation.api.grpc.RemoteStationGrpc;
+import uk.co.connectina.agentstation.api.grpc.VoidType;
 import uk.co.connectina.agentstation.grpc.MapUtility;
 
 /**
@@ -45,9 +59,8 @@ import uk.co.connectina.agentstation.grpc.MapUtility;
  */
 class GRPCUtility {
 
-    private static final String MIGRATE_AGENT = "migrateAgent";
+    private static final Logger LOGGER = LogManager.getLogger(GRPCUtility.class.toString());
     private static final String REMOTE_PERMISSION_LOOKUP_FAILED = "Remote permission lookup failed";
-    private static final String REGISTRY_COMM_FAILED = "registryCommFailed";
     private static final String MESSAGE_ERROR_PATTERN = "{0}: {1}";
     
     private GRPCUtility() {
@@ -65,16 +78,12 @@ class GRPCUtility {
                 .build();
     }
 
-    static RemoteStationGrpc.RemoteStationBlockingStub getGRPCStation(String ipAddress, int port, Instance instance, StationMessenger stationMessenger) throws OperationException {
+    static RemoteStationGrpc.RemoteStationBlockingStub getGRPCStation(GRPCChannelPool channelPool, String ipAddress, int port, Instance instance, StationEventBus eventBus) throws OperationException {
         ManagedChannel channel;
         try {
-            SslContext sslContext = loadTLSCredentials();
-            channel = NettyChannelBuilder.forAddress(ipAddress, port)
-                    .sslContext(sslContext)
-                    .keepAliveWithoutCalls(true)
-                    .build();
+            channel = channelPool.getChannel(ipAddress, port);
         } catch (Exception e) {
-            stationMessenger.notifyStationListeners(MIGRATE_AGENT, instance, ipAddress, ((Integer) port).toString(), REGISTRY_COMM_FAILED);
+            eventBus.publish(StationEvent.migrateAgent(instance, ipAddress, port, StationEvent.MigrationOutcome.REGISTRY_COMM_FAILED));
             throw new OperationException(e);
         }
 
@@ -94,29 +103,124 @@ class GRPCUtility {
         return new Permission(permissionType.getAgentName(), permissionType.getAgentTraceId(), permissionType.getPlaceName(), permissionType.getAllowed(), permissionType.getAutoStart());
     }
 
-    static void transferAgentWithGRPC(Instance instance, byte[] agentBytes, String packageName, String placeName, RemoteStationGrpc.RemoteStationBlockingStub remoteStation) throws OperationException, MalformedURLException {
-        AgentTransferInput input = AgentTransferInput.newBuilder().setInstance(MapUtility.toInstanceType(instance))
+    static boolean hasPackageWithGRPC(String packageName, String hashCode, RemoteStationGrpc.RemoteStationBlockingStub remoteStation) {
+        try {
+            return remoteStation.hasPackage(PackageInput.newBuilder().setPackageName(packageName).setHashCode(hashCode).build()).getAvailable();
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+                throw e;
+            }
+
+            // Stations that predate the package check always receive the package
+            return false;
+        }
+    }
+
+    static boolean supportsCompressionWithGRPC(RemoteStationGrpc.RemoteStationBlockingStub remoteStation) {
+        try {
+            return remoteStation.supportsCompression(VoidType.newBuilder().build()).getSupported();
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+                throw e;
+            }
+
+            // Stations that predate compression only read serialized agents
+            return false;
+        }
+    }
+
+    static boolean supportsStateCodecWithGRPC(RemoteStationGrpc.RemoteStationBlockingStub remoteStation) {
+        try {
+            return remoteStation.supportsStateCodec(VoidType.newBuilder().build()).getSupported();
+        } catch (StatusRuntimeException e) {
+            if (e.getStatus().getCode() != Status.Code.UNIMPLEMENTED) {
+                throw e;
+            }
+
+            // Stations that predate the compact state read the whole agent serialized
+            return false;
+        }
+    }
+
+    static MigrationResult migrateWithGRPC(Instance instance, byte[] agentBytes, String packageName, String placeName, boolean packageSkipped, boolean permissionKnown, StationInfo origin, RemoteStationGrpc.RemoteStationBlockingStub remoteStation) throws OperationException, MalformedURLException {
+        Path packagePath = Paths.get(new URL(instance.getIdentity().getPackageFile()).getFile());
+        AgentTransferHeader header = AgentTransferHeader.newBuilder().setInstance(MapUtility.toInstanceType(instance))
                 .setAgentBytes(ByteString.copyFrom(agentBytes))
                 .setPackageName(packageName)
                 .setPlaceName(placeName)
-                .setPackageData(ByteString.copyFrom(IOAccess.readFromFile(new URL(instance.getIdentity().getPackageFile()).getFile()))).build();
-        remoteStation.transferAgent(input);
+                .setPackageSize(packageSkipped ? 0 : packagePath.toFile().length())
+                .setPackageSkipped(packageSkipped)
+                .setSenderServer(origin.getServer())
+                .setSenderPort(origin.getPort()).build();
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(remoteStation.getChannel()).withDeadline(remoteStation.getCallOptions().getDeadline()).migrateAgent(sender);
+        MigrationResult result = sender.send(header, packageSkipped ? null : packagePath);
+        if (result == null) {
+            // The remote station predates the combined call, the permission is looked up separately unless recently granted
+            if (!permissionKnown) {
+                Permission permission = getPermissionWithGRPC(instance, RemoteRegistryGrpc.newBlockingStub(remoteStation.getChannel()).withDeadline(remoteStation.getCallOptions().getDeadline()), placeName);
+                if (permission == null || !permission.isAllowed()) {
+
+                    return new MigrationResult(MigrationResult.Status.NOT_ALLOWED, null);
+                }
+            }
+            transferAgentInOneMessage(instance, agentBytes, packageName, placeName, remoteStation);
+            result = new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+        }
+
+        return result;
     }
-    
-    static RemoteRegistryGrpc.RemoteRegistryBlockingStub getGRPCRegistry(String ipAddress, int port, Instance instance, StationMessenger stationMessenger) throws OperationException {
-        ManagedChannel channel;
+
+    static List<MigrationResult> migrateAllWithGRPC(List<Instance> instances, List<byte[]> agentBytes, List<String> packageNames, String placeName, List<Boolean> packageSkipped, StationInfo origin, RemoteStationGrpc.RemoteStationBlockingStub remoteStation) throws OperationException, MalformedURLException {
+        List<AgentTransferHeader> headers = new ArrayList<>(instances.size());
+        List<Path> packagePaths = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            Instance instance = instances.get(i);
+            Path packagePath = Paths.get(new URL(instance.getIdentity().getPackageFile()).getFile());
+            boolean skipped = packageSkipped.get(i);
+            headers.add(AgentTransferHeader.newBuilder().setInstance(MapUtility.toInstanceType(instance))
+                    .setAgentBytes(ByteString.copyFrom(agentBytes.get(i)))
+                    .setPackageName(packageNames.get(i))
+                    .setPlaceName(placeName)
+                    .setPackageSize(skipped ? 0 : packagePath.toFile().length())
+                    .setPackageSkipped(skipped)
+                    .setSenderServer(origin.getServer())
+                    .setSenderPort(origin.getPort()).build());
+            packagePaths.add(skipped ? null : packagePath);
+        }
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(remoteStation.getChannel()).withDeadline(remoteStation.getCallOptions().getDeadline()).migrateAgents(sender);
+        List<MigrationResult> results = sender.send(headers, packagePaths);
+        if (results == null) {
+            // The remote station predates the batch call, the agents are migrated one at a time
+            results = new ArrayList<>(instances.size());
+            for (int i = 0; i < instances.size(); i++) {
+                boolean available = hasPackageWithGRPC(packageNames.get(i), instances.get(i).getIdentity().getHashCode(), remoteStation);
+                results.add(migrateWithGRPC(instances.get(i), agentBytes.get(i), packageNames.get(i), placeName, available, false, origin, remoteStation));
+            }
+        }
+
+        return results;
+    }
+
+    static void invalidatePermissionWithGRPC(PermissionIdentity permissionIdentity, RemoteStationGrpc.RemoteStationBlockingStub remoteStation) {
         try {
-            SslContext sslContext = loadTLSCredentials();
-            channel = NettyChannelBuilder.forAddress(ipAddress, port)
-                    .sslContext(sslContext)
-                    .keepAliveWithoutCalls(true)
-                    .build();
-        } catch (Exception e) {
-            stationMessenger.notifyStationListeners(MIGRATE_AGENT, instance, ipAddress, ((Integer) port).toString(), REGISTRY_COMM_FAILED);
-            throw new OperationException(e);
+            remoteStation.invalidatePermission(PermissionInvalidationInput.newBuilder().setAgentName(permissionIdentity.getAgentName())
+                    .setAgentShortId(permissionIdentity.getAgentShortId())
+                    .setPlaceName(permissionIdentity.getPlaceName()).build());
+        } catch (StatusRuntimeException e) {
+            // The cached permission expires anyway, stations that predate the invalidation simply wait for it
+            LOGGER.debug(e);
         }
+    }
 
-        return RemoteRegistryGrpc.newBlockingStub(channel);
+    private static void transferAgentInOneMessage(Instance instance, byte[] agentBytes, String packageName, String placeName, RemoteStationGrpc.RemoteStationBlockingStub remoteStation) throws OperationException, MalformedURLException {
+        AgentTransferInput input = AgentTransferInput.newBuilder().setInstance(MapUtility.toInstanceType(instance))
+                .setAgentBytes(ByteString.copyFrom(agentBytes))
+                .setPackageName(packageName)
+                .setPlaceName(placeName)
+                .setPackageData(ByteString.copyFrom(IOAccess.readFromFile(new URL(instance.getIdentity().getPackageFile()).getFile()))).build();
+        remoteStation.transferAgent(input);
     }
     
 }
@@ -26,14 +26,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.ObjectInput;
-import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
-import java.io.ObjectStreamClass;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.net.URLClassLoader;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
 import java.text.MessageFormat;
@@ -62,6 +59,7 @@ public class IOAccess {
     public static final File APP_CERT_FOLDER = new File(APP_BASE_PATH + File.separator + "certificates");
     public static final File APP_PROCESS_FOLDER = new File(APP_BASE_PATH + File.separator + "processes");
     public static final File APP_PROPERTY_FOLDER = new File(APP_BASE_PATH + File.separator + "properties");
+    private static final PackageChecksums CHECKSUMS = new PackageChecksums(new File(APP_PROPERTY_FOLDER, "package-checksums.properties"));
 
     public static String getServerAndPortText(String server, int port) {
         String portText = MessageFormat.format("{0,number,#}", port);
@@ -85,39 +83,12 @@ public class IOAccess {
         return tmpArray;
     }
 
-    public static Object toObject(byte[] byteArray, URL url) throws OperationException {
-        ObjectInput input = null;
+    public static Object toObject(byte[] byteArray, ClassLoader classLoader) throws OperationException {
+        try ( AgentObjectInputStream input = new AgentObjectInputStream(new ByteArrayInputStream(byteArray), classLoader)) {
 
-        try ( ByteArrayInputStream bis = new ByteArrayInputStream(byteArray)) {
-            input = new ObjectInputStream(bis) {
-
-                @Override
-                protected Class<?> resolveClass(final ObjectStreamClass desc) throws IOException, ClassNotFoundException {
-                    ClassLoader cl = Thread.currentThread().getContextClassLoader();
-                    URLClassLoader urlClassLoader = new URLClassLoader(new URL[]{url}, cl);
-                    // Replace the thread classloader - assumes there is permission to do so
-                    Thread.currentThread().setContextClassLoader(urlClassLoader);
-
-                    if (cl == null) {
-
-                        return super.resolveClass(desc);
-                    }
-
-                    return Class.forName(desc.getName(), false, cl);
-                }
-            };
-
-            return input.readObject();
+            return input.readAgentObject();
         } catch (ClassNotFoundException | IOException e) {
             throw new OperationException(e);
-        } finally {
-            try {
-                if (input != null) {
-                    input.close();
-                }
-            } catch (IOException e) {
-                LogManager.getLogger(IOAccess.class).error(e);
-            }
         }
     }
 
@@ -164,6 +135,31 @@ public class IOAccess {
         return localPackageLocation;
     }
 
+    /**
+     * Checks whether the package folder holds a package with the given name and
+     * MD5 checksum.
+     *
+     * @param packageName the package file name
+     * @param hashCode the expected MD5 checksum
+     * @return true if the package is available
+     */
+    public static boolean hasPackage(String packageName, String hashCode) {
+        if (packageName == null || hashCode == null || !packageName.equals(new File(packageName).getName())) {
+
+            return false;
+        }
+
+        File packageFile = new File(APP_PACKAGE_FOLDER, packageName);
+        try {
+
+            return packageFile.isFile() && getFileMD5(packageFile.getAbsolutePath()).equals(hashCode);
+        } catch (IOException e) {
+            LogManager.getLogger(IOAccess.class).error(e);
+
+            return false;
+        }
+    }
+
     public static String getStringMD5(String text) {
         try ( InputStream is = new ByteArrayInputStream(text.getBytes())) {
 
@@ -176,10 +172,11 @@ public class IOAccess {
     }
 
     public static String getFileMD5(String location) throws IOException {
-        try ( InputStream is = Files.newInputStream(Paths.get(location))) {
+        return CHECKSUMS.getMD5(location);
+    }
 
-            return md5Hex(is);
-        }
+    static PackageChecksums getChecksums() {
+        return CHECKSUMS;
     }
 
     public static void prepareAppFolder() throws IOException {
@@ -221,9 +218,13 @@ public class IOAccess {
 
         URL inURLLocation = IOAccess.getURLFromLocation(packageLocation);
         URL outURLLocation = IOAccess.getURLFromLocation(localPackageLocation);
-        if (!localPackageLocation.equals(packageLocation)) {
-            InputStream inputStream = inURLLocation.openStream();
-            Files.copy(inputStream, Paths.get(outURLLocation.getPath()), StandardCopyOption.REPLACE_EXISTING);
+        Path outPath = Paths.get(outURLLocation.getPath());
+        // A package already in the package folder is not copied onto itself, which would also reset its checksum cache entry
+        boolean samePackage = inURLLocation.getProtocol().equals("file") && Paths.get(inURLLocation.getPath()).equals(outPath);
+        if (!localPackageLocation.equals(packageLocation) && !samePackage) {
+            try ( InputStream inputStream = inURLLocation.openStream()) {
+                Files.copy(inputStream, outPath, StandardCopyOption.REPLACE_EXISTING);
+            }
         }
 
         return outURLLocation;
@@ -0,0 +1,118 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import uk.co.connectina.agentstation.api.client.LogType;
+
+/**
+ * A fixed-capacity, lock-free log of the latest entries of an agent. Writers
+ * claim a sequence number and overwrite the oldest slot, they never block
+ * each other or a reader. Entries are kept as raw fields and are only turned
+ * into log entries when read.
+ *
+ * @author Dr Christos Bohoris
+ */
+final class LogRing {
+
+    private static final class Record {
+
+        private final long sequence;
+        private final long timestamp;
+        private final LogType type;
+        private final String message;
+
+        Record(long sequence, long timestamp, LogType type, String message) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.type = type;
+            this.message = message;
+        }
+
+    }
+
+    private final AtomicReferenceArray<Record> slots;
+    private final AtomicLong next = new AtomicLong();
+
+    LogRing(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The log capacity must be positive.");
+        }
+        slots = new AtomicReferenceArray<>(capacity);
+    }
+
+    /**
+     * Adds a log entry, overwriting the oldest one when full.
+     *
+     * @param type the log entry type
+     * @param message the log message
+     */
+    void add(LogType type, String message) {
+        long sequence = next.getAndIncrement();
+        slots.set(slotOf(sequence), new Record(sequence, System.currentTimeMillis(), type, message));
+    }
+
+    /**
+     * Provides the entries currently held, latest entry first.
+     *
+     * @param about the about text for all entries
+     * @return the log entries
+     */
+    List<LogEntry> getEntries(String about) {
+        long end = next.get();
+        long start = Math.max(0, end - slots.length());
+        List<LogEntry> entries = new ArrayList<>((int) (end - start));
+        ZoneId zone = ZoneId.systemDefault();
+        for (long sequence = end - 1; sequence >= start; sequence--) {
+            Record record = slots.get(slotOf(sequence));
+            // Skip a slot not yet written or already overwritten by a newer entry
+            if (record != null && record.sequence == sequence) {
+                LocalDateTime dateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(record.timestamp), zone);
+                entries.add(new LogEntry(dateTime, record.type, about, record.message));
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Provides the number of entries ever added.
+     *
+     * @return the total entry count
+     */
+    long getCount() {
+        return next.get();
+    }
+
+    int getCapacity() {
+        return slots.length();
+    }
+
+    private int slotOf(long sequence) {
+        return (int) (sequence % slots.length());
+    }
+
+}
@@ -0,0 +1,187 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import io.grpc.Context;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Runs the network exchange of asynchronous migrations on a small pool of
+ * station I/O threads, so that a slow remote station does not hold up the
+ * agent that asked for the migration. A deadline or a cancellation cancels the
+ * remote calls of an exchange until it starts sending the agent. From then on
+ * the remote station may accept the agent at any moment, so the exchange runs
+ * to its end and the outcome it records is the one the future reports.
+ *
+ * @author Dr Christos Bohoris
+ */
+final class MigrationExecutor {
+
+    static final int THREADS = 4;
+    static final String NOT_SENT = "The migration was abandoned before the agent was sent.";
+    private static final Context.Key<AtomicReference<Phase>> PHASE = Context.key("Migration Phase");
+    private static final Logger LOGGER = LogManager.getLogger(MigrationExecutor.class.toString());
+    private final ThreadPoolExecutor pool;
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong timedOut = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+
+    private enum Phase { QUEUED, RUNNING, SENDING, ABANDONED }
+
+    MigrationExecutor() {
+        pool = new ThreadPoolExecutor(THREADS, THREADS, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "Agent Migration");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs a migration exchange on the station I/O threads.
+     * <p>
+     * When the deadline passes or the future is cancelled before the exchange
+     * starts, it is not run at all. While it runs, its remote calls are
+     * cancelled instead, up to the point where it calls {@link #send()}. After
+     * that nothing is cancelled, since the remote station may already have
+     * accepted the agent. Either way the future completes with the outcome the
+     * exchange reached, and the running thread is never interrupted, so that
+     * the outcome is always recorded locally.
+     *
+     * @param <T> the type of the outcome
+     * @param task the migration exchange
+     * @param deadline the time allowed from now, or null for no deadline
+     * @return the future outcome, completed with a TimeoutException if the
+     * deadline passes before the exchange starts
+     */
+    <T> CompletableFuture<T> submit(Callable<T> task, Duration deadline) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        AtomicReference<Phase> phase = new AtomicReference<>(Phase.QUEUED);
+        Context.CancellableContext context = Context.current().withValue(PHASE, phase).withCancellation();
+        try {
+            pool.execute(() -> {
+                // An exchange abandoned while queued is never sent
+                if (!phase.compareAndSet(Phase.QUEUED, Phase.RUNNING)) {
+
+                    return;
+                }
+                try {
+                    future.complete(context.call(task));
+                } catch (Exception e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    context.cancel(null);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+
+            return future;
+        }
+        submitted.incrementAndGet();
+
+        if (deadline != null) {
+            CompletableFuture.delayedExecutor(deadline.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                if (!future.isDone()) {
+                    abandon(future, context, phase, new TimeoutException("The migration deadline passed."), timedOut);
+                }
+            });
+        }
+        future.whenComplete((T result, Throwable error) -> {
+            if (future.isCancelled()) {
+                abandon(future, context, phase, error, cancelled);
+            }
+        });
+
+        return future;
+    }
+
+    /**
+     * Marks the point of an exchange after which the remote station may accept
+     * the agent. The calls that send the agent run in the returned context,
+     * which the deadline or a cancellation no longer cancels. Outside a
+     * submitted exchange this only returns the current context.
+     *
+     * @return the context to send the agent in
+     * @throws OperationException the exchange was already abandoned, so the
+     * agent must not be sent
+     */
+    static Context send() throws OperationException {
+        AtomicReference<Phase> phase = PHASE.get();
+        if (phase != null && !phase.compareAndSet(Phase.RUNNING, Phase.SENDING)) {
+
+            throw new OperationException(NOT_SENT);
+        }
+
+        return Context.current().fork();
+    }
+
+    private static void abandon(CompletableFuture<?> future, Context.CancellableContext context, AtomicReference<Phase> phase, Throwable cause,
+            AtomicLong counter) {
+        if (phase.compareAndSet(Phase.QUEUED, Phase.ABANDONED)) {
+            counter.incrementAndGet();
+            context.cancel(null);
+            future.completeExceptionally(cause);
+        } else if (phase.compareAndSet(Phase.RUNNING, Phase.ABANDONED)) {
+            counter.incrementAndGet();
+            context.cancel(cause);
+        }
+        // Otherwise the agent is being sent and its outcome is left to the exchange
+    }
+
+    /**
+     * Runs a fire-and-forget exchange on the station I/O threads, without
+     * counting it as a migration.
+     *
+     * @param task the exchange
+     */
+    void execute(Runnable task) {
+        try {
+            pool.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug(e);
+        }
+    }
+
+    void shutdown() {
+        pool.shutdownNow();
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        statistics.put("Async Migrations", Long.toString(submitted.get()));
+        statistics.put("Async Migrations Pending", Integer.toString(pool.getQueue().size() + pool.getActiveCount()));
+        statistics.put("Async Migrations Timed Out", Long.toString(timedOut.get()));
+        statistics.put("Async Migrations Cancelled", Long.toString(cancelled.get()));
+    }
+
+}
@@ -0,0 +1,217 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.codec.binary.Hex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A persistent cache of package MD5 checksums. An entry is keyed by the
+ * canonical path of the package and is only trusted while the size, the last
+ * modified time and, where the file system has one, the file key (inode) are
+ * unchanged. A package modified shortly before it was hashed could still have
+ * been changing within the timestamp granularity, so such an entry is hashed
+ * again on its next use. New entries are written in batches, and on
+ * {@link #flush()}, rather than rewriting the store on every miss.
+ *
+ * @author Dr Christos Bohoris
+ */
+class PackageChecksums {
+
+    static final long RACY_MILLIS = 2000;
+    static final int MAX_UNSAVED = 32;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SEPARATOR = "|";
+    private static final Logger LOGGER = LogManager.getLogger(PackageChecksums.class.toString());
+    private final File storeFile;
+    private Properties entries;
+    private int unsaved;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    PackageChecksums(File storeFile) {
+        this.storeFile = storeFile;
+    }
+
+    /**
+     * Provides the MD5 checksum of a file, hashing it only when no trusted
+     * cached checksum exists.
+     *
+     * @param location the file location
+     * @return the MD5 checksum in hex
+     * @throws IOException the file could not be read
+     */
+    String getMD5(String location) throws IOException {
+        Path path = new File(location).getCanonicalFile().toPath();
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        String stamp = getStamp(attributes);
+        String key = path.toString();
+
+        synchronized (this) {
+            String entry = getEntries().getProperty(key);
+            if (entry != null && isTrusted(entry, stamp, attributes)) {
+                hits.incrementAndGet();
+
+                return entry.substring(entry.lastIndexOf(SEPARATOR) + 1);
+            }
+        }
+
+        misses.incrementAndGet();
+        long hashedAt = System.currentTimeMillis();
+        String md5 = hash(path);
+
+        // Only store the result if the file did not change while it was being hashed
+        BasicFileAttributes after = Files.readAttributes(path, BasicFileAttributes.class);
+        if (stamp.equals(getStamp(after))) {
+            synchronized (this) {
+                getEntries().setProperty(key, stamp + SEPARATOR + hashedAt + SEPARATOR + md5);
+                if (++unsaved >= MAX_UNSAVED) {
+                    flush();
+                }
+            }
+        }
+
+        return md5;
+    }
+
+    /**
+     * Writes any entries not yet in the store.
+     */
+    synchronized void flush() {
+        if (unsaved > 0) {
+            save();
+            unsaved = 0;
+        }
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        statistics.put("Checksum Cache Hits", Long.toString(hits.get()));
+        statistics.put("Checksum Cache Misses", Long.toString(misses.get()));
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    static String hash(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+
+        // Streamed rather than mapped, a mapping would keep the package locked on Windows until garbage collected
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+            while (channel.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        }
+
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    private static String getStamp(BasicFileAttributes attributes) {
+        Object fileKey = attributes.fileKey();
+
+        return attributes.size() + SEPARATOR + attributes.lastModifiedTime().toMillis() + SEPARATOR
+                + (fileKey != null ? fileKey.toString() : "");
+    }
+
+    private static boolean isTrusted(String entry, String stamp, BasicFileAttributes attributes) {
+        int index = entry.lastIndexOf(SEPARATOR);
+        if (!entry.startsWith(stamp + SEPARATOR) || index <= stamp.length() || index == entry.length() - 1) {
+
+            return false;
+        }
+
+        try {
+            long hashedAt = Long.parseLong(entry.substring(stamp.length() + 1, index));
+
+            return hashedAt - attributes.lastModifiedTime().toMillis() >= RACY_MILLIS;
+        } catch (NumberFormatException e) {
+            // A corrupt entry is hashed again and replaced
+            LOGGER.debug(e);
+
+            return false;
+        }
+    }
+
+    private Properties getEntries() {
+        if (entries == null) {
+            entries = new Properties();
+            if (storeFile.exists()) {
+                try (InputStream input = Files.newInputStream(storeFile.toPath())) {
+                    entries.load(input);
+                } catch (IOException | IllegalArgumentException e) {
+                    LOGGER.error(e);
+                    entries.clear();
+                }
+            }
+            // Forget packages that are gone
+            entries.keySet().removeIf(key -> !new File(key.toString()).exists());
+        }
+
+        return entries;
+    }
+
+    private void save() {
+        File parent = storeFile.getAbsoluteFile().getParentFile();
+        if (parent == null || !parent.exists()) {
+
+            return;
+        }
+
+        try {
+            Path temp = Files.createTempFile(parent.toPath(), storeFile.getName(), ".tmp");
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                entries.store(output, "Package checksums");
+            }
+            Files.move(temp, storeFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.error(e);
+        }
+    }
+
+}
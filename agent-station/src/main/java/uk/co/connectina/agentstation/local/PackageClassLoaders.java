@@ -0,0 +1,112 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Keeps one class loader per agent package, keyed by the package hash code.
+ * Every agent created from a package acquires the shared loader and releases
+ * it once removed and no longer running; the loader is closed once its last
+ * agent is released.
+ *
+ * @author Dr Christos Bohoris
+ */
+class PackageClassLoaders {
+
+    private static final class LoaderEntry {
+
+        private final AgentClassLoader loader;
+        private int references;
+
+        LoaderEntry(AgentClassLoader loader) {
+            this.loader = loader;
+        }
+
+    }
+
+    private static final Logger LOGGER = LogManager.getLogger(PackageClassLoaders.class.toString());
+    private final Map<String, LoaderEntry> loaders = new HashMap<>();
+    private final ClassLoader parent;
+
+    PackageClassLoaders(ClassLoader parent) {
+        this.parent = parent;
+    }
+
+    /**
+     * Provides the class loader of a package, creating it on first use, and
+     * counts one more agent using it.
+     *
+     * @param packageHash the package hash code
+     * @param url the URL of the local package
+     * @return the shared class loader
+     */
+    synchronized AgentClassLoader acquire(String packageHash, URL url) {
+        LoaderEntry entry = loaders.computeIfAbsent(packageHash, hash -> new LoaderEntry(new AgentClassLoader(hash, url, parent)));
+        entry.references++;
+
+        return entry.loader;
+    }
+
+    /**
+     * Counts one less agent using the class loader of a package and closes the
+     * loader when no agent uses it anymore.
+     *
+     * @param packageHash the package hash code
+     */
+    synchronized void release(String packageHash) {
+        LoaderEntry entry = loaders.get(packageHash);
+        if (entry == null || --entry.references > 0) {
+
+            return;
+        }
+
+        loaders.remove(packageHash);
+        try {
+            entry.loader.close();
+        } catch (IOException e) {
+            LOGGER.error(e);
+        }
+    }
+
+    synchronized int getReferenceCount(String packageHash) {
+        LoaderEntry entry = loaders.get(packageHash);
+
+        return entry != null ? entry.references : 0;
+    }
+
+    synchronized void collectStatistics(Map<String, String> statistics) {
+        statistics.put("Package Class Loaders", Integer.toString(loaders.size()));
+        Map<String, String> packages = new TreeMap<>();
+        for (LoaderEntry entry : loaders.values()) {
+            String hash = entry.loader.getPackageHash();
+            packages.put("Package " + hash.substring(0, Math.min(8, hash.length())), entry.loader.getLoadedClassCount()
+                    + " classes, " + entry.references + " agents");
+        }
+        statistics.putAll(packages);
+    }
+
+}
@@ -0,0 +1,196 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Remembers the outcome of recent permission checks made by remote stations,
+ * so that an agent that was just turned away is not sent again and a station
+ * that predates the combined migration call is not asked for the same
+ * permission on every round trip. Allowed and refused outcomes expire after
+ * their own time to live, the least recently used entry makes way once the
+ * cache is full, and a remote station may drop entries when its permissions
+ * change.
+ *
+ * @author Dr Christos Bohoris
+ */
+class PermissionCache {
+
+    static final long POSITIVE_TTL_MILLIS = 60_000;
+    static final long NEGATIVE_TTL_MILLIS = 10_000;
+    static final int MAX_ENTRIES = 1024;
+
+    private static final class CacheKey {
+
+        private final String peer;
+        private final String agentName;
+        private final String agentShortId;
+        private final String placeName;
+
+        CacheKey(String peer, String agentName, String agentShortId, String placeName) {
+            this.peer = peer;
+            this.agentName = agentName;
+            this.agentShortId = agentShortId;
+            this.placeName = placeName;
+        }
+
+        boolean matches(String name, String shortId, String place) {
+            return agentName.equals(name) && agentShortId.equals(shortId) && placeName.equals(place);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(peer, agentName, agentShortId, placeName);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+
+            return peer.equals(other.peer) && matches(other.agentName, other.agentShortId, other.placeName);
+        }
+
+    }
+
+    private static final class CacheEntry {
+
+        private final boolean allowed;
+        private final long expires;
+
+        CacheEntry(boolean allowed, long expires) {
+            this.allowed = allowed;
+            this.expires = expires;
+        }
+
+    }
+
+    private final long positiveTtlMillis;
+    private final long negativeTtlMillis;
+    private final int maxEntries;
+    private final Map<CacheKey, CacheEntry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    PermissionCache() {
+        this(POSITIVE_TTL_MILLIS, NEGATIVE_TTL_MILLIS, MAX_ENTRIES);
+    }
+
+    PermissionCache(long positiveTtlMillis, long negativeTtlMillis, int maxEntries) {
+        this.positiveTtlMillis = positiveTtlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        this.maxEntries = maxEntries;
+        entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, CacheEntry> eldest) {
+                boolean full = size() > PermissionCache.this.maxEntries;
+                if (full) {
+                    evictions++;
+                }
+
+                return full;
+            }
+        };
+    }
+
+    /**
+     * Provides the cached outcome of a permission check.
+     *
+     * @param peer the remote station, as server and port
+     * @param agentName the agent name
+     * @param agentShortId the agent short id
+     * @param placeName the remote place name
+     * @return whether the agent is allowed, or null if nothing current is cached
+     */
+    synchronized Boolean get(String peer, String agentName, String agentShortId, String placeName) {
+        CacheKey key = new CacheKey(peer, agentName, agentShortId, placeName);
+        CacheEntry entry = entries.get(key);
+        if (entry != null && entry.expires <= currentTimeMillis()) {
+            entries.remove(key);
+            entry = null;
+        }
+        if (entry == null) {
+            misses++;
+
+            return null;
+        }
+        hits++;
+
+        return entry.allowed;
+    }
+
+    /**
+     * Caches the outcome of a permission check, replacing any earlier one.
+     *
+     * @param peer the remote station, as server and port
+     * @param agentName the agent name
+     * @param agentShortId the agent short id
+     * @param placeName the remote place name
+     * @param allowed whether the agent is allowed
+     */
+    synchronized void put(String peer, String agentName, String agentShortId, String placeName, boolean allowed) {
+        long ttl = allowed ? positiveTtlMillis : negativeTtlMillis;
+        entries.put(new CacheKey(peer, agentName, agentShortId, placeName), new CacheEntry(allowed, currentTimeMillis() + ttl));
+    }
+
+    /**
+     * Drops the cached outcome of a permission at every remote station.
+     *
+     * @param agentName the agent name
+     * @param agentShortId the agent short id
+     * @param placeName the place name
+     */
+    synchronized void invalidate(String agentName, String agentShortId, String placeName) {
+        Iterator<CacheKey> keys = entries.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().matches(agentName, agentShortId, placeName)) {
+                keys.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void collectStatistics(Map<String, String> statistics) {
+        statistics.put("Permission Cache", entries.size() + " / " + maxEntries);
+        statistics.put("Permission Cache Hits", Long.toString(hits));
+        statistics.put("Permission Cache Misses", Long.toString(misses));
+        statistics.put("Permission Cache Evictions", Long.toString(evictions));
+        statistics.put("Permission Cache Invalidations", Long.toString(invalidations));
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+}
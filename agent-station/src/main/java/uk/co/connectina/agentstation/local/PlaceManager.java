@@ -21,6 +21,7 @@ package uk.co.connectina.agentstation.local;
 import java.io.Serializable;
 import java.util.List;
 import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.StationEvent;
 import uk.co.connectina.agentstation.api.client.OperationException;
 
 /**
@@ -30,17 +31,17 @@ import uk.co.connectina.agentstation.api.client.OperationException;
  */
 class PlaceManager implements Serializable {
 
-    private StationMessenger stationMessenger;
+    private StationEventBus eventBus;
     private Registry registry;
 
-    PlaceManager(Registry registry, StationMessenger stationMessenger) {
+    PlaceManager(Registry registry, StationEventBus eventBus) {
         this.registry = registry;
-        this.stationMessenger = stationMessenger;
+        this.eventBus = eventBus;
     }
 
     void createPlace(String name) throws OperationException {
         registry.registerPlace(name);
-        stationMessenger.notifyStationListeners("createPlace", name);
+        eventBus.publish(StationEvent.place(StationEvent.Type.CREATE_PLACE, name));
     }
 
     boolean placeExists(String name) throws OperationException {
@@ -56,12 +57,12 @@ class PlaceManager implements Serializable {
     }
 
     void loadPlace(String name) {
-        stationMessenger.notifyStationListeners("createPlace", name);
+        eventBus.publish(StationEvent.place(StationEvent.Type.CREATE_PLACE, name));
     }
 
     void removePlace(String name) throws OperationException {
         registry.deregisterPlace(name);
-        stationMessenger.notifyStationListeners("removePlace", name);
+        eventBus.publish(StationEvent.place(StationEvent.Type.REMOVE_PLACE, name));
     }
 
 }
@@ -18,32 +18,11 @@
  */
 package uk.co.connectina.agentstation.local;
 
-import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.List;
-import uk.co.connectina.agentstation.api.StationListener;
-
 /**
- * Allows agents to message their Agent Station.
+ * The socket types supported for the remote objects of a Java-RMI station.
  * 
  * @author Dr Christos Bohoris
  */
-class StationMessenger implements Serializable {
-
-    private List<StationListener> listeners;
-
-    StationMessenger() {
-        listeners = new ArrayList<>();
-    }
-
-    void addListener(StationListener listener) {
-        listeners.add(listener);
-    }
-
-    void notifyStationListeners(String operationName, Object... info) {
-        for (StationListener listener : listeners) {
-            listener.notify(operationName, info);
-        }
-    }
-
+public enum RMISocketSupport {
+    DEFAULT, TUNED, COMPRESSED
 }
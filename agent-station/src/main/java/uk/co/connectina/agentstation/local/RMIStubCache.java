@@ -0,0 +1,199 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.MalformedURLException;
+import java.rmi.ConnectException;
+import java.rmi.Naming;
+import java.rmi.NoSuchObjectException;
+import java.rmi.NotBoundException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.ServerError;
+import java.rmi.ServerException;
+import java.rmi.UnmarshalException;
+import java.text.MessageFormat;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.rmi.RemoteRegistry;
+import uk.co.connectina.agentstation.api.rmi.RemoteStation;
+
+/**
+ * Keeps the stubs of remote stations, so that a migration does not start with
+ * a registry lookup. A stub whose remote object has gone, as when the remote
+ * station restarted, is looked up again and the call is made once more; this
+ * is only done when the call cannot have reached the remote object. Any other
+ * communication failure drops the stub, so that the next call starts afresh.
+ * The time taken by each remote method is recorded.
+ *
+ * @author Dr Christos Bohoris
+ */
+class RMIStubCache {
+
+    private static final class CallTiming {
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+    }
+
+    private final class CachedStub implements InvocationHandler {
+
+        private final String url;
+        private volatile Remote stub;
+
+        CachedStub(String url, Remote stub) {
+            this.url = url;
+            this.stub = stub;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class) {
+
+                return method.invoke(this, args);
+            }
+
+            Remote current = stub;
+            if (current == null) {
+                current = relookup();
+            }
+            try {
+                return timedCall(current, method, args);
+            } catch (NoSuchObjectException | ConnectException e) {
+                // The call never reached the remote object, so it is safe to make it again
+                reconnects.incrementAndGet();
+
+                return timedCall(relookup(), method, args);
+            } catch (ServerException | ServerError | UnmarshalException e) {
+                // The remote station answered, the stub is still good
+                throw e;
+            } catch (RemoteException e) {
+                stub = null;
+                throw e;
+            }
+        }
+
+        private synchronized Remote relookup() throws RemoteException {
+            stub = null;
+            try {
+                stub = lookup(url);
+            } catch (NotBoundException | MalformedURLException e) {
+                throw new RemoteException(e.getMessage(), e);
+            }
+
+            return stub;
+        }
+
+        private Object timedCall(Remote target, Method method, Object[] args) throws Throwable {
+            long start = System.nanoTime();
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                CallTiming timing = timings.computeIfAbsent(method.getName(), name -> new CallTiming());
+                timing.calls.increment();
+                timing.nanos.add(System.nanoTime() - start);
+            }
+        }
+
+    }
+
+    private final Map<String, Remote> proxies = new ConcurrentHashMap<>();
+    private final Map<String, CallTiming> timings = new ConcurrentHashMap<>();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong reuses = new AtomicLong();
+    private final AtomicLong reconnects = new AtomicLong();
+
+    /**
+     * Provides the cached stub of a remote station, looking it up if needed.
+     *
+     * @param host the remote station host
+     * @param port the remote station port
+     * @return the remote station
+     * @throws OperationException the remote station could not be looked up
+     */
+    RemoteStation getStation(String host, int port) throws OperationException {
+        return get(RemoteStation.class, MessageFormat.format("rmi://{0}:{1}/RemoteStation", host, Integer.toString(port)));
+    }
+
+    /**
+     * Provides the cached stub of a remote registry, looking it up if needed.
+     *
+     * @param host the remote station host
+     * @param port the remote station port
+     * @return the remote registry
+     * @throws OperationException the remote registry could not be looked up
+     */
+    RemoteRegistry getRegistry(String host, int port) throws OperationException {
+        return get(RemoteRegistry.class, MessageFormat.format("rmi://{0}:{1}/RemoteRegistry", host, Integer.toString(port)));
+    }
+
+    void clear() {
+        proxies.clear();
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        statistics.put("RMI Stubs", Integer.toString(proxies.size()));
+        statistics.put("RMI Lookups", Long.toString(lookups.get()));
+        statistics.put("RMI Stub Reuses", Long.toString(reuses.get()));
+        statistics.put("RMI Reconnects", Long.toString(reconnects.get()));
+        for (Map.Entry<String, CallTiming> entry : new TreeMap<>(timings).entrySet()) {
+            long calls = entry.getValue().calls.sum();
+            statistics.put("RMI Call " + entry.getKey(), calls + " calls, "
+                    + String.format("%.1f", calls > 0 ? entry.getValue().nanos.sum() / 1_000_000.0 / calls : 0.0) + " ms avg");
+        }
+    }
+
+    Remote lookup(String url) throws NotBoundException, MalformedURLException, RemoteException {
+        lookups.incrementAndGet();
+
+        return Naming.lookup(url);
+    }
+
+    private <T extends Remote> T get(Class<T> type, String url) throws OperationException {
+        Remote proxy = proxies.get(url);
+        if (proxy != null) {
+            reuses.incrementAndGet();
+
+            return type.cast(proxy);
+        }
+
+        Remote stub;
+        try {
+            stub = lookup(url);
+        } catch (NotBoundException | MalformedURLException | RemoteException e) {
+            throw new OperationException(e);
+        }
+        proxy = (Remote) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, new CachedStub(url, stub));
+        Remote previous = proxies.putIfAbsent(url, proxy);
+
+        return type.cast(previous != null ? previous : proxy);
+    }
+
+}
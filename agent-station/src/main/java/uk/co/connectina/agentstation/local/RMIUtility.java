@@ -18,13 +18,18 @@
  */
 package uk.co.connectina.agentstation.local;
 
-import java.net.MalformedURLException;
-import java.rmi.Naming;
-import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
+import java.rmi.UnmarshalException;
 import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import uk.co.connectina.agentstation.api.Instance;
 import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.PermissionIdentity;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 import uk.co.connectina.agentstation.api.rmi.RemoteRegistry;
 import uk.co.connectina.agentstation.api.rmi.RemoteStation;
@@ -36,8 +41,7 @@ import uk.co.connectina.agentstation.api.rmi.RemoteStation;
  */
 class RMIUtility {
 
-    private static final String MIGRATE_AGENT = "migrateAgent";
-    private static final String REGISTRY_COMM_FAILED = "registryCommFailed";
+    private static final Logger LOGGER = LogManager.getLogger(RMIUtility.class.toString());
     private static final String REMOTE_PERMISSION_LOOKUP_FAILED = "Remote permission lookup failed";
     private static final String MESSAGE_ERROR_PATTERN = "{0}: {1}";
     
@@ -45,31 +49,111 @@ class RMIUtility {
     
     }
     
-    static RemoteStation getRMIAgentStation(String ipAddress, int port) throws OperationException {
+    static RemoteStation getRMIAgentStation(RMIStubCache stubCache, String ipAddress, int port) throws OperationException {
+        return stubCache.getStation(ipAddress, port);
+    }
+
+    static RemoteRegistry getRMIAgentRegistry(RMIStubCache stubCache, String ipAddress, int port) throws OperationException {
+        return stubCache.getRegistry(ipAddress, port);
+    }
+
+    static boolean hasPackageWithRMI(String packageName, String hashCode, RemoteStation remoteStation) throws RemoteException {
+        try {
+            return remoteStation.hasPackage(packageName, hashCode);
+        } catch (UnmarshalException e) {
+            if (!isUnrecognizedMethod(e)) {
+                throw e;
+            }
+
+            // Stations that predate the package check always receive the package
+            return false;
+        }
+    }
+
+    static boolean supportsCompressionWithRMI(RemoteStation remoteStation) throws RemoteException {
         try {
-            return (RemoteStation) Naming.lookup(MessageFormat.format("rmi://{0}:{1}/RemoteStation", ipAddress, Integer.toString(port)));
-        } catch (NotBoundException | MalformedURLException | RemoteException e) {
-            throw new OperationException(e);
+            return remoteStation.supportsCompression();
+        } catch (UnmarshalException e) {
+            if (!isUnrecognizedMethod(e)) {
+                throw e;
+            }
+
+            // Stations that predate compression only read serialized agents
+            return false;
         }
     }
 
-    static RemoteRegistry getRMIAgentRegistry(String ipAddress, int port) throws OperationException {
+    static boolean supportsStateCodecWithRMI(RemoteStation remoteStation) throws RemoteException {
         try {
-            return (RemoteRegistry) Naming.lookup(MessageFormat.format("rmi://{0}:{1}/RemoteRegistry", ipAddress, Integer.toString(port)));
-        } catch (NotBoundException | MalformedURLException | RemoteException e) {
-            throw new OperationException(e);
+            return remoteStation.supportsStateCodec();
+        } catch (UnmarshalException e) {
+            if (!isUnrecognizedMethod(e)) {
+                throw e;
+            }
+
+            // Stations that predate the compact state read the whole agent serialized
+            return false;
         }
     }
 
-    static RemoteRegistry getRMIRegistry(String ipAddress, int port, Instance instance, StationMessenger stationMessenger) throws OperationException {
-        RemoteRegistry remoteRegistry;
+    static MigrationResult migrateWithRMI(Instance instance, byte[] agentBytes, String packageName, String placeName, byte[] packageData, boolean permissionKnown, StationInfo origin, RemoteStation remoteStation, RMIStubCache stubCache, String ipAddress, int port) throws OperationException, RemoteException {
         try {
-            remoteRegistry = getRMIAgentRegistry(ipAddress, port);
-        } catch (OperationException e) {
-            stationMessenger.notifyStationListeners(MIGRATE_AGENT, instance, ipAddress, ((Integer) port).toString(), REGISTRY_COMM_FAILED);
-            throw new OperationException(e);
+            return remoteStation.migrateAgent(instance, agentBytes, packageName, placeName, packageData, origin.getServer(), origin.getPort());
+        } catch (UnmarshalException e) {
+            if (!isUnrecognizedMethod(e)) {
+                throw e;
+            }
+        }
+
+        // The remote station predates the combined call, the permission is looked up separately unless recently granted
+        if (!permissionKnown) {
+            Permission permission = getPermissionWithRMI(instance, getRMIAgentRegistry(stubCache, ipAddress, port), placeName);
+            if (permission == null || !permission.isAllowed()) {
+
+                return new MigrationResult(MigrationResult.Status.NOT_ALLOWED, null);
+            }
         }
-        return remoteRegistry;
+        remoteStation.transferAgent(instance, agentBytes, packageName, placeName, packageData);
+
+        return new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+    }
+
+    static List<MigrationResult> migrateAllWithRMI(List<Instance> instances, List<byte[]> agentBytes, List<String> packageNames, String placeName, Map<String, byte[]> packageData, StationInfo origin, RemoteStation remoteStation, RMIStubCache stubCache, String ipAddress, int port) throws OperationException, RemoteException {
+        try {
+            return remoteStation.migrateAgents(instances, agentBytes, packageNames, placeName, packageData, origin.getServer(), origin.getPort());
+        } catch (UnmarshalException e) {
+            if (!isUnrecognizedMethod(e)) {
+                throw e;
+            }
+        }
+
+        // The remote station predates the batch call, the agents are migrated one at a time
+        List<MigrationResult> results = new ArrayList<>(instances.size());
+        for (int i = 0; i < instances.size(); i++) {
+            results.add(migrateWithRMI(instances.get(i), agentBytes.get(i), packageNames.get(i), placeName, packageData.get(packageNames.get(i)), false, origin, remoteStation, stubCache, ipAddress, port));
+        }
+
+        return results;
+    }
+
+    static void invalidatePermissionWithRMI(PermissionIdentity permissionIdentity, RMIStubCache stubCache, String ipAddress, int port) {
+        try {
+            getRMIAgentStation(stubCache, ipAddress, port).invalidatePermission(permissionIdentity.getAgentName(), permissionIdentity.getAgentShortId(), permissionIdentity.getPlaceName());
+        } catch (OperationException | RemoteException e) {
+            // The cached permission expires anyway, stations that predate the invalidation simply wait for it
+            LOGGER.debug(e);
+        }
+    }
+
+    private static boolean isUnrecognizedMethod(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause.getMessage() != null && cause.getMessage().contains("unrecognized method hash")) {
+
+                return true;
+            }
+        }
+
+        return false;
     }
 
     static Permission getPermissionWithRMI(Instance instance, RemoteRegistry remoteRMIRegistry, String placeName) throws OperationException {
@@ -0,0 +1,67 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Remembers the remote stations that recently migrated agents to this station.
+ * Those stations may hold cached outcomes of our permissions, so they are told
+ * when a permission changes here. A station is forgotten once any permission
+ * it could have cached has expired.
+ *
+ * @author Dr Christos Bohoris
+ */
+class RecentPeers {
+
+    static final int MAX_PEERS = 256;
+    private final Map<InetSocketAddress, Long> peers = new LinkedHashMap<>(16, 0.75f, true);
+    private final long windowMillis;
+
+    RecentPeers(long windowMillis) {
+        this.windowMillis = windowMillis;
+    }
+
+    synchronized void record(String server, int port) {
+        if (server == null || server.isBlank() || port < 1) {
+
+            return;
+        }
+
+        peers.put(InetSocketAddress.createUnresolved(server, port), System.currentTimeMillis());
+        if (peers.size() > MAX_PEERS) {
+            Iterator<InetSocketAddress> eldest = peers.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    synchronized List<InetSocketAddress> getPeers() {
+        long oldest = System.currentTimeMillis() - windowMillis;
+        peers.values().removeIf(seen -> seen < oldest);
+
+        return new ArrayList<>(peers.keySet());
+    }
+
+}
@@ -37,11 +37,13 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.co.connectina.agentstation.api.Registry;
 import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.StationEvent;
 import uk.co.connectina.agentstation.api.StationListener;
 import uk.co.connectina.agentstation.api.rmi.RemoteRegistry;
 import uk.co.connectina.agentstation.api.rmi.RemoteStation;
 import uk.co.connectina.agentstation.rmi.RemoteRegistryServer;
 import uk.co.connectina.agentstation.rmi.RemoteStationServer;
+import uk.co.connectina.agentstation.rmi.TunedSocketFactory;
 
 /**
  * Responsible for the start and shutdown of gRPC or RMI servers.
@@ -82,9 +84,9 @@ public final class ServerRunnable implements Runnable {
     @Override
     public void run() {
         if (stationInfo.getRemote() == RemoteSupport.RMI) {
-            listener.notify("serverStart", startRMIServers());
+            listener.notify(StationEvent.serverStart(startRMIServers()));
         } else {
-            listener.notify("serverStart", startGRPCServers());
+            listener.notify(StationEvent.serverStart(startGRPCServers()));
         }
     }
 
@@ -133,12 +135,17 @@ public final class ServerRunnable implements Runnable {
 
             LOGGER.info("Initialised RMI");
             String stationIdentifier = MessageFormat.format("{0}://{1}:{2}/RemoteStation", stationInfo.getRemote().name().toLowerCase(), stationInfo.getServer(), portText);
-            RemoteStation rmiAgentStation = new RemoteStationServer(agentStation, agentRegistry);
+            // Tuned sockets are opt-in, as the stub of each object carries its client socket factory
+            TunedSocketFactory socketFactory = stationInfo.getRmiSockets() == RMISocketSupport.DEFAULT ? null
+                    : new TunedSocketFactory(stationInfo.getRmiSockets() == RMISocketSupport.COMPRESSED);
+            RemoteStation rmiAgentStation = socketFactory != null ? new RemoteStationServer(agentStation, agentRegistry, socketFactory, socketFactory)
+                    : new RemoteStationServer(agentStation, agentRegistry);
             Naming.rebind(stationIdentifier, rmiAgentStation);
             LOGGER.info("{} Agent Station running at {}", stationInfo.getName(), IOAccess.getServerAndPortText(stationInfo.getServer(), stationInfo.getPort()));
 
             String registryIdentifier = MessageFormat.format("{0}://{1}:{2}/RemoteRegistry", stationInfo.getRemote().name().toLowerCase(), stationInfo.getServer(), portText);
-            RemoteRegistry rmiAgentRegistry = new RemoteRegistryServer(agentRegistry);
+            RemoteRegistry rmiAgentRegistry = socketFactory != null ? new RemoteRegistryServer(agentRegistry, socketFactory, socketFactory)
+                    : new RemoteRegistryServer(agentRegistry);
             Naming.rebind(registryIdentifier, rmiAgentRegistry);
         } catch (MalformedURLException | RemoteException e) {
             LOGGER.error(e);
@@ -0,0 +1,317 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Adler32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Compresses the serialized state of migrating agents. Java serialization
+ * repeats the same class descriptors in every agent of a class, so the first
+ * state seen for each agent class becomes a preset dictionary for the ones
+ * that follow. A dictionary travels with the state until the remote station
+ * has accepted an agent that used it, after which the state refers to it by
+ * its checksum.
+ * <p>
+ * Compressed state starts with its own magic number rather than the Java
+ * serialization one, so a station decompresses whatever it receives and only
+ * sends compressed state to stations that said they can read it.
+ *
+ * @author Dr Christos Bohoris
+ */
+class StateCompression {
+
+    static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+    static final int MAX_STATE_SIZE = 64 * 1024 * 1024;
+    static final int MAX_DICTIONARIES = 256;
+    static final int MAX_PEERS = 256;
+    /**
+     * The message a station answers with when it cannot decompress received
+     * state, the only failure after which the state is sent again uncompressed.
+     */
+    static final String UNREADABLE_STATE = "The compressed agent state cannot be decompressed.";
+    private static final byte[] MAGIC = { 'A', 'S', 'Z', 1 };
+    private static final int HEADER_SIZE = MAGIC.length + 16;
+
+    private static final class PeerState {
+
+        private final boolean supported;
+        private final Set<Integer> dictionaries = new HashSet<>();
+
+        PeerState(boolean supported) {
+            this.supported = supported;
+        }
+
+    }
+
+    private final Map<String, byte[]> trained = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+            return size() > MAX_DICTIONARIES;
+        }
+    };
+    private final Map<Integer, byte[]> received = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, byte[]> eldest) {
+            return size() > MAX_DICTIONARIES;
+        }
+    };
+    private final Map<String, PeerState> peers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PeerState> eldest) {
+            return size() > MAX_PEERS;
+        }
+    };
+    private final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+    private long compressed;
+    private long originalBytes;
+    private long compressedBytes;
+    private long compressNanos;
+    private long decompressed;
+    private long decompressNanos;
+
+    /**
+     * Tells whether a remote station reads compressed state.
+     *
+     * @param peer the server and port of the remote station
+     * @return the answer of the remote station or null if it has not been asked
+     */
+    synchronized Boolean isSupported(String peer) {
+        PeerState state = peers.get(peer);
+
+        return state != null ? state.supported : null;
+    }
+
+    synchronized void setSupported(String peer, boolean supported) {
+        peers.put(peer, new PeerState(supported));
+    }
+
+    /**
+     * Forgets what is known about a remote station, so that it is asked again
+     * and receives the dictionaries again.
+     *
+     * @param peer the server and port of the remote station
+     */
+    synchronized void forget(String peer) {
+        peers.remove(peer);
+    }
+
+    /**
+     * Records that a remote station accepted compressed state and so holds
+     * its dictionary.
+     *
+     * @param peer the server and port of the remote station
+     * @param data the compressed state
+     */
+    synchronized void confirm(String peer, byte[] data) {
+        PeerState state = peers.get(peer);
+        if (state != null && isCompressed(data)) {
+            state.dictionaries.add(ByteBuffer.wrap(data).getInt(MAGIC.length + 4));
+        }
+    }
+
+    /**
+     * Compresses the serialized state of an agent for a remote station.
+     *
+     * @param className the class name of the agent
+     * @param state the serialized agent
+     * @param peer the server and port of the remote station
+     * @return the compressed state
+     */
+    byte[] compress(String className, byte[] state, String peer) {
+        long start = cpuTime();
+        byte[] dictionary;
+        boolean included;
+        synchronized (this) {
+            dictionary = trained.computeIfAbsent(className, name -> Arrays.copyOfRange(state, Math.max(0, state.length - MAX_DICTIONARY_SIZE), state.length));
+            PeerState peerState = peers.get(peer);
+            included = peerState == null || !peerState.dictionaries.contains(checksum(dictionary));
+        }
+
+        byte[] shipped = included ? deflate(dictionary, null) : new byte[0];
+        byte[] body = deflate(state, dictionary);
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + shipped.length + body.length);
+        buffer.put(MAGIC).putInt(state.length).putInt(checksum(dictionary)).putInt(included ? dictionary.length : 0)
+                .putInt(shipped.length).put(shipped).put(body);
+        byte[] data = buffer.array();
+        synchronized (this) {
+            compressed++;
+            originalBytes += state.length;
+            compressedBytes += data.length;
+            compressNanos += cpuTime() - start;
+        }
+
+        return data;
+    }
+
+    /**
+     * Restores the serialized state of an agent, leaving state that was not
+     * compressed as it is.
+     *
+     * @param data the state as received
+     * @return the serialized agent
+     * @throws OperationException the state cannot be decompressed, with {@link #UNREADABLE_STATE} as its message
+     */
+    byte[] decompress(byte[] data) throws OperationException {
+        if (!isCompressed(data)) {
+
+            return data;
+        }
+
+        long start = cpuTime();
+        ByteBuffer buffer = ByteBuffer.wrap(data, MAGIC.length, data.length - MAGIC.length);
+        int originalLength = buffer.getInt();
+        int dictionaryId = buffer.getInt();
+        int dictionaryLength = buffer.getInt();
+        int shippedLength = buffer.getInt();
+        // The lengths come from the remote station, so check them before allocating
+        if (originalLength < 0 || originalLength > MAX_STATE_SIZE || dictionaryLength < 0
+                || dictionaryLength > MAX_DICTIONARY_SIZE || shippedLength < 0 || shippedLength > buffer.remaining()) {
+            throw new OperationException(UNREADABLE_STATE, new DataFormatException("The compressed agent state header is corrupt."));
+        }
+        byte[] dictionary;
+        try {
+            if (dictionaryLength > 0) {
+                dictionary = inflate(data, buffer.position(), shippedLength, dictionaryLength, null);
+                if (checksum(dictionary) != dictionaryId) {
+                    throw new OperationException(UNREADABLE_STATE, new DataFormatException("The compression dictionary is corrupt."));
+                }
+                synchronized (this) {
+                    received.put(dictionaryId, dictionary);
+                }
+            } else {
+                synchronized (this) {
+                    dictionary = received.get(dictionaryId);
+                }
+                if (dictionary == null) {
+                    throw new OperationException(UNREADABLE_STATE, new DataFormatException("The compression dictionary is unknown."));
+                }
+            }
+            int bodyOffset = buffer.position() + shippedLength;
+            byte[] state = inflate(data, bodyOffset, data.length - bodyOffset, originalLength, dictionary);
+            synchronized (this) {
+                decompressed++;
+                decompressNanos += cpuTime() - start;
+            }
+
+            return state;
+        } catch (DataFormatException | IndexOutOfBoundsException e) {
+            throw new OperationException(UNREADABLE_STATE, e);
+        }
+    }
+
+    /**
+     * Tells whether a remote station refused state because it could not
+     * decompress it, for instance after a restart lost its dictionaries.
+     *
+     * @param result the outcome of the migration
+     * @return true if the state should be sent again uncompressed
+     */
+    static boolean isUnreadable(MigrationResult result) {
+        return result.getStatus() == MigrationResult.Status.ERROR && UNREADABLE_STATE.equals(result.getMessage());
+    }
+
+    static boolean isCompressed(byte[] data) {
+        return data.length >= HEADER_SIZE && Arrays.equals(data, 0, MAGIC.length, MAGIC, 0, MAGIC.length);
+    }
+
+    synchronized void collectStatistics(Map<String, String> statistics) {
+        statistics.put("State Compressions", Long.toString(compressed));
+        statistics.put("State Compression Ratio", originalBytes > 0
+                ? String.format("%.2f", (double) compressedBytes / originalBytes) : "-");
+        statistics.put("State Compression CPU ms", Long.toString(compressNanos / 1_000_000));
+        statistics.put("State Decompressions", Long.toString(decompressed));
+        statistics.put("State Decompression CPU ms", Long.toString(decompressNanos / 1_000_000));
+        statistics.put("State Dictionaries", trained.size() + " / " + received.size());
+    }
+
+    private static byte[] deflate(byte[] input, byte[] dictionary) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream output = new ByteArrayOutputStream(Math.max(64, input.length / 2));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                output.write(chunk, 0, deflater.deflate(chunk));
+            }
+
+            return output.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int offset, int length, int originalLength, byte[] dictionary) throws DataFormatException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data, offset, length);
+            byte[] output = new byte[originalLength];
+            int inflated = 0;
+            while (inflated < originalLength && !inflater.finished()) {
+                int count = inflater.inflate(output, inflated, originalLength - inflated);
+                if (count == 0 && inflater.needsDictionary()) {
+                    if (dictionary == null) {
+                        throw new DataFormatException("Missing compression dictionary.");
+                    }
+                    inflater.setDictionary(dictionary);
+                } else if (count == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated agent state.");
+                }
+                inflated += count;
+            }
+            if (inflated != originalLength) {
+                throw new DataFormatException("Unexpected agent state length.");
+            }
+
+            return output;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static int checksum(byte[] dictionary) {
+        Adler32 adler = new Adler32();
+        adler.update(dictionary);
+
+        return (int) adler.getValue();
+    }
+
+    private long cpuTime() {
+        // Thread CPU time leaves out the time spent waiting for the other threads
+        return threadBean.isCurrentThreadCpuTimeSupported() ? threadBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+}
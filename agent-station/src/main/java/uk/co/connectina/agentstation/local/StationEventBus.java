@@ -0,0 +1,176 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import uk.co.connectina.agentstation.api.AgentKey;
+import uk.co.connectina.agentstation.api.StationEvent;
+import uk.co.connectina.agentstation.api.StationListener;
+
+/**
+ * Delivers station events to the station listeners. Publishers only enqueue
+ * the event, a single dispatcher thread calls the listeners, so that a slow
+ * listener does not stall agent or remote call threads.
+ * <p>
+ * State events of an agent still waiting for dispatch are coalesced, i.e.
+ * only its latest state is delivered. Log events are dropped, and counted,
+ * when the queue is full.
+ *
+ * @author Dr Christos Bohoris
+ */
+class StationEventBus implements Serializable {
+
+    private static final Logger LOGGER = LogManager.getLogger(StationEventBus.class.toString());
+    private static final int QUEUE_CAPACITY = 10000;
+    private final transient List<StationListener> listeners = new CopyOnWriteArrayList<>();
+    private final transient BlockingQueue<StationEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final transient Map<AgentKey, StationEvent> pendingStates = new ConcurrentHashMap<>();
+    private final transient AtomicLong published = new AtomicLong();
+    private final transient AtomicLong dispatched = new AtomicLong();
+    private final transient AtomicLong coalesced = new AtomicLong();
+    private final transient AtomicLong dropped = new AtomicLong();
+    private final transient AtomicLong totalLag = new AtomicLong();
+    private final transient AtomicLong maxLag = new AtomicLong();
+    private final transient Thread dispatcher;
+    private transient volatile boolean closed;
+
+    StationEventBus() {
+        dispatcher = new Thread(this::dispatch, "Station Events");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    void addListener(StationListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Publishes an event to the station listeners.
+     *
+     * @param event the station event
+     */
+    void publish(StationEvent event) {
+        published.incrementAndGet();
+        if (closed) {
+            // Nothing takes from the queue any more
+            dropped.incrementAndGet();
+
+            return;
+        }
+
+        if (event.isAgentState()) {
+            // Only enqueue when no earlier state of this agent is still pending
+            if (pendingStates.put(event.getInstance().getKey(), event) != null) {
+                coalesced.incrementAndGet();
+
+                return;
+            }
+        }
+
+        if (event.getType() == StationEvent.Type.AGENT_LOG) {
+            if (!queue.offer(event)) {
+                dropped.incrementAndGet();
+            }
+
+            return;
+        }
+
+        try {
+            queue.put(event);
+        } catch (InterruptedException e) {
+            // Later states of this agent must not coalesce into an event that was never queued
+            if (event.isAgentState()) {
+                pendingStates.remove(event.getInstance().getKey(), event);
+            }
+            dropped.incrementAndGet();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread once the events already queued are
+     * delivered. Events published afterwards are dropped.
+     */
+    void shutdown() {
+        closed = true;
+        dispatcher.interrupt();
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        long count = dispatched.get();
+
+        statistics.put("Events Published", Long.toString(published.get()));
+        statistics.put("Events Dispatched", Long.toString(count));
+        statistics.put("Events Coalesced", Long.toString(coalesced.get()));
+        statistics.put("Events Dropped", Long.toString(dropped.get()));
+        statistics.put("Event Queue", queue.size() + " / " + QUEUE_CAPACITY);
+        statistics.put("Event Lag (avg)", (count > 0 ? totalLag.get() / count : 0) + " ms");
+        statistics.put("Event Lag (max)", maxLag.get() + " ms");
+    }
+
+    private void dispatch() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                deliver(queue.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Deliver what was queued before the shutdown
+        StationEvent event;
+        while ((event = queue.poll()) != null) {
+            deliver(event);
+        }
+    }
+
+    private void deliver(StationEvent event) {
+        if (event.isAgentState()) {
+            StationEvent latest = pendingStates.remove(event.getInstance().getKey());
+            if (latest != null) {
+                event = latest;
+            }
+        }
+
+        long lag = Math.max(0, System.currentTimeMillis() - event.getTime());
+        totalLag.addAndGet(lag);
+        maxLag.accumulateAndGet(lag, Math::max);
+        dispatched.incrementAndGet();
+
+        for (StationListener listener : listeners) {
+            try {
+                listener.notify(event);
+            } catch (RuntimeException e) {
+                LOGGER.error("Station listener failed on {}: {}", event.getType(), e.getMessage());
+            }
+        }
+    }
+
+}
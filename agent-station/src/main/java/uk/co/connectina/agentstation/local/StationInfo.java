@@ -20,6 +20,8 @@ package uk.co.connectina.agentstation.local;
 
 import java.io.Serializable;
 
+import uk.co.connectina.agentstation.local.dao.ConnectionPool;
+
 /**
  * Provides Agent Station information.
  * 
@@ -32,6 +34,16 @@ public final class StationInfo implements Serializable {
     private RemoteSupport remote;
     private String name;
     private int port;
+    private ThreadSupport threads = ThreadSupport.PLATFORM;
+    private int maxActive;
+    private int startQueue = 1000;
+    private RejectionSupport rejection = RejectionSupport.ABORT;
+    private int logCapacity = 50;
+    private int startRate = 20;
+    private boolean compression;
+    private boolean registryCache;
+    private int dbPoolSize = ConnectionPool.DEFAULT_MAX_CONNECTIONS;
+    private RMISocketSupport rmiSockets = RMISocketSupport.DEFAULT;
 
     public StationInfo(String server, String ui, RemoteSupport remote, String name, int port) {
         this.server = server;
@@ -60,5 +72,85 @@ public final class StationInfo implements Serializable {
     public int getPort() {
         return port;
     }
+
+    public ThreadSupport getThreads() {
+        return threads;
+    }
+
+    public void setThreads(ThreadSupport threads) {
+        this.threads = threads;
+    }
+
+    public int getMaxActive() {
+        return maxActive;
+    }
+
+    public void setMaxActive(int maxActive) {
+        this.maxActive = maxActive;
+    }
+
+    public int getStartQueue() {
+        return startQueue;
+    }
+
+    public void setStartQueue(int startQueue) {
+        this.startQueue = startQueue;
+    }
+
+    public RejectionSupport getRejection() {
+        return rejection;
+    }
+
+    public void setRejection(RejectionSupport rejection) {
+        this.rejection = rejection;
+    }
+
+    public int getLogCapacity() {
+        return logCapacity;
+    }
+
+    public void setLogCapacity(int logCapacity) {
+        this.logCapacity = logCapacity;
+    }
+
+    public int getStartRate() {
+        return startRate;
+    }
+
+    public void setStartRate(int startRate) {
+        this.startRate = startRate;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    public void setCompression(boolean compression) {
+        this.compression = compression;
+    }
+
+    public boolean isRegistryCache() {
+        return registryCache;
+    }
+
+    public void setRegistryCache(boolean registryCache) {
+        this.registryCache = registryCache;
+    }
+
+    public int getDbPoolSize() {
+        return dbPoolSize;
+    }
+
+    public void setDbPoolSize(int dbPoolSize) {
+        this.dbPoolSize = dbPoolSize;
+    }
+
+    public RMISocketSupport getRmiSockets() {
+        return rmiSockets;
+    }
+
+    public void setRmiSockets(RMISocketSupport rmiSockets) {
+        this.rmiSockets = rmiSockets;
+    }
     
 }
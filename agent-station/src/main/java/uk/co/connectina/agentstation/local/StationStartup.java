@@ -0,0 +1,284 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.PermissionIdentity;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Brings the registered agents of a station back to life on startup. All
+ * instances and permissions are loaded in a single pass, each distinct agent
+ * package is verified once and in parallel with the others, agents are
+ * instantiated in parallel and auto start agents are started at a limited rate
+ * by a background thread.
+ *
+ * @author Dr Christos Bohoris
+ */
+class StationStartup {
+
+    private static final Logger LOGGER = LogManager.getLogger(StationStartup.class.toString());
+    private final Station station;
+    private final Registry registry;
+    private final AgentManager agentManager;
+    private final int startRate;
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicInteger autoStarted = new AtomicInteger();
+    private final AtomicLong autoStartMillis = new AtomicLong(-1);
+
+    StationStartup(Station station, Registry registry, AgentManager agentManager, int startRate) {
+        this.station = station;
+        this.registry = registry;
+        this.agentManager = agentManager;
+        this.startRate = startRate;
+    }
+
+    /**
+     * Runs the startup pipeline for the agent packages found in a folder.
+     *
+     * @param packageFolder the folder holding the agent packages
+     * @throws OperationException the registry could not be read
+     */
+    void run(File packageFolder) throws OperationException {
+        long phaseStart = System.nanoTime();
+        List<Instance> instances = registry.lookupAgents();
+        Map<PermissionIdentity, Permission> permissions = new HashMap<>();
+        for (Permission permission : registry.lookupPermissions()) {
+            permissions.put(new PermissionIdentity(permission.getAgentName(), permission.getAgentShortId(),
+                    permission.getPlaceName()), permission);
+        }
+        phaseStart = endPhase("Load", phaseStart);
+
+        Map<String, List<Instance>> packages = reconcile(packageFolder, instances, permissions);
+        phaseStart = endPhase("Reconcile", phaseStart);
+
+        int threads = Math.max(1, Math.min(packages.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "Station Startup");
+            thread.setDaemon(true);
+
+            return thread;
+        });
+        try {
+            Map<String, String> verified = verify(pool, packages);
+            IOAccess.getChecksums().flush();
+            phaseStart = endPhase("Verify", phaseStart);
+
+            instantiate(pool, packages, verified);
+            endPhase("Instantiate", phaseStart);
+        } finally {
+            pool.shutdown();
+        }
+
+        List<Instance> autoStart = new ArrayList<>();
+        for (List<Instance> packageInstances : packages.values()) {
+            for (Instance instance : packageInstances) {
+                if (agentManager.getAgent(instance) != null && permissions.get(getPermissionIdentity(instance)).isAutoStart()) {
+                    autoStart.add(instance);
+                }
+            }
+        }
+        LOGGER.info("Startup: {} agents created, {} failed, {} queued for auto start, phases {}", created.get(),
+                failed.get(), autoStart.size(), phases);
+
+        startAll(autoStart);
+    }
+
+    void collectStatistics(Map<String, String> statistics) {
+        synchronized (phases) {
+            phases.forEach((String name, Long millis) -> statistics.put("Startup " + name, millis + " ms"));
+        }
+        long autoStartTime = autoStartMillis.get();
+        statistics.put("Startup Auto Start", autoStartTime < 0 ? autoStarted.get() + " started so far" : autoStartTime + " ms");
+        statistics.put("Startup Agents", created.get() + " created, " + failed.get() + " failed");
+    }
+
+    private Map<String, List<Instance>> reconcile(File packageFolder, List<Instance> instances,
+            Map<PermissionIdentity, Permission> permissions) throws OperationException {
+        Map<String, List<Instance>> byPackage = new HashMap<>();
+        for (Instance instance : instances) {
+            byPackage.computeIfAbsent(instance.getIdentity().getPackageFile(), key -> new ArrayList<>()).add(instance);
+        }
+
+        Map<String, List<Instance>> packages = new LinkedHashMap<>();
+        File[] files = packageFolder.listFiles((File folder, String name) -> name.endsWith(".jar"));
+        for (File file : files != null ? files : new File[0]) {
+            List<Instance> packageInstances = byPackage.get(toPackageFile(file));
+            if (packageInstances == null) {
+                try {
+                    Files.delete(file.toPath());
+                } catch (IOException ex) {
+                    file.deleteOnExit();
+                }
+
+                continue;
+            }
+
+            List<Instance> allowed = new ArrayList<>();
+            for (Instance instance : packageInstances) {
+                if (instance.getState() != Instance.State.INACTIVE) {
+                    instance.setState(Instance.State.INACTIVE);
+                    registry.updateAgentState(instance);
+                }
+                Permission permission = permissions.get(getPermissionIdentity(instance));
+                if (permission != null && permission.isAllowed()) {
+                    allowed.add(instance);
+                }
+            }
+            if (!allowed.isEmpty()) {
+                packages.put(toPackageFile(file), allowed);
+            }
+        }
+
+        return packages;
+    }
+
+    private Map<String, String> verify(ExecutorService pool, Map<String, List<Instance>> packages) {
+        Map<String, Future<String>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Instance>> entry : packages.entrySet()) {
+            Instance first = entry.getValue().get(0);
+            futures.put(entry.getKey(), pool.submit(() -> agentManager.verifyPackage(first.getIdentity())));
+        }
+
+        Map<String, String> verified = new HashMap<>();
+        for (Map.Entry<String, Future<String>> entry : futures.entrySet()) {
+            try {
+                verified.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException e) {
+                failed.addAndGet(packages.get(entry.getKey()).size());
+                LOGGER.error("{}: {}", entry.getKey(), e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+
+                return verified;
+            }
+        }
+
+        return verified;
+    }
+
+    private void instantiate(ExecutorService pool, Map<String, List<Instance>> packages, Map<String, String> verified) {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<String, String> entry : verified.entrySet()) {
+            for (Instance instance : packages.get(entry.getKey())) {
+                tasks.add(() -> {
+                    try {
+                        agentManager.createVerifiedAgent(instance, null, entry.getValue());
+                        created.incrementAndGet();
+                    } catch (OperationException e) {
+                        failed.incrementAndGet();
+                        LOGGER.error("{}: {}", IOAccess.getPlainAboutAgent(instance), e.getMessage());
+                    }
+
+                    return null;
+                });
+            }
+        }
+
+        try {
+            pool.invokeAll(tasks);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void startAll(List<Instance> autoStart) {
+        if (autoStart.isEmpty()) {
+            autoStartMillis.set(0);
+
+            return;
+        }
+
+        long pause = startRate > 0 ? TimeUnit.SECONDS.toNanos(1) / startRate : 0;
+        Thread starter = new Thread(() -> {
+            long startTime = System.nanoTime();
+            for (Instance instance : autoStart) {
+                try {
+                    station.startAgent(instance);
+                    autoStarted.incrementAndGet();
+                } catch (OperationException e) {
+                    LOGGER.error("{}: {}", IOAccess.getPlainAboutAgent(instance), e.getMessage());
+                }
+                if (pause > 0) {
+                    try {
+                        TimeUnit.NANOSECONDS.sleep(pause);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+
+                        return;
+                    }
+                }
+            }
+            autoStartMillis.set(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            LOGGER.info("Startup: {} agents auto started in {} ms", autoStarted.get(), autoStartMillis.get());
+        }, "Agent Auto Start");
+        starter.setDaemon(true);
+        starter.start();
+    }
+
+    private long endPhase(String name, long phaseStart) {
+        long now = System.nanoTime();
+        synchronized (phases) {
+            phases.put(name, TimeUnit.NANOSECONDS.toMillis(now - phaseStart));
+        }
+
+        return now;
+    }
+
+    private static PermissionIdentity getPermissionIdentity(Instance instance) {
+        return new PermissionIdentity(instance.getIdentity().getName(), instance.getShortId(), instance.getPlaceName());
+    }
+
+    private static String toPackageFile(File file) {
+        try {
+
+            return file.toURI().toURL().toString();
+        } catch (MalformedURLException e) {
+
+            return file.getPath();
+        }
+    }
+
+}
@@ -18,11 +18,11 @@
  */
 package uk.co.connectina.agentstation.local.dao;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
-import java.text.MessageFormat;
+import java.util.List;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -36,45 +36,167 @@ import uk.co.connectina.agentstation.api.client.OperationException;
  */
 abstract class AbstractAccess {
 
-    protected static final String NULL_STATEMENT = "Null SQL statement";
     protected static final String NOT_SUPPORTED = "Not supported.";
     private static final Logger LOGGER = LogManager.getLogger(AbstractAccess.class.toString());
-    protected Connection connection;
+    private static final String CREATE_SCHEMA_HISTORY_SQL = "CREATE TABLE IF NOT EXISTS SCHEMA_HISTORY (tableName VARCHAR(64) NOT NULL, version INTEGER NOT NULL, applied TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL, PRIMARY KEY (tableName, version))";
+    private final ConnectionPool pool;
+
+    /**
+     * A schema change, written so that running it again after a failure part
+     * way through leaves the table as it is. H2 commits schema statements
+     * straight away, so a change may have been applied without being
+     * recorded.
+     */
+    protected static final class Migration {
+
+        private final String sql;
+        private final String condition;
+
+        private Migration(String sql, String condition) {
+            this.sql = sql;
+            this.condition = condition;
+        }
+
+        /**
+         * Provides a change that is safe to run again as it is.
+         *
+         * @param sql the SQL statement
+         * @return the migration
+         */
+        static Migration of(String sql) {
+
+            return new Migration(sql, null);
+        }
+
+        /**
+         * Provides a change that is only run while a query of the catalog
+         * still finds what it changes.
+         *
+         * @param condition the query that returns a row while the change is pending
+         * @param sql the SQL statement
+         * @return the migration
+         */
+        static Migration when(String condition, String sql) {
+
+            return new Migration(sql, condition);
+        }
+
+        private boolean isPending(Statement statement) throws SQLException {
+            if (condition == null) {
+
+                return true;
+            }
+
+            try (ResultSet rs = statement.executeQuery(condition)) {
+
+                return rs.next();
+            }
+        }
+
+    }
 
     AbstractAccess() {
         this(Access.DB_NAME);
     }
 
     AbstractAccess(String dbName) {
-        connection = getConnection(dbName);
+        pool = ConnectionPool.forDatabase(dbName);
     }
 
-    protected void createSchema(String sql) throws OperationException {
-        try (Statement statement = connection != null ? connection.createStatement() : null) {
-            if (statement == null) {
+    /**
+     * Borrows a connection from the pool of this database.
+     *
+     * @return the connection, to be closed once the caller is done with it
+     * @throws OperationException no connection is available
+     */
+    protected PooledConnection acquireConnection() throws OperationException {
 
-                throw new OperationException(NULL_STATEMENT);
-            }
+        return pool.acquire();
+    }
 
+    protected void createSchema(String sql) throws OperationException {
+        try (PooledConnection connection = acquireConnection()) {
+            Statement statement = connection.createStatement();
             statement.executeUpdate(sql);
         } catch (SQLException e) {
             LOGGER.error(e);
         }
     }
 
-    private Connection getConnection(String dbName) {    
-        if (connection == null) {
-            try {
-                final String DB_URL = MessageFormat
-                        .format("jdbc:h2:~/.AgentStation/db/{0};AUTOCOMMIT=ON;AUTO_SERVER=TRUE", dbName);
-                connection = DriverManager.getConnection(DB_URL);
+    /**
+     * Brings a table up to date by running the migrations it has not had yet.
+     * The migrations of a table are numbered from 1 in list order and each one
+     * is recorded in the SCHEMA_HISTORY table as soon as it is applied, so they
+     * must only ever be appended to. A failed migration stops the run, and the
+     * next run starts again from it.
+     *
+     * @param tableName the table name
+     * @param migrations the migration of each schema version in order
+     * @throws OperationException a migration failed
+     */
+    protected void migrateSchema(String tableName, List<Migration> migrations) throws OperationException {
+        synchronized (AbstractAccess.class) {
+            try (PooledConnection connection = acquireConnection()) {
+                Statement statement = connection.createStatement();
+                statement.executeUpdate(CREATE_SCHEMA_HISTORY_SQL);
+                int current = readSchemaVersion(connection, tableName);
+                if (current >= migrations.size()) {
 
+                    return;
+                }
+
+                for (int version = current; version < migrations.size(); version++) {
+                    Migration migration = migrations.get(version);
+                    int applied = version + 1;
+                    // Data changes are recorded with the version, schema changes are committed by H2 and may run again
+                    connection.inTransaction(() -> {
+                        int rows = migration.isPending(statement) ? statement.executeUpdate(migration.sql) : 0;
+                        recordSchemaVersion(connection, tableName, applied);
+                        if (rows > 0) {
+                            LOGGER.info("{}: schema version {} changed {} rows", tableName, applied, rows);
+                        }
+                    });
+                }
+                LOGGER.info("{}: migrated from schema version {} to {}", tableName, current, migrations.size());
             } catch (SQLException e) {
-                LOGGER.error(e);
+                throw new OperationException(e);
             }
         }
+    }
+
+    /**
+     * Provides the latest schema version applied to a table.
+     *
+     * @param tableName the table name
+     * @return the schema version or 0 when no migration has been applied
+     * @throws OperationException an error occurred
+     */
+    protected int readSchemaVersion(String tableName) throws OperationException {
+        try (PooledConnection connection = acquireConnection()) {
+
+            return readSchemaVersion(connection, tableName);
+        } catch (SQLException e) {
+            throw new OperationException(e);
+        }
+    }
+
+    private int readSchemaVersion(PooledConnection connection, String tableName) throws SQLException {
+        final String SQL = "SELECT MAX(version) FROM SCHEMA_HISTORY WHERE tableName = ?";
+
+        PreparedStatement statement = connection.prepareStatement(SQL);
+        statement.setString(1, tableName);
+        ResultSet rs = statement.executeQuery();
+
+        return rs.next() ? rs.getInt(1) : 0;
+    }
+
+    private void recordSchemaVersion(PooledConnection connection, String tableName, int version) throws SQLException {
+        final String SQL = "INSERT INTO SCHEMA_HISTORY (tableName, version) VALUES (?, ?)";
 
-        return connection;
+        PreparedStatement statement = connection.prepareStatement(SQL);
+        statement.setString(1, tableName);
+        statement.setInt(2, version);
+        statement.executeUpdate();
     }
 
 }
@@ -51,6 +51,14 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
     private static final String STATE = "state";
     private static final String WHERE_UNIQUE_KEY = "className = ? AND hashCode = ? AND majorVersion = ? AND minorVersion = ? AND creation = ? AND stationName = ?";
     private static final String CREATE_INSTANCE_SQL = "CREATE TABLE IF NOT EXISTS INSTANCE (sid BIGINT AUTO_INCREMENT, stationName VARCHAR(256) NOT NULL, placeName VARCHAR(256) NOT NULL, name VARCHAR(256) NOT NULL, organisation VARCHAR(256) NOT NULL, hashCode VARCHAR(32) NOT NULL, majorVersion INTEGER NOT NULL, minorVersion INTEGER NOT NULL, description VARCHAR(256) NOT NULL, creation VARCHAR(32) NOT NULL, state VARCHAR(8) NOT NULL, packageFile VARCHAR(256) NOT NULL, className VARCHAR(256) NOT NULL, parameters VARCHAR(1024))";
+    // A system id is only trusted when the row it finds still has the same key, as one set by another station may travel with the instance
+    private static final String WHERE_SID = "sid = ? AND " + WHERE_UNIQUE_KEY;
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.of("DELETE FROM INSTANCE a WHERE EXISTS (SELECT 1 FROM INSTANCE b WHERE b.className = a.className AND b.hashCode = a.hashCode AND b.majorVersion = a.majorVersion AND b.minorVersion = a.minorVersion AND b.creation = a.creation AND b.stationName = a.stationName AND b.sid < a.sid)"),
+            Migration.of("ALTER TABLE INSTANCE ADD CONSTRAINT IF NOT EXISTS INSTANCE_PK PRIMARY KEY (sid)"),
+            Migration.of("ALTER TABLE INSTANCE ADD CONSTRAINT IF NOT EXISTS INSTANCE_UNIQUE_KEY UNIQUE (stationName, className, hashCode, majorVersion, minorVersion, creation)"),
+            Migration.of("CREATE INDEX IF NOT EXISTS INSTANCE_PLACE_NAME ON INSTANCE (stationName, placeName)"),
+            Migration.of("CREATE INDEX IF NOT EXISTS INSTANCE_PACKAGE_FILE ON INSTANCE (stationName, packageFile)"));
     private String stationName;
 
     public AgentAccess(String stationName) {
@@ -67,14 +75,8 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
     public void create(Instance instance) throws OperationException {
         final String SQL = "INSERT INTO INSTANCE (placeName, name, organisation, hashCode, majorVersion, minorVersion, description, creation, state, packageFile, className, parameters, stationName) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement statement = connection != null
-                ? connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS)
-                : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
             statement.setString(1, instance.getPlaceName());
             statement.setString(2, instance.getIdentity().getName());
             statement.setString(3, instance.getIdentity().getOrganisation());
@@ -106,12 +108,8 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
         List<Instance> results = new ArrayList<>();
         final String SQL = "SELECT * FROM INSTANCE WHERE stationName = ? ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, stationName);
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
@@ -126,14 +124,16 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
 
     @Override
     public Instance read(Instance instance) throws OperationException {
-        final String SQL = "SELECT * FROM INSTANCE WHERE " + WHERE_UNIQUE_KEY;
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
-            whereUniqueKeyStatement(statement, instance);
+        Instance result = instance.getSid() > 0 ? read(instance, true) : null;
+
+        return result != null ? result : read(instance, false);
+    }
+
+    private Instance read(Instance instance, boolean bySid) throws OperationException {
+        final String SQL = "SELECT * FROM INSTANCE WHERE " + (bySid ? WHERE_SID : WHERE_UNIQUE_KEY);
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
+            whereKeyStatement(statement, instance, 1, bySid);
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
 
@@ -148,22 +148,24 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
 
     @Override
     public void update(Instance instance) throws OperationException {
-        final String SQL = "UPDATE INSTANCE SET parameters = ?, state = ? WHERE " + WHERE_UNIQUE_KEY;
+        if (instance.getSid() <= 0 || update(instance, true) == 0) {
+            update(instance, false);
+        }
+    }
+
+    private int update(Instance instance, boolean bySid) throws OperationException {
+        final String SQL = "UPDATE INSTANCE SET parameters = ?, state = ? WHERE " + (bySid ? WHERE_SID : WHERE_UNIQUE_KEY);
         String params = instance.getParameters() != null && instance.getParameters().length > 0
                 ? instance.getCommaSeparatedParameters()
                 : null;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, params);
             statement.setString(2, instance.getState().toString());
-            whereUniqueKeyStatement(statement, instance, 3);
+            whereKeyStatement(statement, instance, 3, bySid);
 
-            statement.executeUpdate();
+            return statement.executeUpdate();
         } catch (SQLException e) {
             throw new OperationException(e);
         }
@@ -171,17 +173,19 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
 
     @Override
     public void delete(Instance instance) throws OperationException {
-        final String SQL = "DELETE FROM INSTANCE WHERE " + WHERE_UNIQUE_KEY;
+        if (instance.getSid() <= 0 || delete(instance, true) == 0) {
+            delete(instance, false);
+        }
+    }
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
-            whereUniqueKeyStatement(statement, instance);
+    private int delete(Instance instance, boolean bySid) throws OperationException {
+        final String SQL = "DELETE FROM INSTANCE WHERE " + (bySid ? WHERE_SID : WHERE_UNIQUE_KEY);
+
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
+            whereKeyStatement(statement, instance, 1, bySid);
 
-            statement.executeUpdate();
+            return statement.executeUpdate();
         } catch (SQLException e) {
             throw new OperationException(e);
         }
@@ -189,15 +193,16 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
 
     @Override
     public boolean exists(Instance instance) throws OperationException {
-        final String SQL = "SELECT name FROM INSTANCE WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
-            whereUniqueKeyStatement(statement, instance);
+        return (instance.getSid() > 0 && exists(instance, true)) || exists(instance, false);
+    }
+
+    private boolean exists(Instance instance, boolean bySid) throws OperationException {
+        final String SQL = "SELECT name FROM INSTANCE WHERE " + (bySid ? WHERE_SID : WHERE_UNIQUE_KEY);
+
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
+            whereKeyStatement(statement, instance, 1, bySid);
 
             ResultSet rs = statement.executeQuery();
             if (rs.next()) {
@@ -215,12 +220,8 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
         List<Instance> results = new ArrayList<>();
         final String SQL = "SELECT * FROM INSTANCE WHERE packageFile = ? AND stationName = ? ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, packageFile);
             statement.setString(2, stationName);
 
@@ -239,12 +240,8 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
         List<Instance> results = new ArrayList<>();
         final String SQL = "SELECT * FROM INSTANCE WHERE placeName = ? AND stationName = ? ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-                
-                throw new OperationException(NULL_STATEMENT);
-            }
-            
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, placeName);
             statement.setString(2, stationName);
 
@@ -262,10 +259,19 @@ public class AgentAccess extends AbstractAccess implements Access<Instance, Inst
     @Override
     public void createSchema() throws OperationException {
         createSchema(CREATE_INSTANCE_SQL);
+        migrateSchema("INSTANCE", MIGRATIONS);
     }
 
-    private void whereUniqueKeyStatement(final PreparedStatement statement, Instance instance) throws SQLException {
-        this.whereUniqueKeyStatement(statement, instance, 1);
+    private void whereKeyStatement(final PreparedStatement statement, Instance instance, int start, boolean bySid)
+            throws SQLException {
+        if (!bySid) {
+            whereUniqueKeyStatement(statement, instance, start);
+
+            return;
+        }
+
+        statement.setLong(start, instance.getSid());
+        whereUniqueKeyStatement(statement, instance, start + 1);
     }
 
     private void whereUniqueKeyStatement(final PreparedStatement statement, Instance instance, int start)
@@ -0,0 +1,215 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local.dao;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.text.MessageFormat;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * A pool of database connections shared by all DAOs of the same database.
+ * Each DAO call borrows a connection for its own use, so calls from different
+ * threads run on separate sessions instead of queuing on a single one.
+ *
+ * @author Dr Christos Bohoris
+ */
+public final class ConnectionPool {
+
+    public static final int DEFAULT_MAX_CONNECTIONS = 8;
+    static final long WAIT_TIMEOUT_SECONDS = 30;
+    private static final Logger LOGGER = LogManager.getLogger(ConnectionPool.class.toString());
+    private static final Map<String, ConnectionPool> POOLS = new ConcurrentHashMap<>();
+    private static volatile int maxConnections = DEFAULT_MAX_CONNECTIONS;
+    private final String name;
+    private final String url;
+    private final int size;
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waits = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder discarded = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAdder statementsPrepared = new LongAdder();
+    private final LongAdder statementsReused = new LongAdder();
+    private final LongAdder statementsEvicted = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    ConnectionPool(String name, String url, int size) {
+        this.name = name;
+        this.url = url;
+        this.size = size;
+        permits = new Semaphore(size, true);
+    }
+
+    /**
+     * Sets the number of connections of each pool created from now on.
+     *
+     * @param maxConnections the maximum number of open connections per database
+     */
+    public static void setMaxConnections(int maxConnections) {
+        ConnectionPool.maxConnections = maxConnections;
+    }
+
+    /**
+     * Provides the pool of a database, creating it on first use.
+     *
+     * @param dbName the database name
+     * @return the connection pool
+     */
+    static ConnectionPool forDatabase(String dbName) {
+
+        return POOLS.computeIfAbsent(dbName, key -> new ConnectionPool(key, MessageFormat
+                .format("jdbc:h2:~/.AgentStation/db/{0};AUTOCOMMIT=ON;AUTO_SERVER=TRUE", key), maxConnections));
+    }
+
+    /**
+     * Borrows a connection, waiting for one to be given back if all are in use.
+     *
+     * @return the connection, to be closed once the caller is done with it
+     * @throws OperationException no connection became available or one could not be opened
+     */
+    PooledConnection acquire() throws OperationException {
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire()) {
+                waits.increment();
+                if (!permits.tryAcquire(WAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    timeouts.increment();
+
+                    throw new OperationException("Timed out waiting for a database connection.");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            throw new OperationException(e);
+        }
+        long waited = System.nanoTime() - start;
+        acquisitions.increment();
+        waitNanos.add(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        PooledConnection connection = idle.pollFirst();
+        if (connection != null) {
+
+            return connection;
+        }
+
+        try {
+            connection = new PooledConnection(this, DriverManager.getConnection(url));
+            opened.increment();
+
+            return connection;
+        } catch (SQLException e) {
+            permits.release();
+
+            throw new OperationException(e);
+        }
+    }
+
+    /**
+     * Takes back a borrowed connection. Connections that failed are closed
+     * rather than handed out again.
+     *
+     * @param connection the connection
+     */
+    void release(PooledConnection connection) {
+        try {
+            if (connection.isUsable()) {
+                idle.offerFirst(connection);
+            } else {
+                discarded.increment();
+                connection.closePhysical();
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    void statementPrepared() {
+        statementsPrepared.increment();
+    }
+
+    void statementReused() {
+        statementsReused.increment();
+    }
+
+    void statementEvicted() {
+        statementsEvicted.increment();
+    }
+
+    int getSize() {
+        return size;
+    }
+
+    int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Adds the usage figures of every pool to the given statistics.
+     *
+     * @param statistics the statistics
+     */
+    public static void collectStatistics(Map<String, String> statistics) {
+        for (ConnectionPool pool : POOLS.values()) {
+            pool.collectPoolStatistics(statistics);
+        }
+    }
+
+    void collectPoolStatistics(Map<String, String> statistics) {
+        String prefix = "DB Pool " + name;
+        long count = acquisitions.sum();
+        statistics.put(prefix, (size - permits.availablePermits()) + " / " + size);
+        statistics.put(prefix + " Acquisitions", Long.toString(count));
+        statistics.put(prefix + " Waits", Long.toString(waits.sum()));
+        statistics.put(prefix + " Timeouts", Long.toString(timeouts.sum()));
+        statistics.put(prefix + " Average Wait us", Long.toString(count > 0 ? waitNanos.sum() / count / 1_000 : 0));
+        statistics.put(prefix + " Max Wait ms", Long.toString(maxWaitNanos.get() / 1_000_000));
+        statistics.put(prefix + " Connections Opened", Long.toString(opened.sum()));
+        statistics.put(prefix + " Connections Discarded", Long.toString(discarded.sum()));
+        long prepared = statementsPrepared.sum();
+        long reused = statementsReused.sum();
+        statistics.put(prefix + " Statements Prepared", Long.toString(prepared));
+        statistics.put(prefix + " Statements Reused", Long.toString(reused));
+        statistics.put(prefix + " Statements Evicted", Long.toString(statementsEvicted.sum()));
+        statistics.put(prefix + " Statement Hit Rate",
+                (prepared + reused > 0 ? reused * 100 / (prepared + reused) : 0) + "%");
+    }
+
+    static void logClosingError(SQLException e) {
+        LOGGER.warn("Could not close a pooled database resource: {}", e.getMessage());
+    }
+
+}
@@ -42,6 +42,13 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
     private static final String AUTO_START = "autoStart";
     private static final String AGENT_NAME = "agentName";
     private static final String WHERE_UNIQUE_KEY = "agentName = ? AND agentTraceId = ? AND placeName = ? AND stationName = ?";
+    // The primary key the table was first created with, dropped in favour of one on sid
+    private static final String ORIGINAL_PRIMARY_KEY_SQL = "SELECT 1 FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'PERMISSION' AND CONSTRAINT_TYPE = 'PRIMARY KEY' AND CONSTRAINT_NAME <> 'PERMISSION_PK'";
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.when(ORIGINAL_PRIMARY_KEY_SQL, "ALTER TABLE PERMISSION DROP PRIMARY KEY"),
+            Migration.of("ALTER TABLE PERMISSION ADD CONSTRAINT IF NOT EXISTS PERMISSION_UNIQUE_KEY UNIQUE (stationName, agentName, agentTraceId, placeName)"),
+            Migration.of("ALTER TABLE PERMISSION ADD CONSTRAINT IF NOT EXISTS PERMISSION_PK PRIMARY KEY (sid)"),
+            Migration.of("CREATE INDEX IF NOT EXISTS PERMISSION_PLACE_NAME ON PERMISSION (stationName, placeName)"));
     private static final String CREATE_PERMISSION_SQL = "CREATE TABLE IF NOT EXISTS PERMISSION (sid BIGINT AUTO_INCREMENT, agentName VARCHAR(256) NOT NULL, agentTraceId VARCHAR(32) NOT NULL, stationName VARCHAR(256) NOT NULL, placeName VARCHAR(256) NOT NULL, allowed BOOLEAN NOT NULL, autoStart BOOLEAN NOT NULL, PRIMARY KEY (agentName, agentTraceId, placeName, stationName))";
     private String stationName;
 
@@ -59,14 +66,8 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
     public void create(Permission permission) throws OperationException {
         final String SQL = "INSERT INTO PERMISSION (agentName, agentTraceId, stationName, placeName, allowed, autoStart) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement statement = connection != null
-                ? connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS)
-                : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
             statement.setString(1, permission.getAgentName());
             statement.setString(2, permission.getAgentShortId());
             statement.setString(3, stationName);
@@ -91,12 +92,8 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
         List<Permission> results = new ArrayList<>();
         final String SQL = "SELECT * FROM PERMISSION WHERE stationName = ? ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, stationName);
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
@@ -113,12 +110,8 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
     public Permission read(PermissionIdentity permissionIdentity) throws OperationException {
         final String SQL = "SELECT * FROM PERMISSION WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             whereUniqueKeyStatement(statement, permissionIdentity);
 
             ResultSet rs = statement.executeQuery();
@@ -137,11 +130,8 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
     public void update(Permission permission) throws OperationException {
         final String SQL = "UPDATE PERMISSION SET allowed = ?, autoStart = ? WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setBoolean(1, permission.isAllowed());
             statement.setBoolean(2, permission.isAutoStart());
             whereUniqueKeyStatement(statement, permission, 3);
@@ -156,12 +146,8 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
     public void delete(PermissionIdentity permissionIdentity) throws OperationException {
         final String SQL = "DELETE FROM PERMISSION WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             whereUniqueKeyStatement(statement, permissionIdentity);
 
             statement.executeUpdate();
@@ -181,12 +167,8 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
         List<Permission> results = new ArrayList<>();
         final String SQL = "SELECT * FROM PERMISSION WHERE placeName = ? AND stationName = ? ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, placeName);
             statement.setString(2, stationName);
 
@@ -204,6 +186,7 @@ public class PermissionAccess extends AbstractAccess implements Access<Permissio
     @Override
     public void createSchema() throws OperationException {
         createSchema(CREATE_PERMISSION_SQL);
+        migrateSchema("PERMISSION", MIGRATIONS);
     }
 
     private void whereUniqueKeyStatement(final PreparedStatement statement, PermissionIdentity permissionIdentity)
@@ -34,6 +34,12 @@ import uk.co.connectina.agentstation.api.client.OperationException;
 public class PlaceAccess extends AbstractAccess implements Access<String, String> {
 
     private static final String WHERE_UNIQUE_KEY = "name = ? AND stationName = ?";
+    // The primary key the table was first created with, dropped in favour of one on sid
+    private static final String ORIGINAL_PRIMARY_KEY_SQL = "SELECT 1 FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS WHERE TABLE_SCHEMA = SCHEMA() AND TABLE_NAME = 'PLACE' AND CONSTRAINT_TYPE = 'PRIMARY KEY' AND CONSTRAINT_NAME <> 'PLACE_PK'";
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.when(ORIGINAL_PRIMARY_KEY_SQL, "ALTER TABLE PLACE DROP PRIMARY KEY"),
+            Migration.of("ALTER TABLE PLACE ADD CONSTRAINT IF NOT EXISTS PLACE_UNIQUE_KEY UNIQUE (stationName, name)"),
+            Migration.of("ALTER TABLE PLACE ADD CONSTRAINT IF NOT EXISTS PLACE_PK PRIMARY KEY (sid)"));
     private static final String CREATE_PLACE_SQL = "CREATE TABLE IF NOT EXISTS PLACE (sid BIGINT AUTO_INCREMENT, stationName VARCHAR(256) NOT NULL, name VARCHAR(256), PRIMARY KEY (name, stationName))";
     private String stationName;
 
@@ -51,12 +57,8 @@ public class PlaceAccess extends AbstractAccess implements Access<String, String
     public void create(String name) throws OperationException {
         final String SQL = "INSERT INTO PLACE (name, stationName) VALUES (?, ?)";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, name);
             statement.setString(2, stationName);
 
@@ -71,12 +73,8 @@ public class PlaceAccess extends AbstractAccess implements Access<String, String
         List<String> results = new ArrayList<>();
         final String SQL = "SELECT name FROM PLACE WHERE stationName = ? ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, stationName);
 
             ResultSet rs = statement.executeQuery();
@@ -94,12 +92,8 @@ public class PlaceAccess extends AbstractAccess implements Access<String, String
     public String read(String name) throws OperationException {
         final String SQL = "SELECT name FROM PLACE WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             whereUniqueKeyStatement(statement, name);
 
             ResultSet rs = statement.executeQuery();
@@ -124,12 +118,8 @@ public class PlaceAccess extends AbstractAccess implements Access<String, String
     public void delete(String name) throws OperationException {
         final String SQL = "DELETE FROM PLACE WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             whereUniqueKeyStatement(statement, name);
 
             statement.executeUpdate();
@@ -147,6 +137,7 @@ public class PlaceAccess extends AbstractAccess implements Access<String, String
     @Override
     public void createSchema() throws OperationException {
         createSchema(CREATE_PLACE_SQL);
+        migrateSchema("PLACE", MIGRATIONS);
     }
 
     private void whereUniqueKeyStatement(final PreparedStatement statement, String name) throws SQLException {
@@ -0,0 +1,186 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local.dao;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A connection borrowed from a {@link ConnectionPool}. Prepared statements are
+ * kept open with the connection and handed out again whenever the same SQL
+ * text is prepared on it, so constant DAO queries are parsed and planned once
+ * per connection. Preparing the same SQL again while its results are still
+ * being read closes those results. Plain statements are closed and the
+ * connection is given back when it is closed.
+ *
+ * @author Dr Christos Bohoris
+ */
+final class PooledConnection implements AutoCloseable {
+
+    /**
+     * Statements that run together in one transaction.
+     */
+    @FunctionalInterface
+    interface SQLWork {
+
+        void run() throws SQLException;
+
+    }
+
+    private final ConnectionPool pool;
+    private final Connection connection;
+    static final int MAX_CACHED_STATEMENTS = 64;
+    private final List<Statement> statements = new ArrayList<>();
+    private final Map<String, PreparedStatement> preparedStatements = new LinkedHashMap<>(16, 0.75f, true);
+    private boolean failed;
+
+    PooledConnection(ConnectionPool pool, Connection connection) {
+        this.pool = pool;
+        this.connection = connection;
+    }
+
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+
+        return prepareStatement(sql, Statement.NO_GENERATED_KEYS);
+    }
+
+    PreparedStatement prepareStatement(String sql, int autoGeneratedKeys) throws SQLException {
+        String key = autoGeneratedKeys + ":" + sql;
+        PreparedStatement statement = preparedStatements.get(key);
+        if (statement != null && !statement.isClosed()) {
+            pool.statementReused();
+            statement.clearParameters();
+
+            return statement;
+        }
+
+        pool.statementPrepared();
+        statement = connection.prepareStatement(sql, autoGeneratedKeys);
+        preparedStatements.put(key, statement);
+        evictStatements();
+
+        return statement;
+    }
+
+    Statement createStatement() throws SQLException {
+
+        return track(connection.createStatement());
+    }
+
+    /**
+     * Runs the work in one transaction, committing it when the work completes
+     * and rolling it back when it fails. The connection is back in auto-commit
+     * mode afterwards either way.
+     *
+     * @param work the statements to run together
+     * @throws SQLException the work or the transaction failed
+     */
+    void inTransaction(SQLWork work) throws SQLException {
+        connection.setAutoCommit(false);
+        try {
+            work.run();
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+
+            throw e;
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                // A connection that cannot be restored is not given to the next borrower
+                failed = true;
+                ConnectionPool.logClosingError(e);
+            }
+        }
+    }
+
+    /**
+     * Closes the plain statements created since the connection was borrowed
+     * and gives the connection back to its pool.
+     */
+    @Override
+    public void close() {
+        for (Statement statement : statements) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                failed = true;
+                ConnectionPool.logClosingError(e);
+            }
+        }
+        statements.clear();
+        pool.release(this);
+    }
+
+    boolean isUsable() {
+        try {
+
+            return !failed && !connection.isClosed();
+        } catch (SQLException e) {
+
+            return false;
+        }
+    }
+
+    int getCachedStatementCount() {
+        return preparedStatements.size();
+    }
+
+    void closePhysical() {
+        preparedStatements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            ConnectionPool.logClosingError(e);
+        }
+    }
+
+    private void evictStatements() {
+        Iterator<PreparedStatement> eldest = preparedStatements.values().iterator();
+        while (preparedStatements.size() > MAX_CACHED_STATEMENTS) {
+            PreparedStatement statement = eldest.next();
+            eldest.remove();
+            pool.statementEvicted();
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                ConnectionPool.logClosingError(e);
+            }
+        }
+    }
+
+    private <T extends Statement> T track(T statement) {
+        statements.add(statement);
+
+        return statement;
+    }
+
+}
@@ -37,6 +37,9 @@ import uk.co.connectina.agentstation.api.client.OperationException;
 public class ScheduleAccess extends AbstractAccess implements Access<Schedule, Long> {
 
     private static final String WHERE_UNIQUE_KEY = "agentSid = ?";
+    private static final List<Migration> MIGRATIONS = List.of(
+            Migration.of("DELETE FROM SCHEDULE a WHERE EXISTS (SELECT 1 FROM SCHEDULE b WHERE b.agentSid = a.agentSid AND b.sid < a.sid)"),
+            Migration.of("ALTER TABLE SCHEDULE ADD CONSTRAINT IF NOT EXISTS SCHEDULE_AGENT_SID UNIQUE (agentSid)"));
     private static final String CREATE_SCHEDULE_SQL = "CREATE TABLE IF NOT EXISTS SCHEDULE (sid BIGINT AUTO_INCREMENT, agentSid BIGINT NOT NULL, startDate VARCHAR(16) NOT NULL, startTime VARCHAR(16) NOT NULL, repeat VARCHAR(16), interv INTEGER, occur INTEGER,  PRIMARY KEY (sid))";
 
     public ScheduleAccess() {
@@ -51,14 +54,8 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
     public void create(Schedule schedule) throws OperationException {
         final String SQL = "INSERT INTO SCHEDULE (agentSid, startDate, startTime, repeat, interv, occur) VALUES (?, ?, ?, ?, ?, ?)";
 
-        try (PreparedStatement statement = connection != null
-                ? connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS)
-                : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL, Statement.RETURN_GENERATED_KEYS);
             statement.setLong(1, schedule.getAgentSid());
             statement.setString(2, schedule.getStartDate());
             statement.setString(3, schedule.getStartTime());
@@ -66,8 +63,6 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
             statement.setInt(5, schedule.getInterval());
             statement.setInt(6, schedule.getOccur());
 
-            statement.executeUpdate();
-
             int affectedRows = statement.executeUpdate();
             if (affectedRows == 1) {
                 ResultSet keySet = statement.getGeneratedKeys();
@@ -85,12 +80,8 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
         List<Schedule> results = new ArrayList<>();
         final String SQL = "SELECT * FROM SCHEDULE ORDER BY sid ASC";
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             ResultSet rs = statement.executeQuery();
             while (rs.next()) {
                 results.add(getSchedule(rs));
@@ -106,12 +97,8 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
     public Schedule read(Long agentSid) throws OperationException {
         final String SQL = "SELECT * FROM SCHEDULE WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             whereUniqueKeyStatement(statement, agentSid);
 
             ResultSet rs = statement.executeQuery();
@@ -131,12 +118,8 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
         final String SQL = "UPDATE SCHEDULE SET startDate = ?, startTime = ?, repeat = ?, interv = ?, occur = ? WHERE "
                 + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             statement.setString(1, schedule.getStartDate());
             statement.setString(2, schedule.getStartTime());
             statement.setString(3, schedule.getRepeat() != null ? schedule.getRepeat().name() : null);
@@ -154,12 +137,8 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
     public void delete(Long agentSid) throws OperationException {
         final String SQL = "DELETE FROM SCHEDULE WHERE " + WHERE_UNIQUE_KEY;
 
-        try (PreparedStatement statement = connection != null ? connection.prepareStatement(SQL) : null) {
-            if (statement == null) {
-
-                throw new OperationException(NULL_STATEMENT);
-            }
-
+        try (PooledConnection connection = acquireConnection()) {
+            PreparedStatement statement = connection.prepareStatement(SQL);
             whereUniqueKeyStatement(statement, agentSid);
 
             statement.executeUpdate();
@@ -177,6 +156,7 @@ public class ScheduleAccess extends AbstractAccess implements Access<Schedule, L
     @Override
     public void createSchema() throws OperationException {
         createSchema(CREATE_SCHEDULE_SQL);
+        migrateSchema("SCHEDULE", MIGRATIONS);
     }
 
     private Schedule getSchedule(ResultSet rs) throws SQLException {
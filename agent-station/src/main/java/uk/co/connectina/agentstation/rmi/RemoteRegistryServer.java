@@ -20,6 +20,8 @@ package uk.co.connectina.agentstation.rmi;
 
 import uk.co.connectina.agentstation.api.rmi.RemoteRegistry;
 import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
 import java.rmi.server.UnicastRemoteObject;
 import java.util.Objects;
 import uk.co.connectina.agentstation.api.Permission;
@@ -44,6 +46,19 @@ public class RemoteRegistryServer extends UnicastRemoteObject implements RemoteR
     public RemoteRegistryServer(Registry agentRegistry) throws RemoteException {
         this.agentRegistry = agentRegistry;
     }
+
+    /**
+     * Initiates a new object instance that is exported with custom sockets.
+     * 
+     * @param agentRegistry the local agent registry
+     * @param clientSocketFactory the factory of the sockets that callers open
+     * @param serverSocketFactory the factory of the sockets this object accepts calls on
+     */
+    public RemoteRegistryServer(Registry agentRegistry, RMIClientSocketFactory clientSocketFactory,
+            RMIServerSocketFactory serverSocketFactory) throws RemoteException {
+        super(0, clientSocketFactory, serverSocketFactory);
+        this.agentRegistry = agentRegistry;
+    }
     
     /**
      * Provides the registered permission that matches the given details.
@@ -22,13 +22,23 @@ import java.io.File;
 
 import uk.co.connectina.agentstation.api.rmi.RemoteStation;
 import java.rmi.RemoteException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
 import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import uk.co.connectina.agentstation.api.Station;
 import uk.co.connectina.agentstation.api.Instance;
 import uk.co.connectina.agentstation.api.Permission;
 import uk.co.connectina.agentstation.api.PermissionIdentity;
 import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 import uk.co.connectina.agentstation.local.IOAccess;
 
@@ -40,6 +50,7 @@ import uk.co.connectina.agentstation.local.IOAccess;
  */
 public class RemoteStationServer extends UnicastRemoteObject implements RemoteStation {
 
+    private static final Logger LOGGER = LogManager.getLogger(RemoteStationServer.class.toString());
     private final Station agentStation;
     private final Registry agentRegistry;
 
@@ -55,6 +66,21 @@ public class RemoteStationServer extends UnicastRemoteObject implements RemoteSt
         this.agentRegistry = agentRegistry;
     }
 
+    /**
+     * Initiates a new object instance that is exported with custom sockets.
+     *
+     * @param agentStation the local agent station
+     * @param agentRegistry the local agent registry
+     * @param clientSocketFactory the factory of the sockets that callers open
+     * @param serverSocketFactory the factory of the sockets this object accepts calls on
+     */
+    public RemoteStationServer(Station agentStation, Registry agentRegistry, RMIClientSocketFactory clientSocketFactory,
+            RMIServerSocketFactory serverSocketFactory) throws RemoteException {
+        super(0, clientSocketFactory, serverSocketFactory);
+        this.agentStation = agentStation;
+        this.agentRegistry = agentRegistry;
+    }
+
     /**
      * A request to transfer the agent to a remote Agent Station.
      *
@@ -62,22 +88,159 @@ public class RemoteStationServer extends UnicastRemoteObject implements RemoteSt
      * @param agentBytes the agent object as a byte array
      * @param packageName the package name
      * @param placeName the place name
-     * @param packageData the package data as a byte array
+     * @param packageData the package data as a byte array, or null when this
+     * station already has the package
      * @throws OperationException an error occurred
      * @throws RemoteException a remote communication error occurred
      */
     @Override
     public void transferAgent(Instance instance, byte[] agentBytes, String packageName, String placeName, byte[] packageData) throws OperationException, RemoteException {
-        String packageLocation = IOAccess.APP_PACKAGE_FOLDER + File.separator + packageName;
-        IOAccess.writeToFile(packageLocation, packageData);
+        writePackage(instance, packageName, packageData);
         instance.setPlaceName(placeName);
 
-        Permission permission = agentRegistry.lookupPermission(new PermissionIdentity(instance.getIdentity().getName(), instance.getShortId(), instance.getPlaceName()));
+        Permission permission = lookupPermission(instance);
         if (permission != null && permission.isAllowed()) {
-            agentStation.createAgent(instance, agentBytes);
-            if (permission.isAutoStart()) {
-                agentStation.startAgent(instance);
+            createAgent(instance, agentBytes, permission);
+        }
+    }
+
+    /**
+     * A request to migrate the agent to this Agent Station. The permission is
+     * checked before the package is written.
+     *
+     * @param instance the agent instance details
+     * @param agentBytes the agent object as a byte array
+     * @param packageName the package name
+     * @param placeName the place name
+     * @param packageData the package data as a byte array, or null when this
+     * station already has the package
+     * @param senderServer the server hosting the sending Agent Station
+     * @param senderPort the port that the sending Agent Station listens to
+     * @return the outcome of the migration
+     * @throws RemoteException a remote communication error occurred
+     */
+    @Override
+    public MigrationResult migrateAgent(Instance instance, byte[] agentBytes, String packageName, String placeName, byte[] packageData, String senderServer, int senderPort) throws RemoteException {
+        agentStation.registerPeer(senderServer, senderPort);
+        try {
+            instance.setPlaceName(placeName);
+            Permission permission = lookupPermission(instance);
+            if (permission == null || !permission.isAllowed()) {
+
+                return new MigrationResult(MigrationResult.Status.NOT_ALLOWED, null);
+            }
+            writePackage(instance, packageName, packageData);
+            createAgent(instance, agentBytes, permission);
+        } catch (OperationException e) {
+            LOGGER.error(e);
+
+            return new MigrationResult(MigrationResult.Status.ERROR, e.getMessage());
+        }
+
+        return new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+    }
+
+    /**
+     * A request to migrate several agents to this Agent Station in one call.
+     * A package is only written once the first agent that needs it is allowed.
+     *
+     * @param instances the agent instance details
+     * @param agentBytes the agent objects as byte arrays, in the order of the
+     * instances
+     * @param packageNames the package names, in the order of the instances
+     * @param placeName the place name
+     * @param packageData the package data by package name, leaving out the
+     * packages that this station already has
+     * @param senderServer the server hosting the sending Agent Station
+     * @param senderPort the port that the sending Agent Station listens to
+     * @return the outcome of each migration, in the order of the instances
+     * @throws RemoteException a remote communication error occurred
+     */
+    @Override
+    public List<MigrationResult> migrateAgents(List<Instance> instances, List<byte[]> agentBytes, List<String> packageNames, String placeName, Map<String, byte[]> packageData, String senderServer, int senderPort) throws RemoteException {
+        List<MigrationResult> results = new ArrayList<>(instances.size());
+        Set<String> written = new HashSet<>();
+        for (int i = 0; i < instances.size(); i++) {
+            String packageName = packageNames.get(i);
+            byte[] data = written.contains(packageName) ? null : packageData.get(packageName);
+            MigrationResult result = migrateAgent(instances.get(i), agentBytes.get(i), packageName, placeName, data, senderServer, senderPort);
+            if (data != null && result.getStatus() != MigrationResult.Status.NOT_ALLOWED) {
+                written.add(packageName);
             }
+            results.add(result);
+        }
+
+        return results;
+    }
+
+    /**
+     * Drops any outcome of a permission check that this station cached, as the
+     * remote Agent Station changed that permission.
+     *
+     * @param agentName the agent name
+     * @param agentShortId the agent short id
+     * @param placeName the place name
+     * @throws RemoteException a remote communication error occurred
+     */
+    @Override
+    public void invalidatePermission(String agentName, String agentShortId, String placeName) throws RemoteException {
+        agentStation.invalidatePermission(new PermissionIdentity(agentName, agentShortId, placeName));
+    }
+
+    /**
+     * Checks whether this station already has an agent package.
+     *
+     * @param packageName the package name
+     * @param hashCode the package hash code
+     * @return true if the package does not need to be transferred
+     * @throws RemoteException a remote communication error occurred
+     */
+    @Override
+    public boolean hasPackage(String packageName, String hashCode) throws RemoteException {
+        return IOAccess.hasPackage(packageName, hashCode);
+    }
+
+    /**
+     * Tells the remote station that this station reads compressed agent state.
+     *
+     * @return true
+     * @throws RemoteException a remote communication error occurred
+     */
+    @Override
+    public boolean supportsCompression() throws RemoteException {
+        return true;
+    }
+
+    /**
+     * Tells the remote station that this station reads agents sent in the
+     * compact state format.
+     *
+     * @return true
+     * @throws RemoteException a remote communication error occurred
+     */
+    @Override
+    public boolean supportsStateCodec() throws RemoteException {
+        return true;
+    }
+
+    private void writePackage(Instance instance, String packageName, byte[] packageData) throws OperationException {
+        if (packageData != null) {
+            String packageLocation = IOAccess.APP_PACKAGE_FOLDER + File.separator + packageName;
+            IOAccess.writeToFile(packageLocation, packageData);
+        } else if (!IOAccess.hasPackage(packageName, instance.getIdentity().getHashCode())) {
+            throw new OperationException("The agent package is not available.");
+        }
+    }
+
+    private Permission lookupPermission(Instance instance) throws OperationException {
+
+        return agentRegistry.lookupPermission(new PermissionIdentity(instance.getIdentity().getName(), instance.getShortId(), instance.getPlaceName()));
+    }
+
+    private void createAgent(Instance instance, byte[] agentBytes, Permission permission) throws OperationException {
+        agentStation.createAgent(instance, agentBytes);
+        if (permission.isAutoStart()) {
+            agentStation.startAgent(instance);
         }
     }
 
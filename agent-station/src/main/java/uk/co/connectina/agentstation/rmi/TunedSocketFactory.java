@@ -0,0 +1,157 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.rmi;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Creates the sockets of the station remote objects with Nagle's algorithm
+ * turned off and larger buffers, so that the small request and answer
+ * messages of a call are not held back and large agent packages need fewer
+ * round trips. The streams may also be compressed, each write being flushed
+ * through the compressor so that a call is never left waiting for more data.
+ * <p>
+ * The client factory travels inside the remote object stubs, so a station
+ * looking up these objects uses the same settings without any configuration
+ * of its own.
+ *
+ * @author Dr Christos Bohoris
+ */
+public final class TunedSocketFactory implements RMIClientSocketFactory, RMIServerSocketFactory, Serializable {
+
+    private static final long serialVersionUID = 1L;
+    static final int BUFFER_SIZE = 256 * 1024;
+    private static final int STREAM_BUFFER_SIZE = 8192;
+    private final boolean compression;
+
+    /**
+     * Initiates a new object instance.
+     *
+     * @param compression whether the streams are compressed
+     */
+    public TunedSocketFactory(boolean compression) {
+        this.compression = compression;
+    }
+
+    @Override
+    public Socket createSocket(String host, int port) throws IOException {
+        Socket socket = compression ? new CompressedSocket() : new Socket();
+        // Buffer sizes are set before connecting so that the TCP window can be scaled
+        tune(socket);
+        socket.connect(new InetSocketAddress(host, port));
+
+        return socket;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException {
+        ServerSocket serverSocket = new TunedServerSocket(compression);
+        serverSocket.setReceiveBufferSize(BUFFER_SIZE);
+        serverSocket.bind(new InetSocketAddress(port));
+
+        return serverSocket;
+    }
+
+    public boolean isCompression() {
+        return compression;
+    }
+
+    @Override
+    public int hashCode() {
+        return Boolean.hashCode(compression);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (obj == null || getClass() != obj.getClass()) {
+            return false;
+        }
+
+        return compression == ((TunedSocketFactory) obj).compression;
+    }
+
+    private static void tune(Socket socket) throws SocketException {
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+        socket.setSendBufferSize(BUFFER_SIZE);
+        socket.setReceiveBufferSize(BUFFER_SIZE);
+    }
+
+    private static final class TunedServerSocket extends ServerSocket {
+
+        private final boolean compression;
+
+        TunedServerSocket(boolean compression) throws IOException {
+            super();
+            this.compression = compression;
+        }
+
+        @Override
+        public Socket accept() throws IOException {
+            Socket socket = compression ? new CompressedSocket() : new Socket();
+            implAccept(socket);
+            tune(socket);
+
+            return socket;
+        }
+
+    }
+
+    private static final class CompressedSocket extends Socket {
+
+        private InputStream input;
+        private OutputStream output;
+
+        @Override
+        public synchronized InputStream getInputStream() throws IOException {
+            if (input == null) {
+                input = new InflaterInputStream(super.getInputStream(), new Inflater(), STREAM_BUFFER_SIZE);
+            }
+
+            return input;
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException {
+            if (output == null) {
+                output = new DeflaterOutputStream(super.getOutputStream(), new Deflater(Deflater.BEST_SPEED), STREAM_BUFFER_SIZE, true);
+            }
+
+            return output;
+        }
+
+    }
+
+}
@@ -22,6 +22,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import uk.co.connectina.agentstation.api.Registry;
 import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.StationEvent;
 import uk.co.connectina.agentstation.api.StationListener;
 import uk.co.connectina.agentstation.api.Identity;
 import uk.co.connectina.agentstation.api.Instance;
@@ -81,6 +82,10 @@ public final class AgentStationCommand implements StationListener {
         } else if (processedName.startsWith("remove place")) {
             placesClient.removePlace(cmd);
 
+            return true;
+        } else if (processedName.startsWith("migrate place")) {
+            placesClient.migratePlace(cmd);
+
             return true;
         }
 
@@ -107,6 +112,10 @@ public final class AgentStationCommand implements StationListener {
         } else if (processedName.startsWith("remove agent")) {
             agentsClient.removeAgent(cmd);
 
+            return true;
+        } else if (processedName.startsWith("migrate agents")) {
+            agentsClient.migrateAgents(cmd);
+
             return true;
         }
 
@@ -151,7 +160,12 @@ public final class AgentStationCommand implements StationListener {
                     System.out.println(" 10. remove agent [agent list index]");
                     System.out.println(" 11. list permissions");
                     System.out.println(" 12. remove permission [permission list index]");
-                    System.out.println(" 13. quit");
+                    System.out.println(" 13. show statistics");
+                    System.out.println(" 14. migrate place [name] [server] [port] [remote place name]");
+                    System.out.println(" 15. migrate agents [agent list indexes, comma separated] [server] [port] [remote place name]");
+                    System.out.println(" 16. quit");
+                } else if (processedName.equals("show statistics")) {
+                    showStatistics();
                 } else if (!processedName.equals("quit")) {
                     LOGGER.error("Invalid command.");
                 }
@@ -162,6 +176,11 @@ public final class AgentStationCommand implements StationListener {
         thread.start();
     }
 
+    private void showStatistics() {
+        System.out.println("Statistics:");
+        agentStation.getStatistics().forEach((String name, String value) -> System.out.println(" " + name + ": " + value));
+    }
+
     private boolean processEntities(String processedName, String[] cmd) {
         boolean found = processPlace(processedName, cmd);
         if (!found) {
@@ -175,46 +194,44 @@ public final class AgentStationCommand implements StationListener {
     }
 
     @Override
-    public void notify(String operationName, Object... info) {
-        switch (operationName) {
-            case "agentLog" -> incomingAgentLog(info);
-            case "serverStart" -> incomingServerStart(info);
-            case "createPlace" -> incomingCreatePlace(info);
-            case "createAgent" -> incomingCreateAgent(info);
-            case "removeAgent" -> incomingRemoveAgent(info);
-            case "removePlace" -> incomingRemovePlace(info);
-            case "migrateAgent" -> incomingMigrateAgent(info);
-            case "start", "stop" -> incomingStartStop(info, operationName);
-            default -> LOGGER.error("{}: {} {}", "Agent Station", "Unknown operation name:", operationName);
+    public void notify(StationEvent event) {
+        switch (event.getType()) {
+            case AGENT_LOG -> incomingAgentLog(event);
+            case SERVER_START -> incomingServerStart(event);
+            case CREATE_PLACE -> incomingCreatePlace(event);
+            case CREATE_AGENT -> incomingCreateAgent(event);
+            case REMOVE_AGENT -> incomingRemoveAgent(event);
+            case REMOVE_PLACE -> incomingRemovePlace(event);
+            case MIGRATE_AGENT -> incomingMigrateAgent(event);
+            case AGENT_START, AGENT_STOP, AGENT_QUEUED -> incomingStartStop(event);
+            default -> LOGGER.error("{}: {} {}", "Agent Station", "Unknown operation name:", event.getType());
         }
     }
 
-    private void incomingStartStop(Object[] info, String operationName) {
-        Instance inst = (Instance) info[0];
-        if (operationName.equals("start")) {
+    private void incomingStartStop(StationEvent event) {
+        Instance inst = event.getInstance();
+        if (event.getType() == StationEvent.Type.AGENT_START) {
             LOGGER.info("{}: Agent successfully started", IOAccess.getPlainAboutAgent(inst));
-        } else if (operationName.equals("stop")) {
+        } else if (event.getType() == StationEvent.Type.AGENT_STOP) {
             LOGGER.info("{}: Agent successfully stopped", IOAccess.getPlainAboutAgent(inst));
+        } else if (event.getType() == StationEvent.Type.AGENT_QUEUED) {
+            LOGGER.info("{}: Agent queued until an active slot is free", IOAccess.getPlainAboutAgent(inst));
         }
     }
 
-    private void incomingMigrateAgent(Object[] info) {
-        Instance inst = (Instance) info[0];
-        String remoteServer = (String) info[1];
-        String remotePort = (String) info[2];
-        String remoteName = IOAccess.getServerAndPortText(remoteServer, Integer.valueOf(remotePort));
-        String msg = (String) info[3];
-        String dest = IOAccess.getServerAndPortText(remoteServer, Integer.valueOf(remotePort));
+    private void incomingMigrateAgent(StationEvent event) {
+        Instance inst = event.getInstance();
+        String remoteName = IOAccess.getServerAndPortText(event.getName(), event.getPort());
+        String dest = IOAccess.getServerAndPortText(event.getName(), event.getPort());
 
         String about = IOAccess.getPlainAboutAgent(inst);
-        switch (msg) {
-            case "noPermission" -> LOGGER.error("{}: No permission to migrate to {}", about, dest);
-            case "registryCommFailed" ->
+        switch (event.getMigrationOutcome()) {
+            case NO_PERMISSION -> LOGGER.error("{}: No permission to migrate to {}", about, dest);
+            case REGISTRY_COMM_FAILED ->
                     LOGGER.error("{}: Cannot migrate to {} as communication with remote registry failed", about, dest);
-            case "stationCommFailed" ->
+            case STATION_COMM_FAILED ->
                     LOGGER.error("{}: Cannot migrate to {} as communication with remote station failed", about, remoteName);
-            case "success" -> LOGGER.info("{}: Successfully migrated to {}", about, dest);
-            default -> LOGGER.error("{}: {} {}", about, "Unknown notification message:", msg);
+            case SUCCESS -> LOGGER.info("{}: Successfully migrated to {}", about, dest);
         }
     }
 
@@ -230,37 +247,37 @@ public final class AgentStationCommand implements StationListener {
         });
     }
 
-    private void incomingRemovePlace(Object[] info) {
-        String selectedPlaceName = (String) info[0];
+    private void incomingRemovePlace(StationEvent event) {
+        String selectedPlaceName = event.getName();
         LOGGER.info("{}: Successfully created", IOAccess.getAboutPlace(selectedPlaceName));
     }
 
-    private void incomingRemoveAgent(Object[] info) {
-        Instance inst = (Instance) info[0];
+    private void incomingRemoveAgent(StationEvent event) {
+        Instance inst = event.getInstance();
         LOGGER.info("{}: Successfully removed", IOAccess.getPlainAboutAgent(inst));
     }
 
-    private void incomingCreateAgent(Object[] info) {
-        Instance inst = (Instance) info[0];
+    private void incomingCreateAgent(StationEvent event) {
+        Instance inst = event.getInstance();
         LOGGER.info("{}: Agent successfully created", IOAccess.getPlainAboutAgent(inst));
     }
 
-    private void incomingCreatePlace(Object[] info) {
-        LOGGER.info("{}: Place successfully created", IOAccess.getAboutPlace((String) info[0]));
+    private void incomingCreatePlace(StationEvent event) {
+        LOGGER.info("{}: Place successfully created", IOAccess.getAboutPlace(event.getName()));
     }
 
-    private void incomingServerStart(Object[] info) {
-        if (info[0] != null) {
+    private void incomingServerStart(StationEvent event) {
+        if (event.getMessage() != null) {
 
             System.exit(1);
         }
     }
 
-    private void incomingAgentLog(Object[] info) {
-        Instance instance = (Instance) info[0];
+    private void incomingAgentLog(StationEvent event) {
+        Instance instance = event.getInstance();
         Identity id = instance.getIdentity();
-        LogType type = (LogType) info[1];
-        String text = (String) info[2];
+        LogType type = event.getLogType();
+        String text = event.getMessage();
         LOGGER.info("{} Id={} - {}: {}", id.getName(), instance.getShortId(), type, text);
     }
 
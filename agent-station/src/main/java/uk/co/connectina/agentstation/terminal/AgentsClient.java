@@ -22,6 +22,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
 import org.apache.logging.log4j.LogManager;
@@ -32,6 +33,7 @@ import uk.co.connectina.agentstation.api.Permission;
 import uk.co.connectina.agentstation.api.PermissionIdentity;
 import uk.co.connectina.agentstation.api.Registry;
 import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
 import uk.co.connectina.agentstation.api.client.OperationException;
 import uk.co.connectina.agentstation.local.IOAccess;
 
@@ -144,6 +146,54 @@ final class AgentsClient {
         }
     }
 
+    void migrateAgents(String[] cmd) {
+        if (cmd.length != 6) {
+
+            return;
+        }
+
+        List<Instance> agentInstances;
+        int port;
+        try {
+            agentInstances = registry.lookupAgents();
+            port = Integer.parseInt(cmd[4]);
+        } catch (OperationException | NumberFormatException e) {
+            LOGGER.error(e);
+
+            return;
+        }
+
+        List<Instance> selected = new ArrayList<>();
+        for (String item : cmd[2].split(",")) {
+            int index;
+            try {
+                index = Integer.parseInt(item.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.error(e);
+
+                return;
+            }
+            if (index < 1 || index > agentInstances.size()) {
+                LOGGER.error("Invalid agent list index");
+
+                return;
+            }
+            selected.add(agentInstances.get(index - 1));
+        }
+
+        migrate(station, selected, cmd[3], port, cmd[5]);
+    }
+
+    static void migrate(Station station, List<Instance> instances, String remoteServer, int port, String placeName) {
+        try {
+            List<MigrationResult> results = station.migrateAgents(instances, remoteServer, port, placeName);
+            long accepted = results.stream().filter(MigrationResult::isAccepted).count();
+            LOGGER.info("Migrated {} of {} agents to {}", accepted, results.size(), IOAccess.getServerAndPortText(remoteServer, port));
+        } catch (OperationException e) {
+            LOGGER.error(e);
+        }
+    }
+
     private Instance lookupAgent(String[] cmd) {
         if (cmd.length != 3) {
 
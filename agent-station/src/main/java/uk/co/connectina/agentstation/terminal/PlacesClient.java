@@ -65,6 +65,18 @@ final class PlacesClient {
         }
     }
     
+    void migratePlace(String[] cmd) {
+        if (cmd.length != 6) {
+            return;
+        }
+        
+        try {
+            AgentsClient.migrate(station, registry.lookupAgentsByPlaceName(cmd[2]), cmd[3], Integer.parseInt(cmd[4]), cmd[5]);
+        } catch (OperationException | NumberFormatException e) {
+            LOGGER.error(e);
+        }
+    }
+    
     void removePlace(String[] cmd) {
         if (cmd.length != 3) {
             return;
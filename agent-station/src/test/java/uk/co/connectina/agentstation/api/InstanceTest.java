@@ -18,6 +18,11 @@
  */
 package uk.co.connectina.agentstation.api;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.time.LocalDateTime;
 
 import org.junit.jupiter.api.Assertions;
@@ -137,6 +142,31 @@ class InstanceTest {
         Assertions.assertNotEquals(otherInstance, instance);
     }
 
+    @Test
+    void getKey() {
+        AgentKey key = instance.getKey();
+        Assertions.assertEquals("0575ed518768aeb0e8b341c0233679ed", key.getLongId());
+        Assertions.assertEquals("3679ed", key.getShortId());
+        Assertions.assertEquals(dateTime, key.getCreationDateTime());
+        Assertions.assertEquals(instance.hashCode(), key.hashCode());
+    }
+
+    @Test
+    void getKeyAfterDeserialization() throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bos)) {
+            out.writeObject(instance);
+        }
+        Instance copy;
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bos.toByteArray()))) {
+            copy = (Instance) in.readObject();
+        }
+
+        Assertions.assertEquals(instance.getKey(), copy.getKey());
+        Assertions.assertEquals(instance, copy);
+        Assertions.assertEquals(-1493800049, copy.hashCode());
+    }
+
     @Test
     void testToString() {
         Assertions.assertEquals("Instance{identity=Identity{name=TestAgent, organisation=connectina.co.uk, className=uk.co.connectina.test.TestAgent, hashCode=9f64b865ed237ab9905a4ce2ec99146b, packageFile=file:/home/christos/test-agent.jar, majorVersion=1, minorVersion=3, description=Test agent description}, fullId=0575ed518768aeb0e8b341c0233679ed, shortId=3679ed, creation=2022-05-21T17:25:31, placeName=Test, state=INACTIVE}", instance.toString());
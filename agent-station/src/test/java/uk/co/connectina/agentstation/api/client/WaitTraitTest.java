@@ -0,0 +1,100 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.api.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the WaitTrait class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class WaitTraitTest {
+
+    @Test
+    void waitingEndsWhenStopped() throws InterruptedException {
+        WaitTrait waitTrait = new WaitTrait();
+        Thread thread = startWaiting(waitTrait);
+
+        waitTrait.stopWaiting();
+
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void waitingContinuesAfterSpuriousUnpark() throws InterruptedException {
+        WaitTrait waitTrait = new WaitTrait();
+        Thread thread = startWaiting(waitTrait);
+
+        LockSupport.unpark(thread);
+        Thread.sleep(50);
+        awaitParked(waitTrait, thread);
+        Assertions.assertTrue(thread.isAlive());
+
+        waitTrait.stopWaiting();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void waitingEndsWhenInterrupted() throws InterruptedException {
+        WaitTrait waitTrait = new WaitTrait();
+        Thread thread = startWaiting(waitTrait);
+
+        thread.interrupt();
+
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(thread.isAlive());
+    }
+
+    @Test
+    void stopBeforeWaitingDoesNotBlock() throws InterruptedException {
+        WaitTrait waitTrait = new WaitTrait();
+        waitTrait.stopWaiting();
+
+        Thread thread = new Thread(waitTrait::waiting);
+        thread.start();
+
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(thread.isAlive());
+    }
+
+    private Thread startWaiting(WaitTrait waitTrait) throws InterruptedException {
+        Thread thread = new Thread(waitTrait::waiting);
+        thread.start();
+        awaitParked(waitTrait, thread);
+
+        return thread;
+    }
+
+    private void awaitParked(WaitTrait waitTrait, Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(Thread.State.WAITING, thread.getState());
+        Assertions.assertSame(waitTrait, LockSupport.getBlocker(thread));
+    }
+
+}
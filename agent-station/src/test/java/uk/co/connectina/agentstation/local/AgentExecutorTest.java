@@ -0,0 +1,244 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.AgentListener;
+import uk.co.connectina.agentstation.api.AgentRunnable;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.client.Agent;
+import uk.co.connectina.agentstation.api.client.AgentInstance;
+import uk.co.connectina.agentstation.api.client.Assistant;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the AgentExecutor class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentExecutorTest {
+
+    private static class BlockingAgent implements Agent {
+
+        private final transient CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void start(Assistant stationAssistant, AgentInstance agentInstance) {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void stop() {
+            release.countDown();
+        }
+
+    }
+
+    private StationInfo stationInfo;
+
+    @BeforeEach
+    void setUp() {
+        stationInfo = new StationInfo("localhost", "TUI", RemoteSupport.RMI, "Test", 1099);
+        stationInfo.setMaxActive(1);
+        stationInfo.setStartQueue(1);
+    }
+
+    @Test
+    void startQueuesWhenNoSlotIsFree() throws OperationException {
+        AgentExecutor executor = new AgentExecutor(stationInfo);
+        AgentRunnable first = createAgent(executor, 1);
+        AgentRunnable second = createAgent(executor, 2);
+
+        executor.start(first);
+        executor.start(second);
+
+        Assertions.assertEquals(Instance.State.ACTIVE, first.getInstance().getState());
+        Assertions.assertEquals(Instance.State.QUEUED, second.getInstance().getState());
+        Assertions.assertEquals(1, executor.getQueueDepth());
+        second.stop();
+        first.stop();
+    }
+
+    @Test
+    void queuedAgentStartsWhenSlotIsReleased() throws OperationException, InterruptedException {
+        AgentExecutor executor = new AgentExecutor(stationInfo);
+        AgentRunnable first = createAgent(executor, 1);
+        AgentRunnable second = createAgent(executor, 2);
+
+        executor.start(first);
+        executor.start(second);
+        first.stop();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!second.isActive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertTrue(second.isActive());
+        Assertions.assertEquals(0, executor.getQueueDepth());
+        second.stop();
+    }
+
+    @Test
+    void startFailsWhenQueueIsFull() throws OperationException {
+        AgentExecutor executor = new AgentExecutor(stationInfo);
+        AgentRunnable first = createAgent(executor, 1);
+        AgentRunnable second = createAgent(executor, 2);
+        AgentRunnable third = createAgent(executor, 3);
+
+        executor.start(first);
+        executor.start(second);
+
+        Assertions.assertThrows(OperationException.class, () -> executor.start(third));
+        Assertions.assertEquals(Instance.State.INACTIVE, third.getInstance().getState());
+        Map<String, String> statistics = new LinkedHashMap<>();
+        executor.collectStatistics(statistics);
+        Assertions.assertEquals("1", statistics.get("Rejected Starts"));
+        second.stop();
+        first.stop();
+    }
+
+    @Test
+    void startDiscardsOldestWhenQueueIsFull() throws OperationException {
+        stationInfo.setRejection(RejectionSupport.DISCARD_OLDEST);
+        AgentExecutor executor = new AgentExecutor(stationInfo);
+        AgentRunnable first = createAgent(executor, 1);
+        AgentRunnable second = createAgent(executor, 2);
+        AgentRunnable third = createAgent(executor, 3);
+
+        executor.start(first);
+        executor.start(second);
+        executor.start(third);
+
+        Assertions.assertEquals(Instance.State.INACTIVE, second.getInstance().getState());
+        Assertions.assertEquals(Instance.State.QUEUED, third.getInstance().getState());
+        Assertions.assertEquals(1, executor.getQueueDepth());
+        third.stop();
+        first.stop();
+    }
+
+    @Test
+    void dequeuedStartIsReported() throws OperationException, InterruptedException {
+        List<AgentRunnable> dequeued = new CopyOnWriteArrayList<>();
+        AgentExecutor executor = new AgentExecutor(stationInfo, new AgentThreadFactory(ThreadSupport.PLATFORM), dequeued::add);
+        AgentRunnable first = createAgent(executor, 1);
+        AgentRunnable second = createAgent(executor, 2);
+
+        executor.start(first);
+        executor.start(second);
+        Assertions.assertTrue(dequeued.isEmpty());
+        first.stop();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dequeued.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals(List.of(second), dequeued);
+        Assertions.assertEquals(Instance.State.ACTIVE, dequeued.get(0).getInstance().getState());
+        second.stop();
+    }
+
+    @Test
+    void agentCallbacksRunOutsideExecutorLock() throws OperationException {
+        stationInfo.setRejection(RejectionSupport.DISCARD_OLDEST);
+        AgentExecutor executor = new AgentExecutor(stationInfo);
+        List<String> locked = new CopyOnWriteArrayList<>();
+        AgentListener listener = (instance, notificationName, info) -> {
+            if (Thread.holdsLock(executor)) {
+                locked.add(notificationName);
+            }
+        };
+        AgentRunnable first = createAgent(executor, 1, listener);
+        AgentRunnable second = createAgent(executor, 2, listener);
+        AgentRunnable third = createAgent(executor, 3, listener);
+
+        executor.start(first);
+        executor.start(second);
+        executor.start(third);
+
+        Assertions.assertEquals(Instance.State.INACTIVE, second.getInstance().getState());
+        Assertions.assertEquals(List.of(), locked);
+        third.stop();
+        first.stop();
+    }
+
+    @Test
+    void failedThreadStartFreesSlot() throws OperationException {
+        AgentThreadFactory failing = new AgentThreadFactory(ThreadSupport.VIRTUAL, runnable -> {
+            throw new IllegalStateException("No threads left");
+        });
+        AgentExecutor executor = new AgentExecutor(stationInfo, failing, agent -> { });
+        AgentRunnable first = createAgent(executor, 1);
+        AgentRunnable second = createAgent(executor, 2);
+
+        Assertions.assertThrows(IllegalStateException.class, () -> executor.start(first));
+        Assertions.assertEquals(Instance.State.INACTIVE, first.getInstance().getState());
+        Assertions.assertThrows(IllegalStateException.class, () -> executor.start(second));
+        Assertions.assertEquals(0, executor.getQueueDepth());
+
+        Map<String, String> statistics = new LinkedHashMap<>();
+        executor.collectStatistics(statistics);
+        Assertions.assertEquals("0", statistics.get("Active Agents"));
+    }
+
+    @Test
+    void agentThreadIsNamedAfterAgent() throws OperationException, InterruptedException {
+        AgentExecutor executor = new AgentExecutor(stationInfo);
+        AgentRunnable agent = createAgent(executor, 1);
+
+        executor.start(agent);
+
+        Thread thread = findThread(agent.getThreadName());
+        Assertions.assertNotNull(thread);
+        agent.stop();
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        Assertions.assertFalse(thread.isAlive());
+    }
+
+    private Thread findThread(String name) {
+        return Thread.getAllStackTraces().keySet().stream().filter(thread -> name.equals(thread.getName())).findFirst().orElse(null);
+    }
+
+    private AgentRunnable createAgent(AgentExecutor executor, int number) {
+
+        return createAgent(executor, number, null);
+    }
+
+    private AgentRunnable createAgent(AgentExecutor executor, int number, AgentListener listener) {
+        Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent" + number, "connectina.co.uk").description("Test agent").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile("file:/home/user/test-agent.jar").version(1, 0).build();
+        AgentRunnable agent = new AgentRunnable(null, new Instance(identity, LocalDateTime.now(), "Default"), new BlockingAgent(), listener);
+        agent.setExecutor(executor);
+
+        return agent;
+    }
+
+}
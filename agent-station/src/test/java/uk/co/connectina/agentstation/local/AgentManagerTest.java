@@ -0,0 +1,165 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import uk.co.connectina.agentstation.api.AgentRunnable;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.StationAssistant;
+import uk.co.connectina.agentstation.api.client.Agent;
+
+/**
+ * Tests for the AgentManager class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentManagerTest {
+
+    // Compiled into its own package folder so that only an agent class loader can load it
+    private static final String LATE_AGENT_SOURCE = """
+            package late;
+
+            import java.util.concurrent.CountDownLatch;
+            import uk.co.connectina.agentstation.api.client.Agent;
+            import uk.co.connectina.agentstation.api.client.AgentInstance;
+            import uk.co.connectina.agentstation.api.client.Assistant;
+
+            public class LateAgent implements Agent {
+
+                public static final CountDownLatch STARTED = new CountDownLatch(1);
+                public static final CountDownLatch REMOVED = new CountDownLatch(1);
+                public static final CountDownLatch DONE = new CountDownLatch(1);
+                public static volatile String result;
+
+                @Override
+                public void start(Assistant stationAssistant, AgentInstance agentInstance) {
+                    try {
+                        STARTED.countDown();
+                        REMOVED.await();
+                        result = new Helper().toString();
+                    } catch (Throwable e) {
+                        result = e.toString();
+                    } finally {
+                        DONE.countDown();
+                    }
+                }
+
+                @Override
+                public void stop() {
+                    // Keeps running, like an agent that has just migrated itself
+                }
+
+            }
+
+            class Helper {
+
+                @Override
+                public String toString() {
+                    return "loaded";
+                }
+
+            }
+            """;
+    @TempDir
+    Path packageFolder;
+    private Registry registryMock;
+    private PlaceManager placeManagerMock;
+    private AgentManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Station stationMock = Mockito.mock(Station.class);
+        registryMock = Mockito.mock(Registry.class);
+        placeManagerMock = Mockito.mock(PlaceManager.class);
+        Mockito.when(placeManagerMock.placeExists(ArgumentMatchers.anyString())).thenReturn(true);
+        StationInfo stationInfo = new StationInfo("localhost", "TUI", RemoteSupport.RMI, "Test", 1099);
+        manager = new AgentManager(stationInfo, stationMock, registryMock, placeManagerMock, new StationEventBus(),
+                new StationAssistant(stationMock), null);
+    }
+
+    @Test
+    void removedAgentKeepsLoadingClassesUntilItsThreadEnds() throws Exception {
+        Instance instance = createLateAgentInstance();
+        manager.createVerifiedAgent(instance, null, packageFolder.toUri().toURL().toString());
+        AgentRunnable agent = manager.getAgent(instance);
+        Class<?> agentClass = agent.getAgent().getClass();
+        manager.startAgent(instance);
+        Assertions.assertTrue(latch(agentClass, "STARTED").await(5, TimeUnit.SECONDS));
+
+        // As when a migration is accepted, the agent is removed while its thread still runs
+        manager.removeAgent(instance);
+        latch(agentClass, "REMOVED").countDown();
+
+        Assertions.assertTrue(latch(agentClass, "DONE").await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("loaded", agentClass.getField("result").get(null));
+        // The package loader is closed once the thread has ended
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!"0".equals(statistics().get("Package Class Loaders")) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assertions.assertEquals("0", statistics().get("Package Class Loaders"));
+    }
+
+    private Instance createLateAgentInstance() throws IOException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assumptions.assumeTrue(compiler != null, "A Java compiler is needed to build the test agent package");
+        Path source = packageFolder.resolve("src/late/LateAgent.java");
+        Files.createDirectories(source.getParent());
+        Files.writeString(source, LATE_AGENT_SOURCE);
+        String classPath = Path.of(Agent.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toString();
+        Assertions.assertEquals(0, compiler.run(null, null, null, "-cp", classPath, "-d", packageFolder.toString(),
+                source.toString()));
+
+        Identity identity = new Identity.IdentityBuilder("late.LateAgent", "connectina.co.uk")
+                .hashCode("0123456789abcdef0123456789abcdef").version(1, 0).build();
+
+        return new Instance(identity, LocalDateTime.now(), "Default");
+    }
+
+    private Map<String, String> statistics() {
+        Map<String, String> statistics = new HashMap<>();
+        manager.collectStatistics(statistics);
+
+        return statistics;
+    }
+
+    private static CountDownLatch latch(Class<?> agentClass, String name) throws ReflectiveOperationException {
+        return (CountDownLatch) agentClass.getField(name).get(null);
+    }
+
+}
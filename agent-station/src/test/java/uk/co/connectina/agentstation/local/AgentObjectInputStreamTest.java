@@ -0,0 +1,93 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the AgentObjectInputStream class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentObjectInputStreamTest {
+
+    static class Item implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final int value;
+
+        Item(int value) {
+            this.value = value;
+        }
+
+    }
+
+    static class Payload implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+        private final List<Item> items = new ArrayList<>();
+
+    }
+
+    @TempDir
+    Path packageFolder;
+
+    @Test
+    void readAgentObjectResolvesEachClassOnce() throws IOException, ClassNotFoundException, OperationException {
+        Payload payload = new Payload();
+        for (int i = 0; i < 10; i++) {
+            payload.items.add(new Item(i));
+        }
+        byte[] bytes = IOAccess.toByteArray(new Payload[] { payload, new Payload() });
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { packageFolder.toUri().toURL() }, getClass().getClassLoader());
+                AgentObjectInputStream input = new AgentObjectInputStream(new ByteArrayInputStream(bytes), classLoader)) {
+            Payload[] read = (Payload[]) input.readAgentObject();
+
+            Assertions.assertEquals(9, read[0].items.get(9).value);
+            // Every class descriptor in the stream is resolved once, however often its class occurs
+            Assertions.assertEquals(input.getResolvedClassCount(), input.getResolveCount());
+        }
+    }
+
+    @Test
+    void readAgentObjectRestoresContextClassLoader() throws IOException, ClassNotFoundException, OperationException {
+        byte[] bytes = IOAccess.toByteArray(new Item(1));
+        ClassLoader previous = Thread.currentThread().getContextClassLoader();
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { packageFolder.toUri().toURL() }, getClass().getClassLoader());
+                AgentObjectInputStream input = new AgentObjectInputStream(new ByteArrayInputStream(bytes), classLoader)) {
+            input.readAgentObject();
+        }
+
+        Assertions.assertSame(previous, Thread.currentThread().getContextClassLoader());
+    }
+
+}
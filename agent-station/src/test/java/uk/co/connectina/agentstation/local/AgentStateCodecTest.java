@@ -0,0 +1,155 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.AgentRunnable;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.client.Agent;
+import uk.co.connectina.agentstation.api.client.AgentInstance;
+import uk.co.connectina.agentstation.api.client.Assistant;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.client.StateCodec;
+
+/**
+ * Tests for the AgentStateCodec class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentStateCodecTest {
+
+    private AgentStateCodec codec;
+
+    static class CounterAgent implements Agent, StateCodec {
+
+        private int count;
+        private String note;
+
+        public CounterAgent() {
+
+        }
+
+        @Override
+        public void start(Assistant stationAssistant, AgentInstance agentInstance) {
+            count++;
+        }
+
+        @Override
+        public void stop() {
+            // Nothing to stop
+        }
+
+        @Override
+        public void writeState(DataOutput output) throws IOException {
+            output.writeInt(count);
+            output.writeUTF(note);
+        }
+
+        @Override
+        public void readState(DataInput input) throws IOException {
+            count = input.readInt();
+            note = input.readUTF();
+        }
+
+    }
+
+    static class PlainAgent implements Agent {
+
+        private int count;
+
+        @Override
+        public void start(Assistant stationAssistant, AgentInstance agentInstance) {
+            count++;
+        }
+
+        @Override
+        public void stop() {
+            // Nothing to stop
+        }
+
+    }
+
+    @BeforeEach
+    void setUp() {
+        codec = new AgentStateCodec();
+    }
+
+    @Test
+    void decodeRestoresAgentState() throws OperationException {
+        CounterAgent agent = new CounterAgent();
+        agent.count = 3;
+        agent.note = "three";
+        AgentRunnable decoded = codec.decode(codec.encode(new AgentRunnable(null, createInstance(CounterAgent.class), agent, null)), getClass().getClassLoader());
+
+        CounterAgent restored = (CounterAgent) decoded.getAgent();
+        Assertions.assertEquals(3, restored.count);
+        Assertions.assertEquals("three", restored.note);
+    }
+
+    @Test
+    void decodeRestoresSerializedAgent() throws OperationException {
+        PlainAgent agent = new PlainAgent();
+        agent.count = 5;
+        byte[] data = codec.encode(new AgentRunnable(null, createInstance(PlainAgent.class), agent, null));
+
+        Assertions.assertTrue(AgentStateCodec.isEncoded(data));
+        Assertions.assertEquals(5, ((PlainAgent) codec.decode(data, getClass().getClassLoader()).getAgent()).count);
+    }
+
+    @Test
+    void decodeRestoresInstance() throws OperationException {
+        Instance instance = createInstance(CounterAgent.class);
+        instance.setHomeLocation("home", 1099, "Home");
+        instance.setLastRemoteLocation("remote", 1100, "Away");
+        CounterAgent agent = new CounterAgent();
+        agent.note = "";
+        Instance restored = codec.decode(codec.encode(new AgentRunnable(null, instance, agent, null)), getClass().getClassLoader()).getInstance();
+
+        Assertions.assertEquals(instance, restored);
+        Assertions.assertEquals("home", restored.getHomeServer());
+        Assertions.assertEquals(1099, restored.getHomePort());
+        Assertions.assertEquals("Home", restored.getHomePlace());
+        Assertions.assertEquals("remote", restored.getLastRemoteServer());
+        Assertions.assertEquals(1100, restored.getLastRemotePort());
+        Assertions.assertEquals("Away", restored.getLastRemotePlace());
+        Assertions.assertArrayEquals(new String[]{"a", "b"}, restored.getParameters());
+    }
+
+    @Test
+    void encodeLegacyWritesWholeAgent() throws OperationException {
+        byte[] data = codec.encodeLegacy(new AgentRunnable(null, createInstance(PlainAgent.class), new PlainAgent(), null));
+
+        Assertions.assertFalse(AgentStateCodec.isEncoded(data));
+        Assertions.assertInstanceOf(AgentRunnable.class, IOAccess.toObject(data, getClass().getClassLoader()));
+    }
+
+    private static Instance createInstance(Class<?> agentClass) {
+        Identity identity = new Identity.IdentityBuilder(agentClass.getName(), "connectina.co.uk").description("Test agent").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile("file:/home/user/test-agent.jar").version(1, 0).build();
+
+        return new Instance(identity, LocalDateTime.now(), "Default", "a", "b");
+    }
+
+}
@@ -49,7 +49,7 @@ class AgentStationTest {
         registryMock = Mockito.mock(AgentRegistry.class);
         stationSpy = Mockito.spy(AgentStation.class);
         stationSpy.setSupport(registryMock, Mockito.mock(AgentManager.class), Mockito.mock(PlaceManager.class));
-        Mockito.doNothing().when(stationSpy).notifyStationListeners(Mockito.anyString(), Mockito.any());
+        Mockito.doNothing().when(stationSpy).notifyStationListeners(Mockito.any());
     }
 
     @Test
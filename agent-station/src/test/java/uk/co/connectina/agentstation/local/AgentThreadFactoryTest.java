@@ -0,0 +1,75 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.concurrent.ThreadFactory;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the AgentThreadFactory class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentThreadFactoryTest {
+
+    @Test
+    void virtualFactoryIsAbsentWithoutOfVirtual() {
+        Assertions.assertNull(AgentThreadFactory.getVirtualFactory(Object.class));
+    }
+
+    @Test
+    void virtualFallsBackToPlatformThreads() {
+        AgentThreadFactory factory = new AgentThreadFactory(ThreadSupport.VIRTUAL, null);
+
+        Thread thread = factory.newThread(() -> { });
+
+        Assertions.assertEquals(ThreadSupport.PLATFORM, factory.getThreads());
+        Assertions.assertEquals(Thread.class, thread.getClass());
+    }
+
+    @Test
+    void virtualUsesVirtualFactory() {
+        Thread virtual = new Thread(() -> { });
+        ThreadFactory virtualFactory = runnable -> virtual;
+        AgentThreadFactory factory = new AgentThreadFactory(ThreadSupport.VIRTUAL, virtualFactory);
+
+        Assertions.assertEquals(ThreadSupport.VIRTUAL, factory.getThreads());
+        Assertions.assertSame(virtual, factory.newThread(() -> { }));
+    }
+
+    @Test
+    void platformIgnoresVirtualFactory() {
+        Thread virtual = new Thread(() -> { });
+        AgentThreadFactory factory = new AgentThreadFactory(ThreadSupport.PLATFORM, runnable -> virtual);
+
+        Assertions.assertEquals(ThreadSupport.PLATFORM, factory.getThreads());
+        Assertions.assertNotSame(virtual, factory.newThread(() -> { }));
+    }
+
+    @Test
+    void threadsMatchRuntime() {
+        boolean available = AgentThreadFactory.getVirtualFactory(Thread.class) != null;
+        AgentThreadFactory factory = new AgentThreadFactory(ThreadSupport.VIRTUAL);
+
+        Assertions.assertEquals(available ? ThreadSupport.VIRTUAL : ThreadSupport.PLATFORM, factory.getThreads());
+    }
+
+}
@@ -0,0 +1,185 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import com.google.protobuf.ByteString;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.grpc.AgentTransferHeader;
+import uk.co.connectina.agentstation.api.grpc.RemoteStationGrpc;
+import uk.co.connectina.agentstation.grpc.MapUtility;
+import uk.co.connectina.agentstation.grpc.RemoteStationServer;
+
+/**
+ * Tests for the AgentTransferSender class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class AgentTransferSenderTest {
+
+    @TempDir
+    Path folder;
+    private Station stationMock;
+    private Registry registryMock;
+    private Server server;
+    private ManagedChannel channel;
+    private Path jar;
+    private String packageName;
+
+    @BeforeEach
+    void setUp() throws IOException, OperationException {
+        Files.createDirectories(IOAccess.APP_PACKAGE_FOLDER.toPath());
+        stationMock = Mockito.mock(Station.class);
+        registryMock = Mockito.mock(Registry.class);
+        Mockito.when(registryMock.lookupPermission(ArgumentMatchers.any())).thenReturn(new Permission("Test", "", "Default", true, false));
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name).directExecutor().addService(new RemoteStationServer(stationMock, registryMock)).build().start();
+        channel = InProcessChannelBuilder.forName(name).directExecutor().build();
+
+        // A package spanning several chunks
+        byte[] data = new byte[AgentTransferSender.CHUNK_SIZE * 3 + 100];
+        new Random(1).nextBytes(data);
+        packageName = "transfer-test-" + UUID.randomUUID() + ".jar";
+        jar = Files.write(folder.resolve(packageName), data);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        channel.shutdownNow();
+        server.shutdownNow();
+        Files.deleteIfExists(new File(IOAccess.APP_PACKAGE_FOLDER, packageName).toPath());
+    }
+
+    @Test
+    void sendStreamsPackage() throws IOException, OperationException {
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(channel).migrateAgent(sender);
+
+        Assertions.assertEquals(MigrationResult.Status.ACCEPTED, sender.send(createHeader(DigestUtils.md5Hex(Files.readAllBytes(jar))), jar).getStatus());
+
+        Assertions.assertArrayEquals(Files.readAllBytes(jar), Files.readAllBytes(new File(IOAccess.APP_PACKAGE_FOLDER, packageName).toPath()));
+        Mockito.verify(stationMock).createAgent(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void sendRejectsMismatchedPackage() throws IOException, OperationException {
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(channel).migrateAgent(sender);
+        AgentTransferHeader header = createHeader("9f64b865ed237ab9905a4ce2ec99146b");
+
+        Assertions.assertEquals(MigrationResult.Status.ERROR, sender.send(header, jar).getStatus());
+
+        Assertions.assertFalse(new File(IOAccess.APP_PACKAGE_FOLDER, packageName).exists());
+        Mockito.verify(stationMock, Mockito.never()).createAgent(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void hasPackageReportsUnavailableStation() {
+        channel.shutdownNow();
+        RemoteStationGrpc.RemoteStationBlockingStub remoteStation = RemoteStationGrpc.newBlockingStub(channel);
+
+        // Only a station that predates the package check is sent the package regardless
+        Assertions.assertThrows(StatusRuntimeException.class, () -> GRPCUtility.hasPackageWithGRPC(packageName, "hash", remoteStation));
+    }
+
+    @Test
+    void sendSkipsPackageAlreadyAvailable() throws IOException, OperationException {
+        String hashCode = DigestUtils.md5Hex(Files.readAllBytes(jar));
+        RemoteStationGrpc.RemoteStationBlockingStub remoteStation = RemoteStationGrpc.newBlockingStub(channel);
+        Assertions.assertFalse(GRPCUtility.hasPackageWithGRPC(packageName, hashCode, remoteStation));
+        Files.copy(jar, new File(IOAccess.APP_PACKAGE_FOLDER, packageName).toPath());
+        Assertions.assertTrue(GRPCUtility.hasPackageWithGRPC(packageName, hashCode, remoteStation));
+
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(channel).migrateAgent(sender);
+
+        Assertions.assertEquals(MigrationResult.Status.ACCEPTED, sender.send(createHeader(hashCode).toBuilder().setPackageSize(0).setPackageSkipped(true).build(), null).getStatus());
+        Mockito.verify(stationMock).createAgent(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void sendStopsWhenNotAllowed() throws IOException, OperationException {
+        Mockito.when(registryMock.lookupPermission(ArgumentMatchers.any())).thenReturn(new Permission("Test", "", "Default", false, false));
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(channel).migrateAgent(sender);
+
+        Assertions.assertEquals(MigrationResult.Status.NOT_ALLOWED, sender.send(createHeader(DigestUtils.md5Hex(Files.readAllBytes(jar))), jar).getStatus());
+
+        Assertions.assertFalse(new File(IOAccess.APP_PACKAGE_FOLDER, packageName).exists());
+        Mockito.verify(stationMock, Mockito.never()).createAgent(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    @Test
+    void sendBatchSharesPackage() throws IOException, OperationException {
+        Permission allowed = new Permission("Test", "", "Default", true, false);
+        Mockito.when(registryMock.lookupPermission(ArgumentMatchers.any())).thenReturn(new Permission("Test", "", "Default", false, false), allowed, allowed);
+        AgentTransferHeader first = createHeader(DigestUtils.md5Hex(Files.readAllBytes(jar)));
+        AgentTransferHeader following = first.toBuilder().setPackageSize(0).setPackageSkipped(true).build();
+        AgentTransferSender sender = new AgentTransferSender();
+        RemoteStationGrpc.newStub(channel).migrateAgents(sender);
+
+        List<MigrationResult> results = sender.send(List.of(first, following, following), Arrays.asList(jar, null, null));
+
+        // The package travels with the rejected first agent and is kept for the others
+        Assertions.assertEquals(List.of(MigrationResult.Status.NOT_ALLOWED, MigrationResult.Status.ACCEPTED, MigrationResult.Status.ACCEPTED),
+                results.stream().map(MigrationResult::getStatus).toList());
+        Assertions.assertArrayEquals(Files.readAllBytes(jar), Files.readAllBytes(new File(IOAccess.APP_PACKAGE_FOLDER, packageName).toPath()));
+        Mockito.verify(stationMock, Mockito.times(2)).createAgent(ArgumentMatchers.any(), ArgumentMatchers.any());
+    }
+
+    private AgentTransferHeader createHeader(String hashCode) throws IOException {
+        Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent", "connectina.co.uk").description("Test agent").hashCode(hashCode).packageFile(jar.toUri().toURL().toString()).version(1, 0).build();
+        Instance instance = new Instance(identity, LocalDateTime.now(), "Default");
+
+        return AgentTransferHeader.newBuilder().setInstance(MapUtility.toInstanceType(instance))
+                .setAgentBytes(ByteString.copyFrom(new byte[] { 1, 2, 3 }))
+                .setPackageName(packageName)
+                .setPlaceName("Default")
+                .setPackageSize(Files.size(jar)).build();
+    }
+
+}
@@ -0,0 +1,153 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.PermissionIdentity;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the CachingRegistry class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class CachingRegistryTest {
+
+    private Registry registryMock;
+    private CachingRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        registryMock = Mockito.mock(Registry.class);
+        registry = new CachingRegistry(registryMock);
+    }
+
+    @Test
+    void lookupPermissionIsReadOnce() throws OperationException {
+        PermissionIdentity identity = new PermissionIdentity("Agent", "abc", "Place");
+        Mockito.when(registryMock.lookupPermission(identity)).thenReturn(new Permission("Agent", "abc", "Place", true, false));
+
+        Assertions.assertTrue(registry.lookupPermission(identity).isAllowed());
+        Permission cached = registry.lookupPermission(identity);
+        cached.setAllowed(false);
+
+        // Callers get copies, so changing one does not change the cache
+        Assertions.assertTrue(registry.lookupPermission(identity).isAllowed());
+        Mockito.verify(registryMock, Mockito.times(1)).lookupPermission(identity);
+        Assertions.assertEquals(2.0 / 3, registry.hitRate(CachingRegistry.Area.PERMISSIONS), 0.001);
+    }
+
+    @Test
+    void permissionChangesWriteThrough() throws OperationException {
+        PermissionIdentity identity = new PermissionIdentity("Agent", "abc", "Place");
+
+        Assertions.assertNull(registry.lookupPermission(identity));
+        registry.registerPermission(new Permission("Agent", "abc", "Place", true, true));
+        Assertions.assertTrue(registry.lookupPermission(identity).isAutoStart());
+        registry.deregisterPermission(identity);
+        Assertions.assertNull(registry.lookupPermission(identity));
+
+        Mockito.verify(registryMock, Mockito.times(1)).lookupPermission(identity);
+        Mockito.verify(registryMock).registerPermission(Mockito.any());
+        Mockito.verify(registryMock).deregisterPermission(identity);
+    }
+
+    @Test
+    void missedPermissionsAreBounded() throws OperationException {
+        PermissionIdentity first = new PermissionIdentity("Agent", "0", "Place");
+        registry.lookupPermission(first);
+        registry.lookupPermission(first);
+        for (int i = 1; i <= CachingRegistry.MAX_MISSING_PERMISSIONS; i++) {
+            registry.lookupPermission(new PermissionIdentity("Agent", Integer.toString(i), "Place"));
+        }
+
+        // The oldest miss was dropped, so it is read from the registry again
+        Assertions.assertNull(registry.lookupPermission(first));
+        Mockito.verify(registryMock, Mockito.times(2)).lookupPermission(first);
+    }
+
+    @Test
+    void placesFollowRegistrations() throws OperationException {
+        Mockito.when(registryMock.lookupPlaces()).thenReturn(List.of("Default"));
+
+        Assertions.assertEquals(List.of("Default"), registry.lookupPlaces());
+        registry.registerPlace("Other");
+        Assertions.assertEquals(List.of("Default", "Other"), registry.lookupPlaces());
+        registry.deregisterPlace("Default");
+        Assertions.assertEquals(List.of("Other"), registry.lookupPlaces());
+
+        Mockito.verify(registryMock, Mockito.times(1)).lookupPlaces();
+    }
+
+    @Test
+    void failedWriteLeavesCacheUnchanged() throws OperationException {
+        Mockito.when(registryMock.lookupPlaces()).thenReturn(List.of("Default"));
+        Mockito.doThrow(new OperationException("A place with this name already exists.")).when(registryMock).registerPlace("Default");
+
+        registry.lookupPlaces();
+        Assertions.assertThrows(OperationException.class, () -> registry.registerPlace("Default"));
+        Assertions.assertEquals(List.of("Default"), registry.lookupPlaces());
+    }
+
+    @Test
+    void agentSidAndScheduleAreCached() throws OperationException {
+        Instance instance = createInstance();
+        instance.setSid(7);
+        Mockito.when(registryMock.lookupAgents()).thenReturn(List.of(instance));
+        Schedule schedule = new Schedule(7, "2031-12-30", "17:25", Schedule.RepeatType.DAILY, 1, 2);
+        Mockito.when(registryMock.lookupScheduleByAgentSid(7)).thenReturn(schedule);
+
+        registry.lookupAgents();
+        Assertions.assertEquals(7, registry.lookupAgentSid(instance));
+        Assertions.assertTrue(registry.agentExists(instance));
+        Assertions.assertEquals(schedule, registry.lookupScheduleByAgentSid(7));
+        Assertions.assertTrue(registry.scheduleExists(7));
+        registry.deregisterSchedule(7);
+        Assertions.assertNull(registry.lookupScheduleByAgentSid(7));
+        registry.deregisterAgent(instance);
+        Assertions.assertFalse(registry.agentExists(instance));
+
+        Mockito.verify(registryMock, Mockito.never()).lookupAgentSid(instance);
+        Mockito.verify(registryMock, Mockito.times(1)).agentExists(instance);
+        Mockito.verify(registryMock, Mockito.times(1)).lookupScheduleByAgentSid(7);
+        Map<String, String> statistics = new HashMap<>();
+        registry.collectStatistics(statistics);
+        Assertions.assertEquals("2", statistics.get("Registry Cache Agents Hits"));
+        Assertions.assertEquals("66.7%", statistics.get("Registry Cache Schedules Hit Rate"));
+    }
+
+    private Instance createInstance() {
+        Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent", "connectina.co.uk")
+                .hashCode("0123456789abcdef0123456789abcdef").version(1, 0).build();
+
+        return new Instance(identity, LocalDateTime.now(), "Default");
+    }
+
+}
@@ -0,0 +1,139 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import io.grpc.ManagedChannel;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the GRPCChannelPool class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class GRPCChannelPoolTest {
+
+    private static class TestChannelPool extends GRPCChannelPool {
+
+        private String stamp = "first";
+
+        TestChannelPool(long idleMillis) {
+            super(idleMillis);
+        }
+
+        @Override
+        ManagedChannel createChannel(String host, int port, String certificateStamp) {
+            return InProcessChannelBuilder.forName(host + port).build();
+        }
+
+        @Override
+        String getCertificateStamp() {
+            return stamp;
+        }
+
+    }
+
+    private TestChannelPool channelPool;
+
+    @AfterEach
+    void tearDown() {
+        channelPool.shutdown();
+    }
+
+    @Test
+    void getChannelReusesChannelPerStation() throws IOException {
+        channelPool = new TestChannelPool(GRPCChannelPool.IDLE_MILLIS);
+
+        ManagedChannel first = channelPool.getChannel("localhost", 50051);
+        ManagedChannel second = channelPool.getChannel("localhost", 50051);
+        ManagedChannel other = channelPool.getChannel("localhost", 50052);
+
+        Assertions.assertSame(first, second);
+        Assertions.assertNotSame(first, other);
+        Map<String, String> statistics = new LinkedHashMap<>();
+        channelPool.collectStatistics(statistics);
+        Assertions.assertEquals("2", statistics.get("gRPC Channels Created"));
+        Assertions.assertEquals("1", statistics.get("gRPC Channel Reuses"));
+    }
+
+    @Test
+    void getChannelReplacesChannelAfterCertificateChange() throws IOException {
+        channelPool = new TestChannelPool(GRPCChannelPool.IDLE_MILLIS);
+        ManagedChannel first = channelPool.getChannel("localhost", 50051);
+        channelPool.releaseChannel(first);
+
+        channelPool.stamp = "second";
+        ManagedChannel second = channelPool.getChannel("localhost", 50051);
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertTrue(first.isShutdown());
+    }
+
+    @Test
+    void replacedChannelStaysOpenUntilReleased() throws IOException {
+        channelPool = new TestChannelPool(GRPCChannelPool.IDLE_MILLIS);
+        ManagedChannel first = channelPool.getChannel("localhost", 50051);
+
+        channelPool.stamp = "second";
+        ManagedChannel second = channelPool.getChannel("localhost", 50051);
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertFalse(first.isShutdown());
+        Map<String, String> statistics = new LinkedHashMap<>();
+        channelPool.collectStatistics(statistics);
+        Assertions.assertEquals("1", statistics.get("gRPC Channels Retiring"));
+
+        channelPool.releaseChannel(first);
+        Assertions.assertTrue(first.isShutdown());
+        Assertions.assertFalse(second.isShutdown());
+    }
+
+    @Test
+    void evictIdleClosesUnusedChannels() throws IOException {
+        channelPool = new TestChannelPool(0);
+        ManagedChannel first = channelPool.getChannel("localhost", 50051);
+        channelPool.releaseChannel(first);
+
+        channelPool.evictIdle();
+
+        Assertions.assertTrue(first.isShutdown());
+        Assertions.assertNotSame(first, channelPool.getChannel("localhost", 50051));
+    }
+
+    @Test
+    void evictIdleKeepsChannelsInUse() throws IOException {
+        channelPool = new TestChannelPool(0);
+        ManagedChannel first = channelPool.getChannel("localhost", 50051);
+
+        channelPool.evictIdle();
+
+        Assertions.assertFalse(first.isShutdown());
+        Assertions.assertSame(first, channelPool.getChannel("localhost", 50051));
+        channelPool.releaseChannel(first);
+        channelPool.releaseChannel(first);
+        channelPool.evictIdle();
+        Assertions.assertTrue(first.isShutdown());
+    }
+
+}
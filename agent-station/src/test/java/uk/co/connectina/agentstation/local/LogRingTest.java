@@ -0,0 +1,90 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.client.LogType;
+
+/**
+ * Tests for the LogRing class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class LogRingTest {
+
+    public static final String ABOUT = "About";
+
+    @Test
+    void getEntriesLatestFirst() {
+        LogRing ring = new LogRing(5);
+        ring.add(LogType.INFO, "First");
+        ring.add(LogType.ERROR, "Second");
+
+        List<LogEntry> entries = ring.getEntries(ABOUT);
+        Assertions.assertEquals(2, entries.size());
+        Assertions.assertEquals("Second", entries.get(0).getMessage());
+        Assertions.assertEquals(LogType.ERROR, entries.get(0).getType());
+        Assertions.assertEquals("First", entries.get(1).getMessage());
+        Assertions.assertEquals(ABOUT, entries.get(1).getAbout());
+    }
+
+    @Test
+    void getEntriesKeepsLatestWhenFull() {
+        LogRing ring = new LogRing(3);
+        for (int i = 1; i <= 7; i++) {
+            ring.add(LogType.INFO, "Message" + i);
+        }
+
+        List<LogEntry> entries = ring.getEntries(ABOUT);
+        Assertions.assertEquals(3, entries.size());
+        Assertions.assertEquals("Message7", entries.get(0).getMessage());
+        Assertions.assertEquals("Message5", entries.get(2).getMessage());
+        Assertions.assertEquals(7, ring.getCount());
+    }
+
+    @Test
+    void addFromConcurrentThreads() throws InterruptedException {
+        LogRing ring = new LogRing(50);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 1000; i++) {
+                    ring.add(LogType.INFO, "Message");
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Assertions.assertEquals(4000, ring.getCount());
+        Assertions.assertEquals(50, ring.getEntries(ABOUT).size());
+    }
+
+    @Test
+    void createFailNoCapacity() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new LogRing(0));
+    }
+
+}
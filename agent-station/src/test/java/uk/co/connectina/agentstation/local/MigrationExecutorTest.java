@@ -0,0 +1,182 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import io.grpc.Context;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the MigrationExecutor class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class MigrationExecutorTest {
+
+    private MigrationExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new MigrationExecutor();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdown();
+    }
+
+    @Test
+    void submitCompletesWithOutcome() throws InterruptedException, ExecutionException {
+        CompletableFuture<MigrationResult> future = executor.submit(() -> new MigrationResult(MigrationResult.Status.ACCEPTED, null), Duration.ofSeconds(10));
+
+        Assertions.assertTrue(future.get().isAccepted());
+    }
+
+    @Test
+    void submitCompletesWithFailure() {
+        CompletableFuture<MigrationResult> future = executor.submit(() -> {
+            throw new OperationException("Remote station unavailable");
+        }, null);
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertInstanceOf(OperationException.class, e.getCause());
+    }
+
+    @Test
+    void deadlineBeforeStartSkipsExchange() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < MigrationExecutor.THREADS; i++) {
+            executor.submit(() -> release.await(5, TimeUnit.SECONDS), null);
+        }
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<MigrationResult> future = executor.submit(() -> {
+            ran.set(true);
+
+            return new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+        }, Duration.ofMillis(50));
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertInstanceOf(TimeoutException.class, e.getCause());
+        release.countDown();
+        executor.shutdown();
+        Thread.sleep(100);
+        Assertions.assertFalse(ran.get());
+        Assertions.assertEquals("1", getStatistics().get("Async Migrations Timed Out"));
+    }
+
+    @Test
+    void deadlineCancelsRemoteCalls() throws InterruptedException, ExecutionException {
+        CompletableFuture<MigrationResult> future = executor.submit(() -> awaitCancelled(new CountDownLatch(1)), Duration.ofMillis(50));
+
+        MigrationResult result = future.get();
+        Assertions.assertEquals(MigrationResult.Status.ERROR, result.getStatus());
+        Assertions.assertEquals("Cancelled", result.getMessage());
+        Assertions.assertEquals("1", getStatistics().get("Async Migrations Timed Out"));
+    }
+
+    @Test
+    void deadlineAfterAcceptedKeepsOutcome() throws InterruptedException, ExecutionException {
+        AtomicBoolean interrupted = new AtomicBoolean();
+        CompletableFuture<MigrationResult> future = executor.submit(() -> {
+            MigrationResult accepted = new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+            // The remote station answered, the deadline passes while the outcome is recorded
+            Thread.sleep(200);
+            interrupted.set(Thread.currentThread().isInterrupted());
+
+            return accepted;
+        }, Duration.ofMillis(50));
+
+        Assertions.assertTrue(future.get().isAccepted());
+        Assertions.assertFalse(interrupted.get());
+    }
+
+    @Test
+    void deadlineWhileSendingLeavesCallsRunning() throws InterruptedException, ExecutionException {
+        CompletableFuture<MigrationResult> future = executor.submit(() -> MigrationExecutor.send().call(() -> {
+            // The deadline passes while the remote station reads the agent
+            Thread.sleep(200);
+
+            return Context.current().isCancelled() ? new MigrationResult(MigrationResult.Status.ERROR, "Cancelled")
+                    : new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+        }), Duration.ofMillis(50));
+
+        Assertions.assertTrue(future.get().isAccepted());
+        Assertions.assertEquals("0", getStatistics().get("Async Migrations Timed Out"));
+    }
+
+    @Test
+    void sendAfterDeadlineIsRefused() {
+        CompletableFuture<MigrationResult> future = executor.submit(() -> {
+            awaitCancelled(new CountDownLatch(1));
+            MigrationExecutor.send();
+
+            return new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+        }, Duration.ofMillis(50));
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, future::get);
+        Assertions.assertEquals(MigrationExecutor.NOT_SENT, e.getCause().getMessage());
+    }
+
+    @Test
+    void cancelCancelsRemoteCalls() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        CompletableFuture<MigrationResult> future = executor.submit(() -> {
+            MigrationResult result = awaitCancelled(started);
+            cancelled.countDown();
+
+            return result;
+        }, null);
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        Assertions.assertTrue(future.cancel(true));
+        Assertions.assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals("1", getStatistics().get("Async Migrations Cancelled"));
+    }
+
+    private MigrationResult awaitCancelled(CountDownLatch started) throws InterruptedException {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        Context.current().addListener(context -> cancelled.countDown(), Runnable::run);
+        started.countDown();
+
+        return cancelled.await(1, TimeUnit.MINUTES) ? new MigrationResult(MigrationResult.Status.ERROR, "Cancelled")
+                : new MigrationResult(MigrationResult.Status.ACCEPTED, null);
+    }
+
+    private Map<String, String> getStatistics() {
+        Map<String, String> statistics = new HashMap<>();
+        executor.collectStatistics(statistics);
+
+        return statistics;
+    }
+
+}
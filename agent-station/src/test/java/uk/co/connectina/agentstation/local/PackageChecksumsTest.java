@@ -0,0 +1,159 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Properties;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the PackageChecksums class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class PackageChecksumsTest {
+
+    @TempDir
+    Path folder;
+    private File storeFile;
+    private Path jar;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        storeFile = folder.resolve("checksums.properties").toFile();
+        jar = folder.resolve("agent.jar");
+        writeJar("Hello");
+    }
+
+    @Test
+    void getMD5UsesCacheForUnchangedPackage() throws IOException {
+        PackageChecksums checksums = new PackageChecksums(storeFile);
+
+        Assertions.assertEquals(DigestUtils.md5Hex("Hello"), checksums.getMD5(jar.toString()));
+        Assertions.assertEquals(DigestUtils.md5Hex("Hello"), checksums.getMD5(jar.toString()));
+        Assertions.assertEquals(1, checksums.getMisses());
+        Assertions.assertEquals(1, checksums.getHits());
+    }
+
+    @Test
+    void getMD5UsesStoredCache() throws IOException {
+        PackageChecksums stored = new PackageChecksums(storeFile);
+        stored.getMD5(jar.toString());
+        stored.flush();
+        PackageChecksums checksums = new PackageChecksums(storeFile);
+
+        Assertions.assertEquals(DigestUtils.md5Hex("Hello"), checksums.getMD5(jar.toString()));
+        Assertions.assertEquals(1, checksums.getHits());
+    }
+
+    @Test
+    void getMD5HashesCorruptEntryAgain() throws IOException {
+        PackageChecksums stored = new PackageChecksums(storeFile);
+        stored.getMD5(jar.toString());
+        stored.flush();
+        Properties entries = new Properties();
+        try (InputStream input = Files.newInputStream(storeFile.toPath())) {
+            entries.load(input);
+        }
+        String key = entries.stringPropertyNames().iterator().next();
+        String entry = entries.getProperty(key);
+        int index = entry.lastIndexOf('|');
+        String stamp = entry.substring(0, entry.lastIndexOf('|', index - 1));
+
+        for (String corrupt : List.of(stamp + "|soon|" + entry.substring(index + 1), stamp + "|", "corrupt")) {
+            entries.setProperty(key, corrupt);
+            try (OutputStream output = Files.newOutputStream(storeFile.toPath())) {
+                entries.store(output, null);
+            }
+            PackageChecksums checksums = new PackageChecksums(storeFile);
+
+            Assertions.assertEquals(DigestUtils.md5Hex("Hello"), checksums.getMD5(jar.toString()));
+            Assertions.assertEquals(1, checksums.getMisses());
+        }
+    }
+
+    @Test
+    void getMD5HashesChangedPackage() throws IOException {
+        PackageChecksums checksums = new PackageChecksums(storeFile);
+        checksums.getMD5(jar.toString());
+
+        writeJar("Hello again");
+
+        Assertions.assertEquals(DigestUtils.md5Hex("Hello again"), checksums.getMD5(jar.toString()));
+        Assertions.assertEquals(2, checksums.getMisses());
+    }
+
+    @Test
+    void getMD5HashesRecentlyModifiedPackageAgain() throws IOException {
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis()));
+        PackageChecksums checksums = new PackageChecksums(storeFile);
+
+        checksums.getMD5(jar.toString());
+        checksums.getMD5(jar.toString());
+
+        Assertions.assertEquals(2, checksums.getMisses());
+        Assertions.assertEquals(0, checksums.getHits());
+    }
+
+    @Test
+    void getMD5SavesInBatches() throws IOException {
+        PackageChecksums checksums = new PackageChecksums(storeFile);
+
+        checksums.getMD5(jar.toString());
+        Assertions.assertFalse(storeFile.exists());
+
+        for (int i = 1; i < PackageChecksums.MAX_UNSAVED; i++) {
+            Path other = folder.resolve("agent" + i + ".jar");
+            Files.write(other, new byte[] { (byte) i });
+            Files.setLastModifiedTime(other, FileTime.fromMillis(System.currentTimeMillis() - 10 * PackageChecksums.RACY_MILLIS));
+            checksums.getMD5(other.toString());
+        }
+        Assertions.assertTrue(storeFile.exists());
+    }
+
+    @Test
+    void hashStreamsLargePackage() throws IOException {
+        byte[] content = new byte[200 * 1024 + 7];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (i * 31);
+        }
+        Files.write(jar, content);
+
+        Assertions.assertEquals(DigestUtils.md5Hex(content), PackageChecksums.hash(jar));
+    }
+
+    private void writeJar(String content) throws IOException {
+        Files.write(jar, content.getBytes(StandardCharsets.UTF_8));
+        // Older than the racy window so that the checksum can be trusted
+        Files.setLastModifiedTime(jar, FileTime.fromMillis(System.currentTimeMillis() - 10 * PackageChecksums.RACY_MILLIS));
+    }
+
+}
@@ -0,0 +1,85 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the PackageClassLoaders class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class PackageClassLoadersTest {
+
+    private static final String HASH = "9f64b865ed237ab9905a4ce2ec99146b";
+    @TempDir
+    Path packageFolder;
+    private PackageClassLoaders classLoaders;
+    private URL url;
+
+    @BeforeEach
+    void setUp() throws MalformedURLException {
+        classLoaders = new PackageClassLoaders(PackageClassLoadersTest.class.getClassLoader());
+        url = packageFolder.toUri().toURL();
+    }
+
+    @Test
+    void acquireSharesLoaderPerPackage() {
+        AgentClassLoader first = classLoaders.acquire(HASH, url);
+        AgentClassLoader second = classLoaders.acquire(HASH, url);
+        AgentClassLoader other = classLoaders.acquire("0cc175b9c0f1b6a831c399e269772661", url);
+
+        Assertions.assertSame(first, second);
+        Assertions.assertNotSame(first, other);
+        Assertions.assertEquals(2, classLoaders.getReferenceCount(HASH));
+    }
+
+    @Test
+    void releaseClosesLoaderAfterLastAgent() {
+        AgentClassLoader first = classLoaders.acquire(HASH, url);
+        classLoaders.acquire(HASH, url);
+
+        classLoaders.release(HASH);
+        Assertions.assertEquals(1, classLoaders.getReferenceCount(HASH));
+
+        classLoaders.release(HASH);
+        Assertions.assertEquals(0, classLoaders.getReferenceCount(HASH));
+        Assertions.assertNotSame(first, classLoaders.acquire(HASH, url));
+    }
+
+    @Test
+    void collectStatistics() {
+        classLoaders.acquire(HASH, url);
+        Map<String, String> statistics = new LinkedHashMap<>();
+
+        classLoaders.collectStatistics(statistics);
+
+        Assertions.assertEquals("1", statistics.get("Package Class Loaders"));
+        Assertions.assertEquals("0 classes, 1 agents", statistics.get("Package 9f64b865"));
+    }
+
+}
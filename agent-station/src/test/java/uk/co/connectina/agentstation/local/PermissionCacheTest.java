@@ -0,0 +1,104 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the PermissionCache class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class PermissionCacheTest {
+
+    private long now;
+    private PermissionCache cache;
+
+    @BeforeEach
+    void setUp() {
+        now = 1000;
+        cache = new PermissionCache(100, 10, 2) {
+            @Override
+            long currentTimeMillis() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    void getReturnsStoredOutcome() {
+        cache.put("host:1099", "Agent", "abc", "Place", true);
+        cache.put("host:1099", "Other", "def", "Place", false);
+
+        Assertions.assertEquals(Boolean.TRUE, cache.get("host:1099", "Agent", "abc", "Place"));
+        Assertions.assertEquals(Boolean.FALSE, cache.get("host:1099", "Other", "def", "Place"));
+        Assertions.assertNull(cache.get("other:1099", "Agent", "abc", "Place"));
+    }
+
+    @Test
+    void refusalExpiresBeforeAcceptance() {
+        cache.put("host:1099", "Agent", "abc", "Place", true);
+        cache.put("host:1099", "Other", "def", "Place", false);
+        now += 50;
+
+        Assertions.assertEquals(Boolean.TRUE, cache.get("host:1099", "Agent", "abc", "Place"));
+        Assertions.assertNull(cache.get("host:1099", "Other", "def", "Place"));
+        now += 50;
+        Assertions.assertNull(cache.get("host:1099", "Agent", "abc", "Place"));
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void putEvictsLeastRecentlyUsed() {
+        cache.put("host:1099", "First", "a", "Place", true);
+        cache.put("host:1099", "Second", "b", "Place", true);
+        cache.get("host:1099", "First", "a", "Place");
+        cache.put("host:1099", "Third", "c", "Place", true);
+
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertNull(cache.get("host:1099", "Second", "b", "Place"));
+        Assertions.assertEquals(Boolean.TRUE, cache.get("host:1099", "First", "a", "Place"));
+    }
+
+    @Test
+    void invalidateCoversAllPeers() {
+        cache.put("one:1099", "Agent", "abc", "Place", false);
+        cache.put("two:1099", "Agent", "abc", "Place", false);
+        cache.invalidate("Agent", "abc", "Place");
+
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void collectStatisticsCountsHitsAndMisses() {
+        cache.put("host:1099", "Agent", "abc", "Place", true);
+        cache.get("host:1099", "Agent", "abc", "Place");
+        cache.get("host:1099", "Other", "def", "Place");
+        Map<String, String> statistics = new HashMap<>();
+        cache.collectStatistics(statistics);
+
+        Assertions.assertEquals("1", statistics.get("Permission Cache Hits"));
+        Assertions.assertEquals("1", statistics.get("Permission Cache Misses"));
+    }
+
+}
@@ -0,0 +1,112 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.rmi.ConnectException;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import uk.co.connectina.agentstation.api.client.OperationException;
+import uk.co.connectina.agentstation.api.rmi.RemoteStation;
+
+/**
+ * Tests for the RMIStubCache class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class RMIStubCacheTest {
+
+    private Deque<Remote> stubs;
+    private RMIStubCache cache;
+
+    @BeforeEach
+    void setUp() {
+        stubs = new ArrayDeque<>();
+        cache = new RMIStubCache() {
+            @Override
+            Remote lookup(String url) {
+                return stubs.poll();
+            }
+        };
+    }
+
+    @Test
+    void getStationReusesStub() throws OperationException, RemoteException {
+        RemoteStation remote = Mockito.mock(RemoteStation.class);
+        Mockito.when(remote.hasPackage("a.jar", "hash")).thenReturn(true);
+        stubs.add(remote);
+
+        Assertions.assertTrue(cache.getStation("host", 1099).hasPackage("a.jar", "hash"));
+        Assertions.assertTrue(cache.getStation("host", 1099).hasPackage("a.jar", "hash"));
+        Assertions.assertTrue(stubs.isEmpty());
+        Mockito.verify(remote, Mockito.times(2)).hasPackage("a.jar", "hash");
+    }
+
+    @Test
+    void staleStubIsLookedUpAgain() throws OperationException, RemoteException {
+        RemoteStation stale = Mockito.mock(RemoteStation.class);
+        Mockito.when(stale.hasPackage("a.jar", "hash")).thenThrow(new NoSuchObjectException("gone"));
+        RemoteStation fresh = Mockito.mock(RemoteStation.class);
+        Mockito.when(fresh.hasPackage("a.jar", "hash")).thenReturn(true);
+        stubs.add(stale);
+        stubs.add(fresh);
+
+        Assertions.assertTrue(cache.getStation("host", 1099).hasPackage("a.jar", "hash"));
+        Map<String, String> statistics = new HashMap<>();
+        cache.collectStatistics(statistics);
+        Assertions.assertEquals("1", statistics.get("RMI Reconnects"));
+        Assertions.assertTrue(statistics.get("RMI Call hasPackage").startsWith("2 calls"));
+    }
+
+    @Test
+    void failedCallDropsStub() throws OperationException, RemoteException {
+        RemoteStation broken = Mockito.mock(RemoteStation.class);
+        Mockito.when(broken.supportsCompression()).thenThrow(new RemoteException("reset"));
+        RemoteStation fresh = Mockito.mock(RemoteStation.class);
+        Mockito.when(fresh.supportsCompression()).thenReturn(true);
+        stubs.add(broken);
+        stubs.add(fresh);
+        RemoteStation station = cache.getStation("host", 1099);
+
+        // The failure is not retried, as the call may have reached the remote station
+        Assertions.assertThrows(RemoteException.class, station::supportsCompression);
+        Assertions.assertTrue(station.supportsCompression());
+    }
+
+    @Test
+    void refusedConnectionIsRetried() throws OperationException, RemoteException {
+        RemoteStation refused = Mockito.mock(RemoteStation.class);
+        Mockito.when(refused.supportsStateCodec()).thenThrow(new ConnectException("refused"));
+        RemoteStation fresh = Mockito.mock(RemoteStation.class);
+        Mockito.when(fresh.supportsStateCodec()).thenReturn(true);
+        stubs.add(refused);
+        stubs.add(fresh);
+
+        Assertions.assertTrue(cache.getStation("host", 1099).supportsStateCodec());
+    }
+
+}
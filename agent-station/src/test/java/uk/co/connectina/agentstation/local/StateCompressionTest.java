@@ -0,0 +1,147 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.client.MigrationResult;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the StateCompression class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class StateCompressionTest {
+
+    private static final String PEER = "host:1099";
+    private static final String CLASS_NAME = "test.Agent";
+    private StateCompression sender;
+    private StateCompression receiver;
+
+    @BeforeEach
+    void setUp() {
+        sender = new StateCompression();
+        sender.setSupported(PEER, true);
+        receiver = new StateCompression();
+    }
+
+    @Test
+    void decompressRestoresState() throws IOException, OperationException {
+        byte[] state = serialize(1);
+        byte[] data = sender.compress(CLASS_NAME, state, PEER);
+
+        Assertions.assertTrue(StateCompression.isCompressed(data));
+        Assertions.assertArrayEquals(state, receiver.decompress(data));
+    }
+
+    @Test
+    void confirmLeavesOutDictionary() throws IOException, OperationException {
+        byte[] first = sender.compress(CLASS_NAME, serialize(1), PEER);
+        receiver.decompress(first);
+        sender.confirm(PEER, first);
+        byte[] state = serialize(2);
+        byte[] second = sender.compress(CLASS_NAME, state, PEER);
+
+        Assertions.assertTrue(second.length < first.length);
+        Assertions.assertTrue(second.length < state.length / 2);
+        Assertions.assertArrayEquals(state, receiver.decompress(second));
+    }
+
+    @Test
+    void decompressFailsWithoutDictionary() throws IOException {
+        sender.confirm(PEER, sender.compress(CLASS_NAME, serialize(1), PEER));
+        byte[] data = sender.compress(CLASS_NAME, serialize(2), PEER);
+
+        OperationException e = Assertions.assertThrows(OperationException.class, () -> receiver.decompress(data));
+        Assertions.assertTrue(StateCompression.isUnreadable(new MigrationResult(MigrationResult.Status.ERROR, e.getMessage())));
+    }
+
+    @Test
+    void decompressRejectsCorruptLengths() throws IOException {
+        byte[] data = sender.compress(CLASS_NAME, serialize(1), PEER);
+        int[][] corruptions = { { 4, -1 }, { 4, Integer.MAX_VALUE }, { 12, -1 },
+            { 12, StateCompression.MAX_DICTIONARY_SIZE + 1 }, { 16, -1 }, { 16, data.length } };
+        for (int[] corruption : corruptions) {
+            byte[] corrupt = data.clone();
+            ByteBuffer.wrap(corrupt).putInt(corruption[0], corruption[1]);
+
+            OperationException e = Assertions.assertThrows(OperationException.class, () -> receiver.decompress(corrupt));
+            Assertions.assertEquals(StateCompression.UNREADABLE_STATE, e.getMessage());
+        }
+    }
+
+    @Test
+    void otherErrorsAreNotUnreadable() {
+        Assertions.assertFalse(StateCompression.isUnreadable(new MigrationResult(MigrationResult.Status.ERROR, "The agent package is not available.")));
+        Assertions.assertFalse(StateCompression.isUnreadable(new MigrationResult(MigrationResult.Status.ERROR, null)));
+        Assertions.assertFalse(StateCompression.isUnreadable(new MigrationResult(MigrationResult.Status.NOT_ALLOWED, StateCompression.UNREADABLE_STATE)));
+    }
+
+    @Test
+    void forgetSendsDictionaryAgain() throws IOException, OperationException {
+        sender.confirm(PEER, sender.compress(CLASS_NAME, serialize(1), PEER));
+        sender.forget(PEER);
+        sender.setSupported(PEER, true);
+        byte[] state = serialize(2);
+
+        Assertions.assertArrayEquals(state, receiver.decompress(sender.compress(CLASS_NAME, state, PEER)));
+    }
+
+    @Test
+    void decompressKeepsSerializedState() throws IOException, OperationException {
+        byte[] state = serialize(1);
+
+        Assertions.assertFalse(StateCompression.isCompressed(state));
+        Assertions.assertSame(state, receiver.decompress(state));
+    }
+
+    @Test
+    void collectStatisticsReportsRatio() throws IOException {
+        sender.compress(CLASS_NAME, serialize(1), PEER);
+        Map<String, String> statistics = new HashMap<>();
+        sender.collectStatistics(statistics);
+
+        Assertions.assertEquals("1", statistics.get("State Compressions"));
+        Assertions.assertNotEquals("-", statistics.get("State Compression Ratio"));
+    }
+
+    private static byte[] serialize(int seed) throws IOException {
+        List<String> state = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            state.add("entry-" + (seed * 7919 + i * 31));
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream output = new ObjectOutputStream(bytes)) {
+            output.writeObject(state);
+        }
+
+        return bytes.toByteArray();
+    }
+
+}
@@ -0,0 +1,147 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.StationEvent;
+
+/**
+ * Tests for the StationEventBus class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class StationEventBusTest {
+
+    @Test
+    void publishCoalescesPendingAgentStates() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch delivered = new CountDownLatch(2);
+        List<StationEvent> events = new CopyOnWriteArrayList<>();
+        StationEventBus eventBus = new StationEventBus();
+        eventBus.addListener((StationEvent event) -> {
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+            delivered.countDown();
+        });
+
+        Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent", "connectina.co.uk").description("Test agent").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile("file:/home/user/test-agent.jar").version(1, 0).build();
+        Instance instance = new Instance(identity, LocalDateTime.now(), "Default");
+        eventBus.publish(StationEvent.place(StationEvent.Type.CREATE_PLACE, "Default"));
+        eventBus.publish(StationEvent.agent(StationEvent.Type.AGENT_START, instance));
+        eventBus.publish(StationEvent.agent(StationEvent.Type.AGENT_STOP, instance));
+        release.countDown();
+
+        Assertions.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Assertions.assertEquals(StationEvent.Type.CREATE_PLACE, events.get(0).getType());
+        Assertions.assertEquals(StationEvent.Type.AGENT_STOP, events.get(1).getType());
+        Map<String, String> statistics = new LinkedHashMap<>();
+        eventBus.collectStatistics(statistics);
+        Assertions.assertEquals("3", statistics.get("Events Published"));
+        Assertions.assertEquals("1", statistics.get("Events Coalesced"));
+    }
+
+    @Test
+    void publishSurvivesFailingListener() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        StationEventBus eventBus = new StationEventBus();
+        eventBus.addListener((StationEvent event) -> {
+            throw new IllegalStateException("Listener failure");
+        });
+        eventBus.addListener((StationEvent event) -> delivered.countDown());
+
+        eventBus.publish(StationEvent.serverStart(null));
+
+        Assertions.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void interruptedPublishLeavesNoPendingState() throws InterruptedException {
+        CountDownLatch delivered = new CountDownLatch(1);
+        StationEventBus eventBus = new StationEventBus();
+        eventBus.addListener((StationEvent event) -> delivered.countDown());
+        Instance instance = createInstance();
+
+        Thread.currentThread().interrupt();
+        eventBus.publish(StationEvent.agent(StationEvent.Type.AGENT_START, instance));
+        Assertions.assertTrue(Thread.interrupted());
+        eventBus.publish(StationEvent.agent(StationEvent.Type.AGENT_STOP, instance));
+
+        Assertions.assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        Map<String, String> statistics = new LinkedHashMap<>();
+        eventBus.collectStatistics(statistics);
+        Assertions.assertEquals("1", statistics.get("Events Dropped"));
+        Assertions.assertEquals("0", statistics.get("Events Coalesced"));
+    }
+
+    @Test
+    void shutdownDeliversQueuedEventsAndDropsLaterOnes() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        List<StationEvent> events = new CopyOnWriteArrayList<>();
+        StationEventBus eventBus = new StationEventBus();
+        eventBus.addListener((StationEvent event) -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            events.add(event);
+        });
+
+        eventBus.publish(StationEvent.place(StationEvent.Type.CREATE_PLACE, "Default"));
+        Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+        eventBus.publish(StationEvent.place(StationEvent.Type.REMOVE_PLACE, "Default"));
+        eventBus.shutdown();
+        eventBus.publish(StationEvent.serverStart(null));
+        release.countDown();
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events.size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Thread.sleep(100);
+        Assertions.assertEquals(2, events.size());
+        Assertions.assertEquals(StationEvent.Type.REMOVE_PLACE, events.get(1).getType());
+        Map<String, String> statistics = new LinkedHashMap<>();
+        eventBus.collectStatistics(statistics);
+        Assertions.assertEquals("1", statistics.get("Events Dropped"));
+    }
+
+    private Instance createInstance() {
+        Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent", "connectina.co.uk").description("Test agent").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile("file:/home/user/test-agent.jar").version(1, 0).build();
+
+        return new Instance(identity, LocalDateTime.now(), "Default");
+    }
+
+}
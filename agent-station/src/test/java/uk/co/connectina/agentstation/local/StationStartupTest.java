@@ -0,0 +1,110 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import uk.co.connectina.agentstation.api.Identity;
+import uk.co.connectina.agentstation.api.Instance;
+import uk.co.connectina.agentstation.api.Permission;
+import uk.co.connectina.agentstation.api.Registry;
+import uk.co.connectina.agentstation.api.Station;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the StationStartup class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class StationStartupTest {
+
+    @TempDir
+    Path packageFolder;
+    private Registry registryMock;
+    private AgentManager agentManagerMock;
+    private StationStartup startup;
+
+    @BeforeEach
+    void setUp() {
+        registryMock = Mockito.mock(Registry.class);
+        agentManagerMock = Mockito.mock(AgentManager.class);
+        startup = new StationStartup(Mockito.mock(Station.class), registryMock, agentManagerMock, 0);
+    }
+
+    @Test
+    void runDeletesUnusedPackage() throws IOException, OperationException {
+        File jar = Files.createFile(packageFolder.resolve("unused.jar")).toFile();
+        Mockito.when(registryMock.lookupAgents()).thenReturn(List.of());
+        Mockito.when(registryMock.lookupPermissions()).thenReturn(List.of());
+
+        startup.run(packageFolder.toFile());
+
+        Assertions.assertFalse(jar.exists());
+        Mockito.verify(agentManagerMock, Mockito.never()).verifyPackage(ArgumentMatchers.any());
+    }
+
+    @Test
+    void runVerifiesEachPackageOnce() throws IOException, OperationException {
+        File jar = Files.createFile(packageFolder.resolve("test-agent.jar")).toFile();
+        String packageFile = jar.toURI().toURL().toString();
+        Instance first = createInstance("uk.co.connectina.test.First", packageFile);
+        Instance second = createInstance("uk.co.connectina.test.Second", packageFile);
+        Instance denied = createInstance("uk.co.connectina.test.Denied", packageFile);
+        Mockito.when(registryMock.lookupAgents()).thenReturn(Arrays.asList(first, second, denied));
+        Mockito.when(registryMock.lookupPermissions()).thenReturn(Arrays.asList(createPermission(first, true),
+                createPermission(second, true), createPermission(denied, false)));
+        Mockito.when(agentManagerMock.verifyPackage(ArgumentMatchers.any())).thenReturn(packageFile);
+
+        startup.run(packageFolder.toFile());
+
+        Mockito.verify(agentManagerMock, Mockito.times(1)).verifyPackage(ArgumentMatchers.any());
+        Mockito.verify(agentManagerMock).createVerifiedAgent(first, null, packageFile);
+        Mockito.verify(agentManagerMock).createVerifiedAgent(second, null, packageFile);
+        Mockito.verify(agentManagerMock, Mockito.never()).createVerifiedAgent(denied, null, packageFile);
+
+        Map<String, String> statistics = new LinkedHashMap<>();
+        startup.collectStatistics(statistics);
+        Assertions.assertEquals("2 created, 0 failed", statistics.get("Startup Agents"));
+        Assertions.assertTrue(statistics.containsKey("Startup Verify"));
+    }
+
+    private Instance createInstance(String className, String packageFile) {
+        Identity identity = new Identity.IdentityBuilder(className, "connectina.co.uk").description("Test agent").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile(packageFile).version(1, 0).build();
+
+        return new Instance(identity, LocalDateTime.now(), "Default");
+    }
+
+    private Permission createPermission(Instance instance, boolean allowed) {
+        return new Permission(instance.getIdentity().getName(), instance.getShortId(), instance.getPlaceName(), allowed, false);
+    }
+
+}
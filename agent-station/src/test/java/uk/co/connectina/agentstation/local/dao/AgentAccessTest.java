@@ -18,6 +18,9 @@
  */
 package uk.co.connectina.agentstation.local.dao;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.time.LocalDateTime;
 import java.util.List;
 
@@ -193,6 +196,99 @@ class AgentAccessTest {
         }
     }
 
+    @Test
+    void testForeignSidFallsBackToUniqueKey() throws OperationException {
+        Instance instance = createInstance();
+        long sid = instance.getSid();
+        instance.setSid(sid + 1000);
+        instance.setState(State.ACTIVE);
+
+        Assertions.assertTrue(agentAccess.exists(instance));
+        Assertions.assertEquals(sid, agentAccess.read(instance).getSid());
+        agentAccess.update(instance);
+        Assertions.assertEquals(State.ACTIVE, agentAccess.read(getInstance()).getState());
+        agentAccess.delete(instance);
+        Assertions.assertFalse(agentAccess.exists(getInstance()));
+    }
+
+    @Test
+    void testDuplicateIsRejected() {
+        createInstance();
+
+        Assertions.assertThrows(OperationException.class, () -> agentAccess.create(getInstance()));
+    }
+
+    @Test
+    void testMigrationsAreAppliedOnce() throws OperationException {
+        int version = agentAccess.readSchemaVersion("INSTANCE");
+        agentAccess.createSchema();
+
+        Assertions.assertEquals(5, version);
+        Assertions.assertEquals(version, agentAccess.readSchemaVersion("INSTANCE"));
+    }
+
+    @Test
+    void testSidOfOtherVersionIsNotTrusted() throws OperationException {
+        Instance instance = createInstance();
+        Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent", "connectina.co.uk").description("Test agent description").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile("file:/home/christos/test-agent.jar").version(1, 4).build();
+        Instance otherVersion = new Instance(identity, LocalDateTime.parse("2022-05-21T17:25:31", App.DATETIME_FORMATTER), "Test", "Param1", "Param2", "Param3");
+        otherVersion.setSid(instance.getSid());
+
+        Assertions.assertFalse(agentAccess.exists(otherVersion));
+        Assertions.assertNull(agentAccess.read(otherVersion));
+    }
+
+    @Test
+    void testFailedMigrationResumesWhereItStopped() throws OperationException, SQLException {
+        AbstractAccess access = new AbstractAccess("Test") { };
+        AbstractAccess.Migration create = AbstractAccess.Migration.of("CREATE TABLE IF NOT EXISTS MIGRATION_TEST (id INT)");
+        AbstractAccess.Migration insert = AbstractAccess.Migration.of("INSERT INTO MIGRATION_TEST VALUES (1)");
+        AbstractAccess.Migration index = AbstractAccess.Migration.of("CREATE INDEX IF NOT EXISTS MIGRATION_TEST_ID ON MIGRATION_TEST (id)");
+        dropMigrationTest(access);
+        try {
+            List<AbstractAccess.Migration> failing = List.of(create, insert, AbstractAccess.Migration.of("INSERT INTO NO_SUCH_TABLE VALUES (1)"));
+
+            Assertions.assertThrows(OperationException.class, () -> access.migrateSchema("MIGRATION_TEST", failing));
+            Assertions.assertEquals(2, access.readSchemaVersion("MIGRATION_TEST"));
+
+            // The versions already recorded are not run again
+            access.migrateSchema("MIGRATION_TEST", List.of(create, insert, index));
+            Assertions.assertEquals(3, access.readSchemaVersion("MIGRATION_TEST"));
+            try (PooledConnection connection = access.acquireConnection()) {
+                ResultSet rs = connection.createStatement().executeQuery("SELECT COUNT(*) FROM MIGRATION_TEST");
+                Assertions.assertTrue(rs.next());
+                Assertions.assertEquals(1, rs.getInt(1));
+            }
+        } finally {
+            dropMigrationTest(access);
+        }
+    }
+
+    @Test
+    void testConditionalMigrationIsSkipped() throws OperationException, SQLException {
+        AbstractAccess access = new AbstractAccess("Test") { };
+        dropMigrationTest(access);
+        try {
+            access.migrateSchema("MIGRATION_TEST", List.of(AbstractAccess.Migration.of("CREATE TABLE IF NOT EXISTS MIGRATION_TEST (id INT)"),
+                    AbstractAccess.Migration.when("SELECT 1 FROM MIGRATION_TEST", "DROP TABLE MIGRATION_TEST")));
+
+            Assertions.assertEquals(2, access.readSchemaVersion("MIGRATION_TEST"));
+            try (PooledConnection connection = access.acquireConnection()) {
+                Assertions.assertFalse(connection.createStatement().executeQuery("SELECT * FROM MIGRATION_TEST").next());
+            }
+        } finally {
+            dropMigrationTest(access);
+        }
+    }
+
+    private void dropMigrationTest(AbstractAccess access) throws OperationException, SQLException {
+        try (PooledConnection connection = access.acquireConnection()) {
+            Statement statement = connection.createStatement();
+            statement.executeUpdate("DROP TABLE IF EXISTS MIGRATION_TEST");
+            statement.executeUpdate("DELETE FROM SCHEMA_HISTORY WHERE tableName = 'MIGRATION_TEST'");
+        }
+    }
+
     private Instance getInstance() {
         Identity identity = new Identity.IdentityBuilder("uk.co.connectina.test.TestAgent", "connectina.co.uk").description("Test agent description").hashCode("9f64b865ed237ab9905a4ce2ec99146b").packageFile("file:/home/christos/test-agent.jar").version(1, 3).build();
         LocalDateTime dateTime = LocalDateTime.parse("2022-05-21T17:25:31", App.DATETIME_FORMATTER);
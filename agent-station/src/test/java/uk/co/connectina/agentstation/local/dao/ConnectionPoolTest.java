@@ -0,0 +1,153 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.local.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import uk.co.connectina.agentstation.api.client.OperationException;
+
+/**
+ * Tests for the ConnectionPool class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class ConnectionPoolTest {
+
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        pool = new ConnectionPool("Memory", "jdbc:h2:mem:ConnectionPoolTest;DB_CLOSE_DELAY=-1", 2);
+    }
+
+    @Test
+    void releasedConnectionIsReused() throws OperationException, SQLException {
+        PooledConnection first = pool.acquire();
+        first.close();
+        PooledConnection second = pool.acquire();
+        ResultSet rs = second.prepareStatement("SELECT 1").executeQuery();
+
+        Assertions.assertSame(first, second);
+        Assertions.assertTrue(rs.next());
+        second.close();
+        Assertions.assertEquals("1", statistics().get("DB Pool Memory Connections Opened"));
+    }
+
+    @Test
+    void preparedStatementIsReusedOnSameConnection() throws OperationException, SQLException {
+        PreparedStatement statement;
+        try (PooledConnection connection = pool.acquire()) {
+            statement = connection.prepareStatement("SELECT ?");
+            statement.setInt(1, 7);
+            statement.executeQuery();
+        }
+        try (PooledConnection connection = pool.acquire()) {
+            PreparedStatement again = connection.prepareStatement("SELECT ?");
+
+            Assertions.assertSame(statement, again);
+            Assertions.assertNotSame(statement, connection.prepareStatement("SELECT ?", Statement.RETURN_GENERATED_KEYS));
+        }
+
+        Map<String, String> statistics = statistics();
+        Assertions.assertEquals("2", statistics.get("DB Pool Memory Statements Prepared"));
+        Assertions.assertEquals("1", statistics.get("DB Pool Memory Statements Reused"));
+        Assertions.assertEquals("33%", statistics.get("DB Pool Memory Statement Hit Rate"));
+    }
+
+    @Test
+    void statementCacheEvictsLeastRecentlyUsed() throws OperationException, SQLException {
+        try (PooledConnection connection = pool.acquire()) {
+            PreparedStatement first = connection.prepareStatement("SELECT 0");
+            for (int i = 1; i <= PooledConnection.MAX_CACHED_STATEMENTS; i++) {
+                connection.prepareStatement("SELECT " + i);
+            }
+
+            Assertions.assertEquals(PooledConnection.MAX_CACHED_STATEMENTS, connection.getCachedStatementCount());
+            Assertions.assertTrue(first.isClosed());
+        }
+
+        Assertions.assertEquals("1", statistics().get("DB Pool Memory Statements Evicted"));
+    }
+
+    @Test
+    void concurrentCallersGetSeparateConnections() throws Exception {
+        PooledConnection first = pool.acquire();
+        PooledConnection second = pool.acquire();
+
+        Assertions.assertNotSame(first, second);
+        Assertions.assertEquals("2 / 2", statistics().get("DB Pool Memory"));
+        first.close();
+        second.close();
+        Assertions.assertEquals(2, pool.getIdleCount());
+    }
+
+    @Test
+    void exhaustedPoolWaitsForRelease() throws Exception {
+        PooledConnection first = pool.acquire();
+        PooledConnection second = pool.acquire();
+        CountDownLatch started = new CountDownLatch(1);
+        CompletableFuture<PooledConnection> third = CompletableFuture.supplyAsync(() -> {
+            started.countDown();
+            try {
+                return pool.acquire();
+            } catch (OperationException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        started.await();
+        Thread.sleep(100);
+
+        Assertions.assertFalse(third.isDone());
+        first.close();
+        Assertions.assertSame(first, third.get(5, TimeUnit.SECONDS));
+        second.close();
+        third.get().close();
+        Assertions.assertEquals("1", statistics().get("DB Pool Memory Waits"));
+    }
+
+    @Test
+    void closedConnectionIsDiscarded() throws Exception {
+        PooledConnection first = pool.acquire();
+        first.closePhysical();
+        first.close();
+        PooledConnection second = pool.acquire();
+
+        Assertions.assertNotSame(first, second);
+        second.close();
+        Assertions.assertEquals("1", statistics().get("DB Pool Memory Connections Discarded"));
+    }
+
+    private Map<String, String> statistics() {
+        Map<String, String> statistics = new HashMap<>();
+        pool.collectPoolStatistics(statistics);
+
+        return statistics;
+    }
+
+}
@@ -0,0 +1,84 @@
+/* Agent Station environment for static and mobile software agents
+ * Copyright (C) 2022  Dr Christos Bohoris
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <https://www.gnu.org/licenses/>.
+ *
+ * connectina.co.uk/agent-station
+ */
+package uk.co.connectina.agentstation.rmi;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+import java.rmi.server.UnicastRemoteObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the TunedSocketFactory class.
+ *
+ * @author Dr Christos Bohoris
+ */
+class TunedSocketFactoryTest {
+
+    public interface Echo extends Remote {
+
+        byte[] echo(byte[] data) throws RemoteException;
+
+    }
+
+    private static class EchoServer implements Echo {
+
+        @Override
+        public byte[] echo(byte[] data) {
+            return data;
+        }
+
+    }
+
+    @Test
+    void tunedCallsRoundTrip() throws RemoteException {
+        assertRoundTrip(new TunedSocketFactory(false));
+    }
+
+    @Test
+    void compressedCallsRoundTrip() throws RemoteException {
+        assertRoundTrip(new TunedSocketFactory(true));
+    }
+
+    @Test
+    void factoriesWithSameSettingsAreEqual() {
+        Assertions.assertEquals(new TunedSocketFactory(true), new TunedSocketFactory(true));
+        Assertions.assertNotEquals(new TunedSocketFactory(true), new TunedSocketFactory(false));
+    }
+
+    private static void assertRoundTrip(TunedSocketFactory factory) throws RemoteException {
+        EchoServer server = new EchoServer();
+        Echo stub = (Echo) UnicastRemoteObject.exportObject(server, 0, factory, factory);
+        try {
+            byte[] small = {1, 2, 3};
+            byte[] large = new byte[512 * 1024];
+            for (int i = 0; i < large.length; i++) {
+                large[i] = (byte) (i % 251);
+            }
+
+            // Several calls on the same connection, small and large
+            Assertions.assertArrayEquals(small, stub.echo(small));
+            Assertions.assertArrayEquals(large, stub.echo(large));
+            Assertions.assertArrayEquals(small, stub.echo(small));
+        } finally {
+            UnicastRemoteObject.unexportObject(server, true);
+        }
+    }
+
+}